@@ -0,0 +1,107 @@
+package naysav.spring.service.jmh;
+
+import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean Validation моделей Customer (форма /createCustomer, POST /api/customers,
+ * импорт клиентов) и User (форма /registration) для корректных данных
+ * и данных с ошибками во всех проверяемых полях.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanValidationBenchmark {
+
+	private ValidatorFactory validatorFactory;
+
+	private Validator validator;
+
+	private Customer validCustomer;
+
+	private Customer invalidCustomer;
+
+	private User validUser;
+
+	private User invalidUser;
+
+	@Setup
+	public void setUp() {
+		validatorFactory = Validation.buildDefaultValidatorFactory();
+		validator = validatorFactory.getValidator();
+		validCustomer = customer("Ivan", "30", "4321", "098765", "9001234567");
+		invalidCustomer = customer("", "-1", "43", "09876x", "900");
+		validUser = user("ivanov", "password1", "password1", "30");
+		invalidUser = user("iv", "pass", "pass", "x");
+	}
+
+	@TearDown
+	public void tearDown() {
+		validatorFactory.close();
+	}
+
+	@Benchmark
+	public Set<ConstraintViolation<Customer>> validCustomer() {
+		return validator.validate(validCustomer);
+	}
+
+	@Benchmark
+	public Set<ConstraintViolation<Customer>> invalidCustomer() {
+		return validator.validate(invalidCustomer);
+	}
+
+	@Benchmark
+	public Set<ConstraintViolation<User>> validUser() {
+		return validator.validate(validUser);
+	}
+
+	@Benchmark
+	public Set<ConstraintViolation<User>> invalidUser() {
+		return validator.validate(invalidUser);
+	}
+
+	private static Customer customer(String firstName, String age, String passportSeries,
+	                                 String passportNumber, String phoneNumber) {
+		Customer customer = new Customer();
+		customer.setFirstName(firstName);
+		customer.setLastName("Ivanov");
+		customer.setGender("Male");
+		customer.setAge(age);
+		customer.setPassportSeries(passportSeries);
+		customer.setPassportNumber(passportNumber);
+		customer.setPhoneNumber(phoneNumber);
+		return customer;
+	}
+
+	private static User user(String username, String password, String passwordVerify, String age) {
+		User user = new User();
+		user.setFirstName("Ivan");
+		user.setUsername(username);
+		user.setPassword(password);
+		user.setPasswordVerify(passwordVerify);
+		user.setAge(age);
+		return user;
+	}
+}
@@ -0,0 +1,35 @@
+package naysav.spring.service.jmh;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск бенчмарков: параметры командной строки JMH (java -jar benchmarks.jar -h),
+ * результаты по умолчанию записываются в jmh-result.json, чтобы их можно было
+ * сравнивать между версиями сервиса.
+ */
+public class BenchmarkMain {
+
+	/**
+	 * Файл результатов, если формат не задан параметром -rf.
+	 */
+	static final String DEFAULT_RESULT = "jmh-result.json";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions options = new CommandLineOptions(args);
+		if (options.getResultFormat().hasValue() || options.shouldHelp() || options.shouldList()
+				|| options.shouldListWithParams() || options.shouldListProfilers()
+				|| options.shouldListResultFormats()) {
+			Main.main(args);
+			return;
+		}
+		new Runner(new OptionsBuilder()
+				.parent(options)
+				.resultFormat(ResultFormatType.JSON)
+				.result(options.getResult().orElse(DEFAULT_RESULT))
+				.build()).run();
+	}
+}
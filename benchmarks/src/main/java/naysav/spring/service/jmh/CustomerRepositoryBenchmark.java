@@ -0,0 +1,122 @@
+package naysav.spring.service.jmh;
+
+import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.PassportKey;
+import naysav.spring.service.repository.CustomerRepository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск клиента по паспорту через CustomerRepository.findByPassportSeriesAndPassportNumber()
+ * (точечный поиск по уникальному индексу passport_key) в H2 с 10^4-10^7 клиентами:
+ * существующий клиент и паспорт, которого нет в БД. Ближний кэш и фильтр Блума
+ * CustomerService не участвуют, каждый вызов - запрос к БД.
+ * Таблица заполняется одним запросом INSERT ... SELECT перед измерениями.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CustomerRepositoryBenchmark {
+
+	/**
+	 * Количество паспортов, из которых выбирается искомый.
+	 */
+	private static final int LOOKUPS = 1024;
+
+	/**
+	 * Первый ключ паспорта и шаг между ключами соседних клиентов.
+	 */
+	private static final long FIRST_KEY = 1_000_000_000L;
+
+	private static final long KEY_STEP = 7;
+
+	@Param({"10000", "100000", "1000000", "10000000"})
+	public int rows;
+
+	private ConfigurableApplicationContext context;
+
+	private CustomerRepository customerRepository;
+
+	private final String[][] existing = new String[LOOKUPS][];
+
+	private final String[][] missing = new String[LOOKUPS][];
+
+	private int next;
+
+	@Setup
+	public void setUp() {
+		context = new SpringApplicationBuilder(RepositoryConfig.class)
+				.web(WebApplicationType.NONE)
+				.properties("spring.main.banner-mode=off",
+						"spring.datasource.url=jdbc:h2:mem:benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1",
+						"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+						"spring.jpa.hibernate.ddl-auto=create-drop",
+						"spring.jpa.open-in-view=false",
+						"logging.level.root=WARN")
+				.run();
+		customerRepository = context.getBean(CustomerRepository.class);
+		context.getBean(JdbcTemplate.class).update("insert into customer"
+				+ " (id, first_name, last_name, gender, age, passport_key, phone_number, link_to_file)"
+				+ " select x, 'Ivan', 'Ivanov', 'Male', 30, " + FIRST_KEY + " + x * " + KEY_STEP + ","
+				+ " 9000000000 + x, null from system_range(1, " + rows + ")");
+
+		Random random = new Random(42);
+		for (int i = 0; i < LOOKUPS; i++) {
+			long key = FIRST_KEY + (1 + random.nextInt(rows)) * KEY_STEP;
+			existing[i] = new String[]{PassportKey.series(key), PassportKey.number(key)};
+			missing[i] = new String[]{PassportKey.series(key + 1), PassportKey.number(key + 1)};
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public Customer found() {
+		String[] passport = existing[next++ & (LOOKUPS - 1)];
+		return customerRepository.findByPassportSeriesAndPassportNumber(passport[0], passport[1]);
+	}
+
+	@Benchmark
+	public Customer notFound() {
+		String[] passport = missing[next++ & (LOOKUPS - 1)];
+		return customerRepository.findByPassportSeriesAndPassportNumber(passport[0], passport[1]);
+	}
+
+	/**
+	 * Минимальный контекст: источник данных, JPA и репозитории сервиса.
+	 */
+	@Configuration
+	@EnableAutoConfiguration
+	@EntityScan(basePackageClasses = Customer.class)
+	@EnableJpaRepositories(basePackageClasses = CustomerRepository.class)
+	static class RepositoryConfig {
+	}
+}
@@ -0,0 +1,160 @@
+package naysav.spring.service.jmh;
+
+import naysav.spring.service.services.DocumentBackend;
+import naysav.spring.service.services.DocumentContent;
+import naysav.spring.service.services.FileDocumentBackend;
+import naysav.spring.service.services.SegmentDocumentBackend;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хранение PDF-файлов по одному файлу (document.store=files) и в файлах-сегментах
+ * (document.store=segments): сохранение документа (запись временного файла,
+ * как в DocumentStore.stage(), и DocumentBackend.put() со сбросом на диск)
+ * и чтение случайного из documents сохраненных документов целиком.
+ * Каталог задается системным свойством document.benchmark.dir (по умолчанию
+ * временный каталог), результаты зависят от диска, на котором он находится.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentStoreBenchmark {
+
+	@Param({"files", "segments"})
+	public String store;
+
+	/**
+	 * Размер документа в байтах.
+	 */
+	@Param({"102400", "524288"})
+	public int size;
+
+	/**
+	 * Количество документов, из которых читается случайный.
+	 */
+	@Param("1000")
+	public int documents;
+
+	private final Random random = new Random(42);
+
+	private Path directory;
+
+	private byte[] content;
+
+	/**
+	 * Хранилище с documents документами для чтения.
+	 */
+	private DocumentBackend reads;
+
+	/**
+	 * Хранилище для записи, создается заново на каждую итерацию,
+	 * чтобы объем на диске не рос с длительностью измерения.
+	 */
+	private DocumentBackend writes;
+
+	private ByteBuffer buffer;
+
+	private int written;
+
+	@Setup
+	public void setUp() throws IOException {
+		Path base = Paths.get(System.getProperty("document.benchmark.dir", System.getProperty("java.io.tmpdir")));
+		directory = Files.createTempDirectory(Files.createDirectories(base), "document-benchmark");
+		content = new byte[size];
+		buffer = ByteBuffer.allocate(size);
+		reads = backend("reads");
+		for (int i = 0; i < documents; i++)
+			reads.put(id(i), stage());
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpIteration() throws IOException {
+		writes = backend("writes-" + written);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDownIteration() throws IOException {
+		close(writes);
+		FileSystemUtils.deleteRecursively(directory.resolve("writes-" + written));
+		written++;
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		close(reads);
+		FileSystemUtils.deleteRecursively(directory);
+	}
+
+	@Benchmark
+	public void put() throws IOException {
+		writes.put(id(documents + random.nextInt(Integer.MAX_VALUE - documents)), stage());
+	}
+
+	@Benchmark
+	public int read() throws IOException {
+		DocumentContent document = reads.open(id(random.nextInt(documents)));
+		buffer.clear();
+		if (document.getFile() == null) {
+			buffer.put(document.getBuffer().duplicate());
+		} else {
+			try (FileChannel channel = FileChannel.open(document.getFile(), StandardOpenOption.READ)) {
+				while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+					// чтение файла целиком
+				}
+			}
+		}
+		return buffer.position();
+	}
+
+	/**
+	 * Метод записывает временный файл со случайным содержимым.
+	 */
+	private Path stage() throws IOException {
+		random.nextBytes(content);
+		Path staging = Files.createDirectories(directory.resolve("tmp"));
+		return Files.write(Files.createTempFile(staging, "upload", ".staged"), content);
+	}
+
+	private DocumentBackend backend(String name) throws IOException {
+		String path = directory.resolve(name).toString();
+		return "segments".equals(store)
+				? new SegmentDocumentBackend(path, DataSize.ofGigabytes(1), 0.5)
+				: new FileDocumentBackend(path);
+	}
+
+	private static void close(DocumentBackend backend) throws IOException {
+		if (backend instanceof SegmentDocumentBackend)
+			((SegmentDocumentBackend) backend).close();
+	}
+
+	private static String id(int i) {
+		return String.format("%064x", i);
+	}
+}
@@ -0,0 +1,133 @@
+package naysav.spring.service.jmh;
+
+import naysav.spring.service.controllers.FileResponseWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.FileSystemUtils;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выдача PDF-файла в /fileView через FileResponseWriter без sendfile
+ * (как в пуле DocumentIoExecutor): файл из document.store=files
+ * (FileChannel.transferTo() в поток ответа) и отображенная в память область
+ * сегмента из document.store=segments. Поток ответа отбрасывает данные,
+ * поэтому измеряется чтение файла и копирование в ответ без сети.
+ * Пропускная способность в байтах - результат (операций/с), умноженный на size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileViewBenchmark {
+
+	private static final String ID = "79dac2702d63d7ebcae4a099d3483cb634ccf3ffd8bce676e9f485b64fb55f54";
+
+	/**
+	 * Размер файла в байтах.
+	 */
+	@Param({"102400", "1048576", "10485760"})
+	public int size;
+
+	private final FileResponseWriter writer = new FileResponseWriter();
+
+	private Path directory;
+
+	private Path file;
+
+	private FileChannel channel;
+
+	private MappedByteBuffer mapped;
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("file-view-benchmark");
+		byte[] content = new byte[size];
+		new Random(42).nextBytes(content);
+		file = Files.write(directory.resolve(ID), content);
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		channel.close();
+		FileSystemUtils.deleteRecursively(directory);
+	}
+
+	@Benchmark
+	public HttpServletResponse file() throws IOException {
+		HttpServletResponse response = response();
+		writer.write(file, ID, MediaType.APPLICATION_PDF_VALUE, ID + ".pdf", request(), response);
+		return response;
+	}
+
+	@Benchmark
+	public HttpServletResponse segment() throws IOException {
+		HttpServletResponse response = response();
+		writer.write(mapped, 0, ID, MediaType.APPLICATION_PDF_VALUE, ID + ".pdf", request(), response);
+		return response;
+	}
+
+	private static MockHttpServletRequest request() {
+		return new MockHttpServletRequest("GET", "/fileView");
+	}
+
+	/**
+	 * Ответ, тело которого не сохраняется.
+	 */
+	private static HttpServletResponse response() {
+		return new HttpServletResponseWrapper(new MockHttpServletResponse()) {
+			@Override
+			public ServletOutputStream getOutputStream() {
+				return DISCARD;
+			}
+		};
+	}
+
+	private static final ServletOutputStream DISCARD = new ServletOutputStream() {
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+		}
+
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+}
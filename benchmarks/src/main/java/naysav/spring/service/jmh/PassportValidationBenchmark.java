@@ -0,0 +1,68 @@
+package naysav.spring.service.jmh;
+
+import naysav.spring.service.models.PassportKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Проверка серии и номера паспорта в MainController.customersFind():
+ * String.matches() (компилирует регулярное выражение при каждом вызове),
+ * заранее скомпилированный Pattern и PassportKey.isValidSeries()/isValidNumber(),
+ * которые использует сервис.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PassportValidationBenchmark {
+
+	private static final Pattern SERIES = Pattern.compile("\\d{4}");
+
+	private static final Pattern NUMBER = Pattern.compile("\\d{6}");
+
+	/**
+	 * Корректный паспорт и паспорт с ошибкой в последнем символе номера.
+	 */
+	@Param({"4321 098765", "4321 09876x"})
+	public String passport;
+
+	private String passportSeries;
+
+	private String passportNumber;
+
+	@Setup
+	public void setUp() {
+		passportSeries = passport.substring(0, 4);
+		passportNumber = passport.substring(5);
+	}
+
+	@Benchmark
+	public boolean stringMatches() {
+		return passportSeries.matches("\\d{4}") & passportNumber.matches("\\d{6}");
+	}
+
+	@Benchmark
+	public boolean precompiledPattern() {
+		return SERIES.matcher(passportSeries).matches() & NUMBER.matcher(passportNumber).matches();
+	}
+
+	@Benchmark
+	public boolean passportKey() {
+		return PassportKey.isValidSeries(passportSeries) & PassportKey.isValidNumber(passportNumber);
+	}
+}
@@ -0,0 +1,54 @@
+package naysav.spring.service.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хеширование (регистрация) и проверка (вход, первый запрос API) пароля BCrypt.
+ * Стоимость по умолчанию совпадает с password.bcrypt.strength сервиса,
+ * другие значения задаются параметром: -p strength=10,12.
+ * Измеряется один поток хеширования, без очереди PasswordHasher.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHashingBenchmark {
+
+	@Param({"10"})
+	public int strength;
+
+	private BCryptPasswordEncoder encoder;
+
+	private String encoded;
+
+	@Setup
+	public void setUp() {
+		encoder = new BCryptPasswordEncoder(strength);
+		encoded = encoder.encode("Testing123");
+	}
+
+	@Benchmark
+	public String encode() {
+		return encoder.encode("Testing123");
+	}
+
+	@Benchmark
+	public boolean matches() {
+		return encoder.matches("Testing123", encoded);
+	}
+}
@@ -0,0 +1,18 @@
+package naysav.spring.service.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * Реактивный модуль сервиса: поиск клиентов по паспорту и выдача PDF-файлов
+ * на WebFlux (Netty) с неблокирующим доступом к БД (R2DBC).
+ * Работает с той же БД и каталогом файлов, что и основное приложение,
+ * и использует его модель клиента (Customer) и правила валидации.
+ */
+@SpringBootApplication
+public class ReactiveServiceApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(ReactiveServiceApplication.class, args);
+	}
+}
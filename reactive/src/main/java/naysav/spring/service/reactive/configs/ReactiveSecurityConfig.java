@@ -0,0 +1,92 @@
+package naysav.spring.service.reactive.configs;
+
+import naysav.spring.service.cache.CredentialsCache;
+import naysav.spring.service.reactive.services.ReactiveUserService;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Конфигурация Spring Security реактивного модуля: как и JSON API основного
+ * приложения - HTTP Basic в каждом запросе без сессий, с кэшем успешных
+ * проверок пароля (CredentialsCache). Проверка BCrypt при промахе кэша
+ * выполняется вне потоков Netty (UserDetailsRepositoryReactiveAuthenticationManager
+ * переносит ее на Schedulers.boundedElastic()).
+ */
+@Configuration
+@EnableWebFluxSecurity
+@Import(CredentialsCache.class)
+public class ReactiveSecurityConfig {
+
+	private static final String REALM = "Service";
+
+	private static final byte[] UNAUTHORIZED =
+			"{\"error\":\"Неверный логин или пароль!\"}".getBytes(StandardCharsets.UTF_8);
+
+	@Bean
+	public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+		return http
+				.csrf().disable()
+				.formLogin().disable()
+				.logout().disable()
+				.securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+				.authorizeExchange()
+					.anyExchange().authenticated()
+				.and()
+				.httpBasic()
+					.authenticationEntryPoint((exchange, e) -> unauthorized(exchange.getResponse()))
+				.and()
+				.build();
+	}
+
+	/**
+	 * Метод проверяет пароль по кэшу, а при промахе - по хешу BCrypt из БД.
+	 */
+	@Bean
+	public ReactiveAuthenticationManager authenticationManager(ReactiveUserService userService,
+	                                                           CredentialsCache credentialsCache) {
+		BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder();
+		UserDetailsRepositoryReactiveAuthenticationManager manager =
+				new UserDetailsRepositoryReactiveAuthenticationManager(userService);
+		manager.setPasswordEncoder(new PasswordEncoder() {
+			@Override
+			public String encode(CharSequence rawPassword) {
+				return bcrypt.encode(rawPassword);
+			}
+
+			@Override
+			public boolean matches(CharSequence rawPassword, String encodedPassword) {
+				return credentialsCache.matches(rawPassword, encodedPassword, bcrypt::matches);
+			}
+		});
+		return manager;
+	}
+
+	/**
+	 * Метод отвечает 401 с телом JSON, как JSON API основного приложения.
+	 */
+	private static Mono<Void> unauthorized(ServerHttpResponse response) {
+		response.setStatusCode(HttpStatus.UNAUTHORIZED);
+		response.getHeaders().set(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"" + REALM + "\"");
+		response.getHeaders().setContentType(new MediaType(MediaType.APPLICATION_JSON, StandardCharsets.UTF_8));
+		DataBuffer body = response.bufferFactory().wrap(UNAUTHORIZED);
+		return response.writeWith(Mono.just(body));
+	}
+}
@@ -0,0 +1,115 @@
+package naysav.spring.service.reactive.controllers;
+
+import naysav.spring.service.controllers.CustomerSummary;
+import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.PassportKey;
+import naysav.spring.service.reactive.repository.CustomerLookupRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Реактивный аналог поиска клиента JSON API (GET /api/customers/{серия}/{номер})
+ * и выдачи PDF-файла (GET /fileView) основного приложения.
+ * Ни один обработчик не блокирует поток Netty: клиент читается через R2DBC,
+ * а файл передается из файловой системы без копирования (zero-copy).
+ */
+@RestController
+public class ReactiveCustomerController {
+
+	/**
+	 * Идентификатор файла - SHA-256 содержимого (см. DocumentStore).
+	 */
+	private static final Pattern DOCUMENT_ID = Pattern.compile("[0-9a-f]{64}");
+
+	/**
+	 * Поле для поиска клиентов в БД.
+	 */
+	@Autowired
+	CustomerLookupRepository customerLookupRepository;
+
+	/**
+	 * Валидатор с правилами модели Customer.
+	 */
+	@Autowired
+	Validator validator;
+
+	/**
+	 * Каталог PDF-файлов основного приложения (document.store=files).
+	 */
+	@Value("${upload.path}")
+	String uploadPath;
+
+	/**
+	 * Метод ищет клиента по серии и номеру паспорта.
+	 * @return 200 и данные клиента, 400 - если паспорт некорректен, 404 - если клиент не найден
+	 */
+	@GetMapping("/api/customers/{passportSeries}/{passportNumber}")
+	public Mono<ResponseEntity<?>> find(@PathVariable String passportSeries,
+	                                    @PathVariable String passportNumber) {
+		Map<String, String> errors = new LinkedHashMap<>();
+		validate("passportSeries", passportSeries, errors);
+		validate("passportNumber", passportNumber, errors);
+		if (!errors.isEmpty())
+			return Mono.just(ResponseEntity.badRequest().body(errors));
+		return customerLookupRepository.findByPassportKey(PassportKey.pack(passportSeries, passportNumber))
+				.<ResponseEntity<?>>map(customer -> ResponseEntity.ok(new CustomerSummary(customer)))
+				.defaultIfEmpty(ResponseEntity.notFound().build());
+	}
+
+	/**
+	 * Метод отдает PDF-файл с поддержкой запросов диапазона (206) и условных
+	 * запросов (304). Содержимое файла с данным идентификатором не меняется,
+	 * поэтому ответ кэшируется браузером без ограничения срока.
+	 * @param id - идентификатор файла в хранилище
+	 * @return 200 и файл, 404 - если файл не найден
+	 */
+	@GetMapping("/fileView")
+	public Mono<ResponseEntity<Resource>> fileView(@RequestParam("id") String id) {
+		if (!DOCUMENT_ID.matcher(id).matches())
+			return Mono.just(ResponseEntity.notFound().build());
+		Path file = Paths.get(uploadPath).resolve(id.substring(0, 2)).resolve(id.substring(2, 4)).resolve(id);
+		// проверка наличия файла - системный вызов, выполняется вне потоков Netty
+		return Mono.fromCallable(() -> Files.isRegularFile(file))
+				.subscribeOn(Schedulers.boundedElastic())
+				.map(exists -> exists
+						? ResponseEntity.ok()
+								.eTag(id)
+								.header(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable")
+								.contentType(MediaType.APPLICATION_PDF)
+								.header(HttpHeaders.CONTENT_DISPOSITION,
+										ContentDisposition.inline().filename(id + ".pdf").build().toString())
+								.<Resource>body(new FileSystemResource(file))
+						: ResponseEntity.notFound().build());
+	}
+
+	/**
+	 * Метод проверяет значение поля по правилам модели Customer
+	 * и запоминает первое сообщение об ошибке.
+	 */
+	private void validate(String field, String value, Map<String, String> errors) {
+		for (ConstraintViolation<Customer> violation : validator.validateValue(Customer.class, field, value))
+			errors.putIfAbsent(field, violation.getMessage());
+	}
+}
@@ -0,0 +1,59 @@
+package naysav.spring.service.reactive.repository;
+
+import io.r2dbc.spi.Row;
+import naysav.spring.service.models.AgeConverter;
+import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.PassportKey;
+import naysav.spring.service.models.PhoneNumberConverter;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * Неблокирующее чтение клиентов из таблицы customer основного приложения.
+ * Столбцы преобразуются в модель теми же конвертерами, что и в JPA
+ * (AgeConverter, PhoneNumberConverter, PassportKey).
+ */
+@Repository
+public class CustomerLookupRepository {
+
+	private static final AgeConverter AGE = new AgeConverter();
+
+	private static final PhoneNumberConverter PHONE_NUMBER = new PhoneNumberConverter();
+
+	/**
+	 * Неблокирующий доступ к БД.
+	 */
+	@Autowired
+	DatabaseClient databaseClient;
+
+	/**
+	 * Метод ищет клиента по упакованному ключу паспорта (уникальный индекс).
+	 * @return клиент или пустой Mono, если клиента нет
+	 */
+	public Mono<Customer> findByPassportKey(long passportKey) {
+		return databaseClient.sql("select id, first_name, last_name, gender, age, passport_key, phone_number, link_to_file"
+						+ " from customer where passport_key = :passportKey")
+				.bind("passportKey", passportKey)
+				.map((row, metadata) -> toCustomer(row))
+				.one();
+	}
+
+	private static Customer toCustomer(Row row) {
+		Customer customer = new Customer();
+		customer.setId(row.get("id", Long.class));
+		customer.setFirstName(row.get("first_name", String.class));
+		customer.setLastName(row.get("last_name", String.class));
+		customer.setGender(row.get("gender", String.class));
+		customer.setAge(AGE.convertToEntityAttribute(row.get("age", Short.class)));
+		long passportKey = row.get("passport_key", Long.class);
+		customer.setPassportKey(passportKey);
+		customer.setPassportSeries(PassportKey.series(passportKey));
+		customer.setPassportNumber(PassportKey.number(passportKey));
+		customer.setPhoneNumber(PHONE_NUMBER.convertToEntityAttribute(row.get("phone_number", Long.class)));
+		customer.setLinkToFile(row.get("link_to_file", String.class));
+		return customer;
+	}
+}
@@ -0,0 +1,36 @@
+package naysav.spring.service.reactive.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+
+/**
+ * Сервисный класс, загружающий учетные данные пользователей
+ * основного приложения (таблица user) для HTTP Basic.
+ */
+@Service
+public class ReactiveUserService implements ReactiveUserDetailsService {
+
+	/**
+	 * Неблокирующий доступ к БД.
+	 */
+	@Autowired
+	DatabaseClient databaseClient;
+
+	@Override
+	public Mono<UserDetails> findByUsername(String username) {
+		return databaseClient.sql("select username, password from user where username = :username")
+				.bind("username", username)
+				.map(row -> User.withUsername(row.get("username", String.class))
+						.password(row.get("password", String.class))
+						.authorities(Collections.emptyList())
+						.build())
+				.one();
+	}
+}
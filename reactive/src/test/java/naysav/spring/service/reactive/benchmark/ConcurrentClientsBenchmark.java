@@ -0,0 +1,162 @@
+package naysav.spring.service.reactive.benchmark;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Нагрузка большим количеством одновременных клиентов на поиск клиента
+ * по паспорту (GET /api/customers/{серия}/{номер}, HTTP Basic) для сравнения
+ * основного приложения (Tomcat, JDBC) и реактивного модуля (Netty, R2DBC).
+ * Каждый клиент держит свое соединение keep-alive и отправляет следующий
+ * запрос сразу после ответа на предыдущий; сам генератор нагрузки неблокирующий
+ * (reactor-netty), поэтому 10 000 клиентов не требуют 10 000 потоков.
+ * Во время измерения раз в секунду читаются метрики сервиса
+ * (/actuator/metrics/{имя}), выводятся их наибольшие значения.
+ * Параметры (системные свойства):
+ * load.url - адрес сервиса (http://localhost:8082), load.path - запрос
+ * (/api/customers/4321/098765), load.username и load.password - пользователь API,
+ * load.clients - одновременных клиентов (10000), load.warmup и load.duration -
+ * прогрев и измерение в секундах (10 и 30), load.metrics - метрики через запятую,
+ * load.metrics-username и load.metrics-password - учетная запись для метрик
+ * (у основного приложения - сборщик метрик metrics.scraper.*).
+ * Запуск: java -Dload.url=... ... ConcurrentClientsBenchmark
+ */
+public class ConcurrentClientsBenchmark {
+
+	private static final String DEFAULT_METRICS = "jvm.threads.live,jvm.threads.peak,"
+			+ "hikaricp.connections.active,hikaricp.connections.pending,"
+			+ "r2dbc.pool.acquired,r2dbc.pool.pending";
+
+	private static final Pattern VALUE = Pattern.compile("\"value\":([-0-9.E]+)");
+
+	/** Задержки по миллисекундам, последняя ячейка - все, что дольше. */
+	private static final int MAX_LATENCY_MILLIS = 60_000;
+
+	public static void main(String[] args) {
+		String url = System.getProperty("load.url", "http://localhost:8082").replaceAll("/$", "");
+		String path = System.getProperty("load.path", "/api/customers/4321/098765");
+		String username = System.getProperty("load.username", "naysav");
+		String password = System.getProperty("load.password", "password");
+		int clients = Integer.getInteger("load.clients", 10000);
+		int warmup = Integer.getInteger("load.warmup", 10);
+		int duration = Integer.getInteger("load.duration", 30);
+		List<String> metrics = Arrays.asList(System.getProperty("load.metrics", DEFAULT_METRICS).split(","));
+		String metricsAuthorization = basic(System.getProperty("load.metrics-username", username),
+				System.getProperty("load.metrics-password", password));
+
+		ConnectionProvider provider = ConnectionProvider.builder("load-clients")
+				.maxConnections(clients)
+				.pendingAcquireMaxCount(-1)
+				.pendingAcquireTimeout(Duration.ofSeconds(warmup + duration))
+				.build();
+		HttpClient client = HttpClient.create(provider)
+				.baseUrl(url)
+				.headers(headers -> headers.set(HttpHeaderNames.AUTHORIZATION, basic(username, password)))
+				.responseTimeout(Duration.ofSeconds(MAX_LATENCY_MILLIS / 1000));
+		HttpClient metricsClient = HttpClient.create()
+				.baseUrl(url)
+				.headers(headers -> headers.set(HttpHeaderNames.AUTHORIZATION, metricsAuthorization));
+
+		long started = System.nanoTime();
+		long measureFrom = started + Duration.ofSeconds(warmup).toNanos();
+		long deadline = measureFrom + Duration.ofSeconds(duration).toNanos();
+		AtomicLongArray latencies = new AtomicLongArray(MAX_LATENCY_MILLIS + 1);
+		Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+		Map<String, Double> peaks = new ConcurrentHashMap<>();
+
+		Mono<Integer> request = client.get().uri(path)
+				.responseSingle((response, body) -> body.then(Mono.just(response.status().code())));
+		Flux<Integer> oneClient = Mono.defer(() -> {
+			long start = System.nanoTime();
+			return request
+					.doOnNext(status -> {
+						if (start < measureFrom)
+							return;
+						if (status == 200)
+							latencies.incrementAndGet((int) Math.min(
+									(System.nanoTime() - start) / 1_000_000, MAX_LATENCY_MILLIS));
+						else
+							errors.computeIfAbsent("HTTP " + status, key -> new LongAdder()).increment();
+					})
+					.onErrorResume(e -> {
+						if (start >= measureFrom)
+							errors.computeIfAbsent(e.getClass().getSimpleName(), key -> new LongAdder()).increment();
+						return Mono.delay(Duration.ofMillis(100)).then(Mono.empty());
+					});
+		}).repeat(() -> System.nanoTime() < deadline);
+
+		Flux.interval(Duration.ofSeconds(1))
+				.takeWhile(tick -> System.nanoTime() < deadline)
+				.filter(tick -> System.nanoTime() >= measureFrom)
+				.flatMap(tick -> Flux.fromIterable(metrics)
+						.flatMap(name -> metricsClient.get().uri("/actuator/metrics/" + name)
+								.responseSingle((response, body) -> response.status().code() == 200
+										? body.asString(StandardCharsets.UTF_8) : Mono.<String>empty())
+								.onErrorResume(e -> Mono.empty())
+								.doOnNext(json -> {
+									Matcher matcher = VALUE.matcher(json);
+									if (matcher.find())
+										peaks.merge(name, Double.parseDouble(matcher.group(1)), Math::max);
+								})))
+				.subscribe();
+
+		System.out.printf("%s%s: %d clients, warmup %d s, measurement %d s%n", url, path, clients, warmup, duration);
+		Flux.range(0, clients)
+				.flatMap(i -> oneClient, clients)
+				.blockLast();
+		provider.disposeLater().block();
+
+		report(latencies, errors, peaks, metrics, duration);
+	}
+
+	private static void report(AtomicLongArray latencies, Map<String, LongAdder> errors,
+	                           Map<String, Double> peaks, List<String> metrics, int duration) {
+		long count = 0;
+		for (int i = 0; i < latencies.length(); i++)
+			count += latencies.get(i);
+		System.out.printf("requests: %d, %.0f req/s, latency p50 %d ms, p99 %d ms, p99.9 %d ms%n",
+				count, count / (double) duration, percentile(latencies, count, 0.50),
+				percentile(latencies, count, 0.99), percentile(latencies, count, 0.999));
+		Map<String, Long> errorCounts = new TreeMap<>();
+		errors.forEach((error, adder) -> errorCounts.put(error, adder.sum()));
+		System.out.println("errors: " + errorCounts);
+		Map<String, Double> ordered = new LinkedHashMap<>();
+		for (String name : metrics)
+			if (peaks.containsKey(name))
+				ordered.put(name, peaks.get(name));
+		ordered.forEach((name, value) -> System.out.printf("peak %-30s %.0f%n", name, value));
+	}
+
+	private static long percentile(AtomicLongArray latencies, long count, double p) {
+		long rank = (long) Math.ceil(count * p);
+		long seen = 0;
+		for (int i = 0; i < latencies.length(); i++) {
+			seen += latencies.get(i);
+			if (seen >= rank && seen > 0)
+				return i;
+		}
+		return MAX_LATENCY_MILLIS;
+	}
+
+	private static String basic(String username, String password) {
+		return "Basic " + Base64.getEncoder().encodeToString(
+				(username + ":" + password).getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,138 @@
+package naysav.spring.service.reactive.controllers;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/** Класс, тестирующий реактивный поиск клиентов и выдачу файлов (ReactiveCustomerController). */
+@RunWith(SpringRunner.class)
+@AutoConfigureWebTestClient
+@SpringBootTest(properties = {
+		"spring.r2dbc.url=r2dbc:h2:mem:///reactive;MODE=MySQL;DB_CLOSE_DELAY=-1",
+		"spring.sql.init.mode=always",
+		"upload.path=target/test-uploads"})
+public class ReactiveCustomerControllerTest {
+
+	/** Идентификатор PDF-файла клиента */
+	private static final String DOCUMENT_ID =
+			"79dac2702d63d7ebcae4a099d3483cb634ccf3ffd8bce676e9f485b64fb55f54";
+
+	@Autowired
+	WebTestClient webTestClient;
+
+	@Autowired
+	DatabaseClient databaseClient;
+
+	@Before
+	public void setUp() throws Exception {
+		databaseClient.sql("delete from customer").then()
+				.then(databaseClient.sql("delete from user").then())
+				.then(databaseClient.sql("insert into user(id, username, password) values(1, 'test', :password)")
+						.bind("password", new BCryptPasswordEncoder(4).encode("Testing123")).then())
+				.then(databaseClient.sql("insert into customer(id, first_name, last_name, gender, age, passport_key,"
+						+ " phone_number, link_to_file) values(7, 'Ivan', 'Ivanov', 'Male', 34, 1234123456, 12345678, '"
+						+ DOCUMENT_ID + "')").then())
+				.block();
+		Path file = Paths.get("target/test-uploads/79/da/" + DOCUMENT_ID);
+		Files.createDirectories(file.getParent());
+		Files.write(file, "%PDF-information".getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Без учетных данных или с неверным паролем - 401.
+	 */
+	@Test
+	public void unauthorizedTest() {
+		webTestClient.get().uri("/api/customers/1234/123456")
+				.exchange()
+				.expectStatus().isUnauthorized()
+				.expectHeader().valueEquals(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"Service\"")
+				.expectBody().jsonPath("$.error").exists();
+		webTestClient.get().uri("/api/customers/1234/123456")
+				.headers(headers -> headers.setBasicAuth("test", "Testing124"))
+				.exchange()
+				.expectStatus().isUnauthorized();
+	}
+
+	/**
+	 * Найденный клиент - 200 с полями из модели Customer,
+	 * некорректный паспорт - 400 с сообщениями валидации модели, отсутствующий - 404.
+	 */
+	@Test
+	public void findTest() {
+		authorized().get().uri("/api/customers/1234/123456")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.firstName").isEqualTo("Ivan")
+				.jsonPath("$.age").isEqualTo("34")
+				.jsonPath("$.passportSeries").isEqualTo("1234")
+				.jsonPath("$.passportNumber").isEqualTo("123456")
+				.jsonPath("$.phoneNumber").isEqualTo("0012345678")
+				.jsonPath("$.documentId").isEqualTo(DOCUMENT_ID);
+
+		authorized().get().uri("/api/customers/12/12345a")
+				.exchange()
+				.expectStatus().isBadRequest()
+				.expectBody()
+				.jsonPath("$.passportSeries").isEqualTo("• необходимо 4 цифры")
+				.jsonPath("$.passportNumber").isEqualTo("• необходимо 6 цифр");
+
+		authorized().get().uri("/api/customers/1234/654321")
+				.exchange()
+				.expectStatus().isNotFound();
+	}
+
+	/**
+	 * Файл отдается целиком, диапазоном (206) и не передается повторно
+	 * при совпадении ETag (304); неизвестный идентификатор - 404.
+	 */
+	@Test
+	public void fileViewTest() {
+		authorized().get().uri("/fileView?id=" + DOCUMENT_ID)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentType(MediaType.APPLICATION_PDF)
+				.expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + DOCUMENT_ID + "\"")
+				.expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable")
+				.expectBody(String.class).isEqualTo("%PDF-information");
+
+		authorized().get().uri("/fileView?id=" + DOCUMENT_ID)
+				.header(HttpHeaders.RANGE, "bytes=0-3")
+				.exchange()
+				.expectStatus().isEqualTo(206)
+				.expectBody(String.class).isEqualTo("%PDF");
+
+		authorized().get().uri("/fileView?id=" + DOCUMENT_ID)
+				.ifNoneMatch("\"" + DOCUMENT_ID + "\"")
+				.exchange()
+				.expectStatus().isNotModified();
+
+		authorized().get().uri("/fileView?id=" + DOCUMENT_ID.replace('7', '8'))
+				.exchange()
+				.expectStatus().isNotFound();
+		authorized().get().uri("/fileView?id=../../etc/passwd")
+				.exchange()
+				.expectStatus().isNotFound();
+	}
+
+	private WebTestClient authorized() {
+		return webTestClient.mutate()
+				.defaultHeaders(headers -> headers.setBasicAuth("test", "Testing123"))
+				.build();
+	}
+}
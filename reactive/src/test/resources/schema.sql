@@ -0,0 +1,19 @@
+create table customer
+(
+    id           bigint       not null primary key,
+    age          smallint     null,
+    first_name   varchar(255) null,
+    gender       varchar(255) null,
+    last_name    varchar(255) null,
+    link_to_file varchar(255) null,
+    passport_key bigint       not null,
+    phone_number bigint       null,
+    constraint uk_customer_passport_key unique (passport_key)
+);
+
+create table user
+(
+    id       bigint       not null primary key,
+    password varchar(255) null,
+    username varchar(12)  null
+);
@@ -0,0 +1,87 @@
+package naysav.spring.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.keygen.KeyGenerators;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.function.BiPredicate;
+
+/**
+ * Кэш успешных проверок пароля для API с HTTP Basic, где пароль
+ * передается в каждом запросе и BCrypt на каждый запрос ограничил бы
+ * пропускную способность пулом хеширования.
+ * Ключ - HMAC пароля и его хеша на случайном ключе процесса: сам пароль
+ * не хранится, а после смены пароля (другой хеш) запись не находится.
+ * Кэшируются только успешные проверки. Статистика публикуется в Micrometer
+ * под именем кэша "credentials".
+ */
+@Component
+public class CredentialsCache implements MeterBinder {
+
+	private final Cache<String, Boolean> cache;
+
+	private final SecretKeySpec key = new SecretKeySpec(KeyGenerators.secureRandom(32).generateKey(), "HmacSHA256");
+
+	/**
+	 * @param maximumSize - максимальное количество записей
+	 * @param ttl - время жизни записи
+	 */
+	public CredentialsCache(@Value("${api.credentials-cache.maximum-size:10000}") long maximumSize,
+	                        @Value("${api.credentials-cache.ttl:5m}") Duration ttl) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * Метод проверяет пароль по кэшу, при промахе - через verifier,
+	 * и запоминает успешный результат.
+	 * @param rawPassword - пароль из запроса
+	 * @param encodedPassword - хеш пароля из БД
+	 * @param verifier - проверка пароля по хешу
+	 */
+	public boolean matches(CharSequence rawPassword, String encodedPassword,
+	                       BiPredicate<CharSequence, String> verifier) {
+		if (rawPassword == null || encodedPassword == null)
+			return verifier.test(rawPassword, encodedPassword);
+		String entry = keyOf(rawPassword, encodedPassword);
+		if (cache.getIfPresent(entry) != null)
+			return true;
+		boolean matches = verifier.test(rawPassword, encodedPassword);
+		if (matches)
+			cache.put(entry, Boolean.TRUE);
+		return matches;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, cache, "credentials");
+	}
+
+	private String keyOf(CharSequence rawPassword, String encodedPassword) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(key);
+			mac.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+			mac.update((byte) 0);
+			return Base64.getEncoder().encodeToString(
+					mac.doFinal(rawPassword.toString().getBytes(StandardCharsets.UTF_8)));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package naysav.spring.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.PassportKey;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Ближний (in-process) кэш результатов поиска клиента по серии и номеру паспорта.
+ * Хранит как найденных клиентов, так и отрицательные результаты ("клиент не найден"),
+ * ограничен по количеству записей и времени их жизни.
+ * Статистика попаданий, промахов и вытеснений публикуется в Micrometer
+ * под именем кэша "customers".
+ */
+@Component
+public class CustomerCache implements MeterBinder {
+
+	/**
+	 * Кэш: ключ - упакованный ключ паспорта, значение - клиент или пустой Optional.
+	 */
+	private final Cache<Long, Optional<Customer>> cache;
+
+	/**
+	 * @param maximumSize - максимальное количество записей
+	 * @param ttl - время жизни найденного клиента
+	 * @param negativeTtl - время жизни отрицательного результата
+	 */
+	public CustomerCache(@Value("${customer.cache.maximum-size:10000}") long maximumSize,
+	                     @Value("${customer.cache.ttl:10m}") Duration ttl,
+	                     @Value("${customer.cache.negative-ttl:1m}") Duration negativeTtl) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfter(new Expiry<Long, Optional<Customer>>() {
+					@Override
+					public long expireAfterCreate(Long key, Optional<Customer> value, long currentTime) {
+						return value.isPresent() ? ttl.toNanos() : negativeTtl.toNanos();
+					}
+
+					@Override
+					public long expireAfterUpdate(Long key, Optional<Customer> value,
+					                              long currentTime, long currentDuration) {
+						return expireAfterCreate(key, value, currentTime);
+					}
+
+					@Override
+					public long expireAfterRead(Long key, Optional<Customer> value,
+					                            long currentTime, long currentDuration) {
+						return currentDuration;
+					}
+				})
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * Метод возвращает клиента из кэша, при промахе загружает его
+	 * через loader и запоминает результат (в том числе отсутствие клиента).
+	 * @param passportKey - упакованный ключ паспорта
+	 * @param loader - загрузка клиента из БД
+	 * @return клиент или null, если не найден
+	 */
+	public Customer get(long passportKey, Supplier<Customer> loader) {
+		return cache.get(passportKey, k -> Optional.ofNullable(loader.get())).orElse(null);
+	}
+
+	/**
+	 * Метод возвращает имеющиеся в кэше результаты для набора ключей
+	 * без загрузки промахов.
+	 * @param passportKeys - упакованные ключи паспортов
+	 * @return ключ - клиент или пустой Optional, если известно, что клиента нет;
+	 *         ключей-промахов в результате нет
+	 */
+	public Map<Long, Optional<Customer>> getAllPresent(Collection<Long> passportKeys) {
+		return cache.getAllPresent(passportKeys);
+	}
+
+	/**
+	 * Метод записывает сохраненного клиента в кэш,
+	 * заменяя возможный отрицательный результат.
+	 */
+	public void put(Customer customer) {
+		cache.put(PassportKey.pack(customer.getPassportSeries(), customer.getPassportNumber()),
+				Optional.of(customer));
+	}
+
+	/**
+	 * Метод удаляет из кэша результат поиска по ключу паспорта
+	 * (например, отрицательный результат для импортированного клиента).
+	 */
+	public void invalidate(long passportKey) {
+		cache.invalidate(passportKey);
+	}
+
+	/**
+	 * Метод удаляет из кэша отрицательный результат поиска по ключу паспорта
+	 * (клиент записан другим экземпляром сервиса), найденный клиент остается.
+	 */
+	public void invalidateNegative(long passportKey) {
+		cache.asMap().remove(passportKey, Optional.empty());
+	}
+
+	/**
+	 * Метод возвращает накопленную статистику кэша.
+	 */
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, cache, "customers");
+	}
+}
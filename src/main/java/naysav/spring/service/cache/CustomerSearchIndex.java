@@ -0,0 +1,545 @@
+package naysav.spring.service.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Поисковый индекс по фамилии, имени и номеру телефона клиентов в памяти процесса.
+ * Каждое поле разбивается на триграммы (подстроки из трех символов) и префиксную
+ * биграмму; для каждой n-граммы хранится список документов, содержащих ее.
+ * Запрос из трех и более символов ищется как подстрока (пересечение списков всех
+ * его триграмм), из двух символов - как начало поля. Кандидаты проверяются по
+ * тексту полей и ранжируются: точное совпадение выше совпадения начала, начало
+ * выше подстроки, фамилия выше имени.
+ * Чтобы миллионы клиентов помещались в ограниченную кучу, списки документов
+ * хранятся разностями в формате varint в массивах byte, а текст полей -
+ * по байту на символ. Индекс только пополняется: удаления клиентов в сервисе нет.
+ * Повторное добавление клиента (например, при сверке с БД) индекс не меняет:
+ * загруженные при старте клиенты ищутся двоичным поиском по ключу паспорта,
+ * добавленные позже - в хеш-таблице номеров документов (4 байта на ячейку).
+ */
+@Component
+public class CustomerSearchIndex implements MeterBinder {
+
+	/** Минимальная длина слова запроса. */
+	public static final int MIN_QUERY_LENGTH = 2;
+
+	/** Количество результатов по умолчанию. */
+	public static final int DEFAULT_RESULTS = 20;
+
+	/** Наибольшее количество результатов. */
+	public static final int MAX_RESULTS = 100;
+
+	private static final int LAST_NAME = 0;
+
+	private static final int FIRST_NAME = 1;
+
+	private static final int PHONE = 2;
+
+	/** Группы n-грамм: имена и телефоны не пересекаются в индексе. */
+	private static final long NAMES = 0;
+
+	private static final long PHONES = 1;
+
+	/** Разделитель полей документа в массиве текста. */
+	private static final byte SEPARATOR = 0;
+
+	/** Свободная ячейка таблицы added. */
+	private static final int EMPTY = -1;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/** Списки документов по ключу n-граммы. */
+	private final Map<Long, Postings> postings = new HashMap<>();
+
+	/** Ключи паспортов документов. */
+	private long[] passportKeys = new long[1024];
+
+	/** Начало текста каждого документа в массиве text. */
+	private int[] offsets = new int[1024];
+
+	/** Нормализованный текст полей всех документов. */
+	private byte[] text = new byte[16 * 1024];
+
+	private int textLength;
+
+	private int documents;
+
+	/** Количество документов, загруженных при старте (упорядочены по ключу паспорта). */
+	private int loaded;
+
+	/**
+	 * Номера документов, добавленных после загрузки, по хешу ключа паспорта
+	 * (открытая адресация, EMPTY - свободная ячейка): ключ документа берется
+	 * из passportKeys, поэтому таблица не хранит ключи повторно.
+	 */
+	private int[] added = newTable(16);
+
+	private int addedCount;
+
+	/** Документы, добавленные до окончания загрузки. */
+	private final List<Object[]> pending = new ArrayList<>();
+
+	private volatile boolean ready;
+
+	/**
+	 * Метод добавляет клиента, загруженного из БД при старте.
+	 * Клиенты должны загружаться в порядке возрастания ключа паспорта.
+	 */
+	public void load(long passportKey, String firstName, String lastName, String phoneNumber) {
+		lock.writeLock().lock();
+		try {
+			if (loaded > 0 && passportKeys[loaded - 1] >= passportKey)
+				throw new IllegalArgumentException("Customers must be loaded in passport key order");
+			index(passportKey, firstName, lastName, phoneNumber);
+			loaded = documents;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Метод добавляет нового клиента. До окончания загрузки клиент
+	 * откладывается, а клиент, уже имеющийся в индексе, не дублируется.
+	 */
+	public void add(long passportKey, String firstName, String lastName, String phoneNumber) {
+		lock.writeLock().lock();
+		try {
+			if (!ready)
+				pending.add(new Object[] {passportKey, firstName, lastName, phoneNumber});
+			else if (Arrays.binarySearch(passportKeys, 0, loaded, passportKey) < 0 && !isAdded(passportKey)) {
+				index(passportKey, firstName, lastName, phoneNumber);
+				trackAdded(documents - 1);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Метод помечает индекс загруженным и добавляет клиентов,
+	 * сохраненных во время загрузки.
+	 */
+	public void markReady() {
+		lock.writeLock().lock();
+		try {
+			ready = true;
+			for (Object[] customer : pending)
+				add((Long) customer[0], (String) customer[1], (String) customer[2], (String) customer[3]);
+			pending.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Метод ищет клиентов, у которых каждое слово запроса содержится
+	 * в фамилии или имени, а последовательность цифр - в номере телефона.
+	 * До окончания загрузки результаты неполные.
+	 * @param query - строка запроса
+	 * @param limit - максимальное количество результатов
+	 * @return ключи паспортов найденных клиентов по убыванию релевантности
+	 */
+	public long[] search(String query, int limit) {
+		List<String> tokens = tokens(query);
+		if (tokens.isEmpty() || limit <= 0)
+			return new long[0];
+		lock.readLock().lock();
+		try {
+			int[] candidates = null;
+			for (String token : tokens) {
+				candidates = candidates(token, candidates);
+				if (candidates.length == 0)
+					return new long[0];
+			}
+			byte[][] encoded = new byte[tokens.size()][];
+			for (int i = 0; i < tokens.size(); i++)
+				encoded[i] = encode(tokens.get(i));
+
+			// наименьший элемент кучи - худший из лучших limit результатов
+			PriorityQueue<long[]> top = new PriorityQueue<>((a, b) ->
+					a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[1], a[1]));
+			for (int document : candidates) {
+				int score = 0;
+				for (int i = 0; i < encoded.length && score >= 0; i++) {
+					int tokenScore = score(document, encoded[i], isDigits(tokens.get(i)));
+					score = tokenScore == 0 ? -1 : score + tokenScore;
+				}
+				if (score <= 0)
+					continue;
+				if (top.size() < limit)
+					top.add(new long[] {score, document});
+				else if (score > top.peek()[0]) {
+					top.poll();
+					top.add(new long[] {score, document});
+				}
+			}
+			long[] result = new long[top.size()];
+			for (int i = result.length - 1; i >= 0; i--)
+				result[i] = passportKeys[(int) top.poll()[1]];
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Метод возвращает количество клиентов в индексе.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return documents;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Метод оценивает объем памяти индекса в байтах.
+	 */
+	public long memoryBytes() {
+		lock.readLock().lock();
+		try {
+			long bytes = (long) passportKeys.length * 8 + (long) offsets.length * 4 + text.length
+					+ (long) added.length * 4;
+			for (Postings list : postings.values())
+				bytes += list.data.length + 64;
+			return bytes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("customer.search.documents", this, CustomerSearchIndex::size)
+				.description("Customers in the name and phone search index")
+				.register(registry);
+		Gauge.builder("customer.search.memory", this, CustomerSearchIndex::memoryBytes)
+				.description("Estimated heap used by the name and phone search index")
+				.baseUnit(BaseUnits.BYTES)
+				.register(registry);
+	}
+
+	/**
+	 * Метод разбивает запрос на нормализованные слова не короче MIN_QUERY_LENGTH.
+	 */
+	public static List<String> tokens(String query) {
+		List<String> tokens = new ArrayList<>();
+		if (query == null)
+			return tokens;
+		for (String word : query.trim().split("\\s+")) {
+			String token = normalize(word);
+			if (token.length() >= MIN_QUERY_LENGTH)
+				tokens.add(token);
+		}
+		return tokens;
+	}
+
+	/**
+	 * Метод приводит текст к нижнему регистру, заменяет "ё" на "е"
+	 * и оставляет только буквы и цифры.
+	 */
+	static String normalize(String value) {
+		if (value == null)
+			return "";
+		StringBuilder result = new StringBuilder(value.length());
+		for (char c : value.toLowerCase(Locale.ROOT).toCharArray()) {
+			if (c == 'ё')
+				result.append('е');
+			else if (Character.isLetterOrDigit(c))
+				result.append(c);
+		}
+		return result.toString();
+	}
+
+	private void index(long passportKey, String firstName, String lastName, String phoneNumber) {
+		String[] fields = new String[3];
+		fields[LAST_NAME] = normalize(lastName);
+		fields[FIRST_NAME] = normalize(firstName);
+		fields[PHONE] = digits(phoneNumber);
+
+		int document = documents;
+		if (document == passportKeys.length) {
+			passportKeys = Arrays.copyOf(passportKeys, document * 2);
+			offsets = Arrays.copyOf(offsets, document * 2);
+		}
+		passportKeys[document] = passportKey;
+		offsets[document] = textLength;
+		for (int field = 0; field < fields.length; field++) {
+			byte[] encoded = encode(fields[field]);
+			ensureText(encoded.length + 1);
+			System.arraycopy(encoded, 0, text, textLength, encoded.length);
+			textLength += encoded.length;
+			text[textLength++] = SEPARATOR;
+
+			long group = field == PHONE ? PHONES : NAMES;
+			String value = fields[field];
+			if (value.length() >= 2)
+				posting(gram(group, (char) 0, value.charAt(0), value.charAt(1))).add(document);
+			for (int i = 0; i + 3 <= value.length(); i++)
+				posting(gram(group, value.charAt(i), value.charAt(i + 1), value.charAt(i + 2))).add(document);
+		}
+		documents++;
+	}
+
+	/**
+	 * Метод выбирает документы, содержащие все n-граммы слова запроса,
+	 * среди документов previous (или всех, если previous == null).
+	 */
+	private int[] candidates(String token, int[] previous) {
+		long group = isDigits(token) ? PHONES : NAMES;
+		List<Postings> lists = new ArrayList<>();
+		if (token.length() < 3) {
+			lists.add(postings.get(gram(group, (char) 0, token.charAt(0), token.charAt(1))));
+		} else {
+			for (int i = 0; i + 3 <= token.length(); i++)
+				lists.add(postings.get(gram(group, token.charAt(i), token.charAt(i + 1), token.charAt(i + 2))));
+		}
+		if (lists.contains(null))
+			return new int[0];
+		lists.sort((a, b) -> Integer.compare(a.count, b.count));
+
+		int[] result = previous == null ? lists.get(0).decode() : lists.get(0).intersect(previous);
+		for (int i = 1; i < lists.size() && result.length > 0; i++)
+			result = lists.get(i).intersect(result);
+		return result;
+	}
+
+	/**
+	 * Метод оценивает совпадение слова запроса с полями документа.
+	 * @return 0, если слово не содержится ни в одном поле
+	 */
+	private int score(int document, byte[] token, boolean phone) {
+		int start = offsets[document];
+		int best = 0;
+		for (int field = 0; field <= PHONE; field++) {
+			int end = start;
+			while (text[end] != SEPARATOR)
+				end++;
+			if ((field == PHONE) == phone) {
+				int match = match(start, end, token);
+				if (match > 0)
+					best = Math.max(best, match * 4 + (field == FIRST_NAME ? 1 : 2));
+			}
+			start = end + 1;
+		}
+		return best;
+	}
+
+	/**
+	 * @return 3 - поле совпадает со словом, 2 - начинается с него,
+	 *         1 - содержит его (для слов длиннее двух символов), 0 - нет совпадения
+	 */
+	private int match(int start, int end, byte[] token) {
+		int length = end - start;
+		if (length < token.length)
+			return 0;
+		if (regionMatches(start, token))
+			return length == token.length ? 3 : 2;
+		if (token.length < 3)
+			return 0;
+		for (int i = start + 1; i + token.length <= end; i++)
+			if (regionMatches(i, token))
+				return 1;
+		return 0;
+	}
+
+	private boolean regionMatches(int position, byte[] token) {
+		for (int i = 0; i < token.length; i++)
+			if (text[position + i] != token[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Метод проверяет, добавлен ли после загрузки документ с ключом паспорта.
+	 */
+	private boolean isAdded(long passportKey) {
+		int mask = added.length - 1;
+		for (int slot = slot(passportKey, mask); added[slot] != EMPTY; slot = (slot + 1) & mask)
+			if (passportKeys[added[slot]] == passportKey)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Метод запоминает документ, добавленный после загрузки; таблица
+	 * увеличивается вдвое при заполнении наполовину.
+	 */
+	private void trackAdded(int document) {
+		if ((addedCount + 1) * 2 > added.length) {
+			int[] previous = added;
+			added = newTable(previous.length * 2);
+			for (int existing : previous)
+				if (existing != EMPTY)
+					insertAdded(existing);
+		}
+		insertAdded(document);
+		addedCount++;
+	}
+
+	private void insertAdded(int document) {
+		int mask = added.length - 1;
+		int slot = slot(passportKeys[document], mask);
+		while (added[slot] != EMPTY)
+			slot = (slot + 1) & mask;
+		added[slot] = document;
+	}
+
+	private static int slot(long passportKey, int mask) {
+		long hash = passportKey * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ hash >>> 32) & mask;
+	}
+
+	private static int[] newTable(int size) {
+		int[] table = new int[size];
+		Arrays.fill(table, EMPTY);
+		return table;
+	}
+
+	private Postings posting(long gram) {
+		return postings.computeIfAbsent(gram, key -> new Postings());
+	}
+
+	private void ensureText(int extra) {
+		if (textLength + extra > text.length)
+			text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + extra));
+	}
+
+	private static long gram(long group, char c1, char c2, char c3) {
+		return group << 48 | (long) c1 << 32 | (long) c2 << 16 | c3;
+	}
+
+	private static boolean isDigits(String token) {
+		for (int i = 0; i < token.length(); i++)
+			if (token.charAt(i) < '0' || token.charAt(i) > '9')
+				return false;
+		return true;
+	}
+
+	private static String digits(String value) {
+		if (value == null)
+			return "";
+		StringBuilder result = new StringBuilder(value.length());
+		for (char c : value.toCharArray())
+			if (c >= '0' && c <= '9')
+				result.append(c);
+		return result.toString();
+	}
+
+	/**
+	 * Метод кодирует нормализованный текст по байту на символ: латиница и цифры -
+	 * кодами ASCII, кириллица - кодами 0x80-0x9F, прочие буквы - с потерей
+	 * точности (совпадение n-грамм для них проверяется по исходным символам).
+	 */
+	private static byte[] encode(String value) {
+		byte[] result = new byte[value.length()];
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x80)
+				result[i] = (byte) c;
+			else if (c >= 'а' && c <= 'я')
+				result[i] = (byte) (0x80 + (c - 'а'));
+			else
+				result[i] = (byte) (0xA0 | (c & 0x5F));
+		}
+		return result;
+	}
+
+	/**
+	 * Список документов n-граммы: возрастающие номера документов,
+	 * записанные разностями в формате varint.
+	 */
+	private static final class Postings {
+
+		private byte[] data = new byte[4];
+
+		private int length;
+
+		private int count;
+
+		private int last = -1;
+
+		void add(int document) {
+			if (document == last)
+				return;
+			if (length + 5 > data.length)
+				data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+			int delta = document - last;
+			while ((delta & ~0x7F) != 0) {
+				data[length++] = (byte) ((delta & 0x7F) | 0x80);
+				delta >>>= 7;
+			}
+			data[length++] = (byte) delta;
+			last = document;
+			count++;
+		}
+
+		int[] decode() {
+			int[] result = new int[count];
+			int position = 0;
+			int document = -1;
+			for (int i = 0; i < count; i++) {
+				int delta = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = data[position++];
+					delta |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				document += delta;
+				result[i] = document;
+			}
+			return result;
+		}
+
+		/**
+		 * Метод оставляет из возрастающего массива documents только
+		 * документы этого списка (слияние без распаковки списка целиком).
+		 */
+		int[] intersect(int[] documents) {
+			int[] result = new int[Math.min(count, documents.length)];
+			int found = 0;
+			int position = 0;
+			int document = -1;
+			int next = 0;
+			for (int i = 0; i < count && next < documents.length; i++) {
+				int delta = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = data[position++];
+					delta |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				document += delta;
+				while (next < documents.length && documents[next] < document)
+					next++;
+				if (next < documents.length && documents[next] == document)
+					result[found++] = document;
+			}
+			return Arrays.copyOf(result, found);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package naysav.spring.service.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Фильтр Блума по упакованным ключам паспортов всех клиентов в БД.
+ * Отрицательный ответ mightContain() означает, что клиента с таким паспортом
+ * гарантированно нет, и обращение к БД можно пропустить. Пока фильтр не
+ * заполнен при старте приложения, он отвечает "возможно есть" на любой ключ.
+ * Ключи только добавляются: удаления клиентов в сервисе нет.
+ */
+@Component
+public class PassportBloomFilter implements MeterBinder {
+
+	/**
+	 * Битовый массив фильтра.
+	 */
+	private final AtomicLongArray bits;
+
+	/**
+	 * Количество бит фильтра.
+	 */
+	private final long bitCount;
+
+	/**
+	 * Количество хеш-функций.
+	 */
+	private final int hashCount;
+
+	/**
+	 * Признак того, что фильтр заполнен всеми ключами из БД.
+	 */
+	private volatile boolean ready;
+
+	/**
+	 * Счетчики проверок и пропущенных (гарантированно отсутствующих) ключей.
+	 */
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder skips = new LongAdder();
+
+	/**
+	 * @param expectedInsertions - ожидаемое количество паспортов
+	 * @param falsePositiveRate - допустимая доля ложноположительных ответов
+	 */
+	public PassportBloomFilter(@Value("${customer.bloom.expected-insertions:1000000}") long expectedInsertions,
+	                           @Value("${customer.bloom.false-positive-rate:0.01}") double falsePositiveRate) {
+		if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1)
+			throw new IllegalArgumentException("Invalid bloom filter parameters: "
+					+ expectedInsertions + ", " + falsePositiveRate);
+		long bitsNeeded = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate)
+				/ (Math.log(2) * Math.log(2)));
+		int words = (int) Math.max(1, (bitsNeeded + 63) / 64);
+		this.bits = new AtomicLongArray(words);
+		this.bitCount = (long) words * 64;
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+	}
+
+	/**
+	 * Метод добавляет ключ паспорта в фильтр.
+	 */
+	public void put(long passportKey) {
+		long hash1 = mix(passportKey);
+		long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount;
+			int word = (int) (bit >>> 6);
+			long mask = 1L << bit;
+			long current;
+			while (((current = bits.get(word)) & mask) == 0
+					&& !bits.compareAndSet(word, current, current | mask)) {
+				// повтор при конкурентной записи в то же слово
+			}
+		}
+	}
+
+	/**
+	 * Метод проверяет, может ли паспорт с таким ключом быть в БД.
+	 * @return false, если клиента с таким паспортом гарантированно нет
+	 */
+	public boolean mightContain(long passportKey) {
+		if (!ready)
+			return true;
+		lookups.increment();
+		long hash1 = mix(passportKey);
+		long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount;
+			if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				skips.increment();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Метод помечает фильтр заполненным: с этого момента
+	 * отрицательные ответы позволяют пропускать обращения к БД.
+	 */
+	public void markReady() {
+		ready = true;
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Метод возвращает объем памяти битового массива в байтах.
+	 */
+	public long memoryBytes() {
+		return bitCount / 8;
+	}
+
+	/**
+	 * Метод возвращает долю проверок, завершившихся без обращения к БД.
+	 */
+	public double skipRate() {
+		long total = lookups.sum();
+		return total == 0 ? 0 : (double) skips.sum() / total;
+	}
+
+	/**
+	 * Метод оценивает текущую долю ложноположительных ответов
+	 * по заполненности битового массива.
+	 */
+	public double estimatedFalsePositiveRate() {
+		long set = 0;
+		for (int i = 0; i < bits.length(); i++)
+			set += Long.bitCount(bits.get(i));
+		return Math.pow((double) set / bitCount, hashCount);
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("customer.bloom.memory", this, PassportBloomFilter::memoryBytes)
+				.description("Size of the passport bloom filter bit array")
+				.baseUnit(BaseUnits.BYTES)
+				.register(registry);
+		Gauge.builder("customer.bloom.false.positive.rate", this,
+						PassportBloomFilter::estimatedFalsePositiveRate)
+				.description("Estimated false positive rate of the passport bloom filter")
+				.register(registry);
+		Gauge.builder("customer.bloom.skip.rate", this, PassportBloomFilter::skipRate)
+				.description("Share of passport lookups answered without a database query")
+				.register(registry);
+		FunctionCounter.builder("customer.bloom.lookups", lookups, LongAdder::sum)
+				.description("Passport lookups checked against the bloom filter")
+				.register(registry);
+		FunctionCounter.builder("customer.bloom.skips", skips, LongAdder::sum)
+				.description("Passport lookups answered by the bloom filter without a database query")
+				.register(registry);
+	}
+
+	/**
+	 * Финальное перемешивание MurmurHash3 (fmix64).
+	 */
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+}
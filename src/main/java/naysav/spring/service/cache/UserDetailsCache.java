@@ -0,0 +1,72 @@
+package naysav.spring.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Ближний (in-process) кэш учетных данных пользователей по логину.
+ * Снимает с таблицы user запросы при входе через форму и по cookie remember-me.
+ * Ограничен по количеству записей и времени жизни: изменения, сделанные
+ * другими экземплярами сервиса, становятся видны не позже чем через ttl.
+ * Статистика попаданий и промахов публикуется в Micrometer
+ * под именем кэша "users".
+ */
+@Component
+public class UserDetailsCache implements UserCache, MeterBinder {
+
+	/**
+	 * Кэш: ключ - логин, значение - учетные данные пользователя (UserPrincipal).
+	 */
+	private final Cache<String, UserDetails> cache;
+
+	/**
+	 * @param maximumSize - максимальное количество записей
+	 * @param ttl - время жизни записи
+	 */
+	public UserDetailsCache(@Value("${user.cache.maximum-size:10000}") long maximumSize,
+	                        @Value("${user.cache.ttl:5m}") Duration ttl) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+	}
+
+	@Override
+	public UserDetails getUserFromCache(String username) {
+		return cache.getIfPresent(username);
+	}
+
+	@Override
+	public void putUserInCache(UserDetails user) {
+		cache.put(user.getUsername(), user);
+	}
+
+	@Override
+	public void removeUserFromCache(String username) {
+		cache.invalidate(username);
+	}
+
+	/**
+	 * Метод возвращает накопленную статистику кэша.
+	 */
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, cache, "users");
+	}
+}
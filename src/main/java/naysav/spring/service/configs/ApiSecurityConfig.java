@@ -0,0 +1,168 @@
+package naysav.spring.service.configs;
+
+import naysav.spring.service.cache.CredentialsCache;
+import naysav.spring.service.services.PasswordHasher;
+import naysav.spring.service.services.UserService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Конфигурация Spring Security для JSON API (/api/**) и Actuator (/actuator/**,
+ * в том числе для сбора метрик Prometheus):
+ * HTTP Basic в каждом запросе, без HTTP-сессий и формы входа.
+ * /actuator/health доступен без входа (проверки балансировщика), остальные
+ * адреса Actuator - только учетной записи сборщика метрик (роль METRICS,
+ * задается свойствами metrics.scraper.*, а не регистрацией), которой
+ * в свою очередь закрыт API.
+ * Проверяется раньше основной конфигурации (SecurityConfig).
+ */
+@Configuration
+@Order(1)
+public class ApiSecurityConfig extends WebSecurityConfigurerAdapter {
+
+	private static final String REALM = "Service";
+
+	private static final String METRICS_ROLE = "METRICS";
+
+	/**
+	 * Поле для доступа к методу loadUserByUsername().
+	 */
+	@Autowired
+	UserService userService;
+
+	/**
+	 * Поле для доступа к шифрованию.
+	 */
+	@Autowired
+	PasswordHasher passwordHasher;
+
+	/**
+	 * Кэш успешных проверок пароля: без него каждый запрос API
+	 * выполнял бы BCrypt.
+	 */
+	@Autowired
+	CredentialsCache credentialsCache;
+
+	/**
+	 * Логин сборщика метрик; если не задан, метрики недоступны.
+	 */
+	@Value("${metrics.scraper.username:}")
+	String scraperUsername;
+
+	/**
+	 * BCrypt-хеш пароля сборщика метрик.
+	 */
+	@Value("${metrics.scraper.password:}")
+	String scraperPassword;
+
+	/**
+	 * Метод запрещает анонимный доступ к API и Actuator (кроме /actuator/health),
+	 * разделяет доступ пользователей и сборщика метрик и отключает создание сессий.
+	 */
+	@Override
+	protected void configure(HttpSecurity http) throws Exception {
+		http
+			.requestMatchers()
+				.antMatchers("/api/**", "/actuator/**")
+			.and()
+			.addFilterBefore(new PasswordHashingRejectionFilter(), BasicAuthenticationFilter.class)
+			.csrf()
+				.disable()
+			.sessionManagement()
+				.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+			.and()
+				.authorizeRequests()
+					.antMatchers("/actuator/health", "/actuator/health/**").permitAll()
+					.antMatchers("/actuator/**").hasRole(METRICS_ROLE)
+					.anyRequest().access("isAuthenticated() and !hasRole('" + METRICS_ROLE + "')")
+			.and()
+				.httpBasic()
+					.realmName(REALM)
+					.authenticationEntryPoint(ApiSecurityConfig::unauthorized);
+	}
+
+	/**
+	 * Метод отвечает 401 с телом JSON. Ответ пишется напрямую, а не через sendError():
+	 * иначе контейнер перенаправляет запрос на /error, который обрабатывается
+	 * основной конфигурацией (переадресация на форму входа и новая сессия).
+	 */
+	private static void unauthorized(HttpServletRequest request, HttpServletResponse response,
+	                                 AuthenticationException e) throws IOException {
+		response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+		response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"" + REALM + "\"");
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		response.getWriter().write("{\"error\":\"Неверный логин или пароль!\"}");
+	}
+
+	/**
+	 * Метод конфигурирует хранилище пользователей для API
+	 * и учетную запись сборщика метрик. Оба ищутся одним UserDetailsService:
+	 * при отдельном провайдере для сборщика каждый запрос пользователя API
+	 * выполнял бы в нем BCrypt по фиктивному хешу (защита от перебора логинов
+	 * по времени ответа), а неуспешные проверки не кэшируются.
+	 */
+	@Override
+	protected void configure(AuthenticationManagerBuilder auth) throws Exception {
+		auth
+			.userDetailsService(this::loadUserByUsername)
+			.passwordEncoder(passwordEncoder());
+	}
+
+	/**
+	 * Метод возвращает учетную запись сборщика метрик (если она задана)
+	 * или пользователя из UserService.
+	 */
+	private UserDetails loadUserByUsername(String username) {
+		if (StringUtils.hasText(scraperUsername) && StringUtils.hasText(scraperPassword)
+				&& scraperUsername.equals(username))
+			return User.withUsername(scraperUsername)
+					.password(scraperPassword)
+					.roles(METRICS_ROLE)
+					.build();
+		return userService.loadUserByUsername(username);
+	}
+
+	/**
+	 * Метод возвращает проверку паролей через пул хеширования
+	 * и кэш успешных проверок.
+	 */
+	private PasswordEncoder passwordEncoder() {
+		return new PasswordEncoder() {
+			@Override
+			public String encode(CharSequence rawPassword) {
+				return passwordHasher.encode(rawPassword);
+			}
+
+			@Override
+			public boolean matches(CharSequence rawPassword, String encodedPassword) {
+				return credentialsCache.matches(rawPassword, encodedPassword, passwordHasher::matches);
+			}
+
+			@Override
+			public boolean upgradeEncoding(String encodedPassword) {
+				return passwordHasher.upgradeEncoding(encodedPassword);
+			}
+		};
+	}
+}
@@ -0,0 +1,287 @@
+package naysav.spring.service.configs;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Хранилище HTTP-сессий с ближним (in-process) кэшем перед общим хранилищем.
+ * Чтение сессии обслуживается из кэша, в общее хранилище записываются только
+ * измененные атрибуты; время последнего обращения записывается не чаще
+ * раза в touchInterval. Сессия, измененная или удаленная на другом
+ * экземпляре сервиса, становится видна здесь не позже чем через ttl.
+ */
+public class CachingSessionRepository
+		implements FindByIndexNameSessionRepository<CachingSessionRepository.CachedSession>, MeterBinder {
+
+	/**
+	 * Общее хранилище сессий.
+	 */
+	private final FindByIndexNameSessionRepository<Session> delegate;
+
+	/**
+	 * Кэш: ключ - идентификатор сессии, значение - ее состояние в общем хранилище.
+	 */
+	private final Cache<String, MapSession> cache;
+
+	/**
+	 * Минимальный интервал записи времени последнего обращения.
+	 */
+	private final Duration touchInterval;
+
+	/**
+	 * Счетчик записей в общее хранилище.
+	 */
+	private final LongAdder writes = new LongAdder();
+
+	/**
+	 * @param delegate - общее хранилище сессий
+	 * @param maximumSize - максимальное количество сессий в кэше
+	 * @param ttl - время жизни сессии в кэше
+	 * @param touchInterval - минимальный интервал записи времени последнего обращения
+	 */
+	@SuppressWarnings("unchecked")
+	public CachingSessionRepository(FindByIndexNameSessionRepository<? extends Session> delegate,
+	                                long maximumSize, Duration ttl, Duration touchInterval) {
+		this.delegate = (FindByIndexNameSessionRepository<Session>) delegate;
+		this.touchInterval = touchInterval;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+	}
+
+	@Override
+	public CachedSession createSession() {
+		Session session = delegate.createSession();
+		return new CachedSession(new MapSession(session), session, true);
+	}
+
+	/**
+	 * Метод записывает в общее хранилище новую сессию, измененные атрибуты
+	 * или время последнего обращения, если с прошлой записи прошло больше touchInterval.
+	 * Сессию одного запроса могут записывать два потока: при асинхронной обработке
+	 * ответ фиксируется в потоке пула, а поток контейнера одновременно завершает
+	 * первую обработку запроса. Поэтому запись сессии синхронизирована: вторая
+	 * запись видит уже записанную сессию без изменений.
+	 */
+	@Override
+	public void save(CachedSession session) {
+		synchronized (session) {
+			MapSession stored = cache.getIfPresent(session.originalId);
+			boolean touched = stored == null || Duration.between(stored.getLastAccessedTime(),
+					session.getLastAccessedTime()).compareTo(touchInterval) >= 0;
+			if (!session.isNew() && !session.changed && session.changedAttributes.isEmpty() && !touched)
+				return;
+
+			Session target = session.target();
+			if (target == null)
+				// сессия удалена на другом экземпляре
+				return;
+			for (String name : session.changedAttributes)
+				target.setAttribute(name, session.getAttribute(name));
+			target.setMaxInactiveInterval(session.getMaxInactiveInterval());
+			target.setLastAccessedTime(session.getLastAccessedTime());
+			delegate.save(target);
+			writes.increment();
+
+			if (!session.originalId.equals(session.getId()))
+				cache.invalidate(session.originalId);
+			cache.put(session.getId(), new MapSession(session.session));
+			session.saved();
+		}
+	}
+
+	@Override
+	public CachedSession findById(String id) {
+		MapSession stored = cache.getIfPresent(id);
+		Session target = null;
+		if (stored == null) {
+			target = delegate.findById(id);
+			if (target == null)
+				return null;
+			stored = new MapSession(target);
+			cache.put(id, stored);
+		}
+		if (stored.isExpired()) {
+			deleteById(id);
+			return null;
+		}
+		return new CachedSession(new MapSession(stored), target, false);
+	}
+
+	@Override
+	public void deleteById(String id) {
+		cache.invalidate(id);
+		delegate.deleteById(id);
+	}
+
+	@Override
+	public Map<String, CachedSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+		Map<String, CachedSession> sessions = new LinkedHashMap<>();
+		delegate.findByIndexNameAndIndexValue(indexName, indexValue).forEach((id, session) ->
+				sessions.put(id, new CachedSession(new MapSession(session), session, false)));
+		return sessions;
+	}
+
+	/**
+	 * Метод возвращает накопленную статистику кэша.
+	 */
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	/**
+	 * Метод возвращает количество записей в общее хранилище.
+	 */
+	public long writes() {
+		return writes.sum();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, cache, "sessions");
+		FunctionCounter.builder("session.store.writes", writes, LongAdder::sum)
+				.description("Session writes to the shared session store")
+				.register(registry);
+	}
+
+	/**
+	 * Сессия одного запроса: копия состояния из кэша с учетом изменений.
+	 * Сессия общего хранилища загружается только при записи изменений.
+	 */
+	public final class CachedSession implements Session {
+
+		private final MapSession session;
+
+		/**
+		 * Сессия общего хранилища (null, пока не понадобится).
+		 */
+		private Session target;
+
+		/**
+		 * Идентификатор, под которым сессия хранится в кэше.
+		 */
+		private String originalId;
+
+		private boolean isNew;
+
+		/**
+		 * Изменены идентификатор или время жизни сессии.
+		 */
+		private boolean changed;
+
+		private final Set<String> changedAttributes = new HashSet<>();
+
+		CachedSession(MapSession session, Session target, boolean isNew) {
+			this.session = session;
+			this.target = target;
+			this.originalId = session.getId();
+			this.isNew = isNew;
+		}
+
+		@Override
+		public String getId() {
+			return session.getId();
+		}
+
+		@Override
+		public String changeSessionId() {
+			Session target = target();
+			String id = target != null ? target.changeSessionId() : session.changeSessionId();
+			session.setId(id);
+			changed = true;
+			return id;
+		}
+
+		@Override
+		public <T> T getAttribute(String attributeName) {
+			return session.getAttribute(attributeName);
+		}
+
+		@Override
+		public Set<String> getAttributeNames() {
+			return session.getAttributeNames();
+		}
+
+		@Override
+		public void setAttribute(String attributeName, Object attributeValue) {
+			session.setAttribute(attributeName, attributeValue);
+			changedAttributes.add(attributeName);
+		}
+
+		@Override
+		public void removeAttribute(String attributeName) {
+			setAttribute(attributeName, null);
+		}
+
+		@Override
+		public Instant getCreationTime() {
+			return session.getCreationTime();
+		}
+
+		@Override
+		public void setLastAccessedTime(Instant lastAccessedTime) {
+			session.setLastAccessedTime(lastAccessedTime);
+		}
+
+		@Override
+		public Instant getLastAccessedTime() {
+			return session.getLastAccessedTime();
+		}
+
+		@Override
+		public void setMaxInactiveInterval(Duration interval) {
+			if (!interval.equals(session.getMaxInactiveInterval()))
+				changed = true;
+			session.setMaxInactiveInterval(interval);
+		}
+
+		@Override
+		public Duration getMaxInactiveInterval() {
+			return session.getMaxInactiveInterval();
+		}
+
+		@Override
+		public boolean isExpired() {
+			return session.isExpired();
+		}
+
+		boolean isNew() {
+			return isNew;
+		}
+
+		/**
+		 * Метод возвращает сессию общего хранилища, при необходимости загружая ее.
+		 */
+		private Session target() {
+			if (target == null)
+				target = delegate.findById(originalId);
+			return target;
+		}
+
+		private void saved() {
+			originalId = session.getId();
+			isNew = false;
+			changed = false;
+			changedAttributes.clear();
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package naysav.spring.service.configs;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Резолвер статических ресурсов, отдающий текстовые ресурсы (CSS, JS, SVG)
+ * в gzip клиентам, которые его принимают. Ресурс сжимается с максимальной
+ * степенью один раз: сжатый вариант запоминается кэширующим резолвером
+ * цепочки (отдельно для запросов с gzip и без), поэтому при ответе
+ * отдаются готовые байты, а не сжатие на каждый запрос.
+ * Должен стоять в цепочке перед VersionResourceResolver.
+ */
+public class CompressingResourceResolver extends AbstractResourceResolver {
+
+	private static final String GZIP = "gzip";
+
+	private static final List<String> COMPRESSIBLE = Arrays.asList(".css", ".js", ".svg");
+
+	@Override
+	protected Resource resolveResourceInternal(HttpServletRequest request, String requestPath,
+	                                           List<? extends Resource> locations, ResourceResolverChain chain) {
+		Resource resource = chain.resolveResource(request, requestPath, locations);
+		if (resource == null || request == null || !acceptsGzip(request) || !isCompressible(resource))
+			return resource;
+		return new GzippedResource(resource);
+	}
+
+	@Override
+	protected String resolveUrlPathInternal(String resourceUrlPath, List<? extends Resource> locations,
+	                                        ResourceResolverChain chain) {
+		return chain.resolveUrlPath(resourceUrlPath, locations);
+	}
+
+	private static boolean acceptsGzip(HttpServletRequest request) {
+		String accept = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+		return accept != null && accept.toLowerCase().contains(GZIP);
+	}
+
+	private static boolean isCompressible(Resource resource) {
+		String filename = resource.getFilename();
+		return filename != null && COMPRESSIBLE.stream().anyMatch(filename::endsWith);
+	}
+
+	/**
+	 * Сжатый вариант ресурса: имя файла (а значит и Content-Type), дата изменения
+	 * и заголовки (ETag версии) - от исходного ресурса.
+	 */
+	static class GzippedResource extends AbstractResource implements HttpResource {
+
+		private final Resource original;
+
+		private final byte[] content;
+
+		GzippedResource(Resource original) {
+			this.original = original;
+			this.content = gzip(original);
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return new ByteArrayInputStream(content);
+		}
+
+		@Override
+		public long contentLength() {
+			return content.length;
+		}
+
+		@Override
+		public long lastModified() throws IOException {
+			return original.lastModified();
+		}
+
+		@Override
+		public String getFilename() {
+			return original.getFilename();
+		}
+
+		@Override
+		public String getDescription() {
+			return "gzip [" + original.getDescription() + "]";
+		}
+
+		@Override
+		public HttpHeaders getResponseHeaders() {
+			HttpHeaders headers = new HttpHeaders();
+			if (original instanceof HttpResource)
+				headers.putAll(((HttpResource) original).getResponseHeaders());
+			headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+			headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+			return headers;
+		}
+
+		private static byte[] gzip(Resource resource) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (InputStream in = resource.getInputStream();
+			     GZIPOutputStream out = new GZIPOutputStream(bytes) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+				StreamUtils.copy(in, out);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot compress " + resource.getDescription(), e);
+			}
+			return bytes.toByteArray();
+		}
+	}
+}
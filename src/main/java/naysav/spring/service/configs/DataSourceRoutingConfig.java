@@ -0,0 +1,126 @@
+package naysav.spring.service.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import naysav.spring.service.datasource.ReplicaRoutingDataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.session.jdbc.config.annotation.SpringSessionDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Чтение с реплик: включается свойством datasource.replica.urls (список адресов
+ * реплик, учетные данные - как у основной БД spring.datasource.*).
+ * Read-only транзакции (поиск клиентов, пользователей, списки) выполняются
+ * на репликах, запись и запросы вне транзакции - на основной БД
+ * (см. ReplicaRoutingDataSource). HTTP-сессии всегда хранятся в основной БД.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.urls")
+public class DataSourceRoutingConfig {
+
+	/**
+	 * Минимальные connectionTimeout и validationTimeout, которые принимает Hikari.
+	 */
+	private static final long MIN_TIMEOUT_MILLIS = 250;
+
+	/**
+	 * Метод создает пул соединений основной БД по свойствам spring.datasource.*
+	 * Пул напрямую используют HTTP-сессии: их запись не должна переключать
+	 * пользователя на основную БД.
+	 */
+	@Bean
+	@SpringSessionDataSource
+	public HikariDataSource primaryDataSource(DataSourceProperties properties, Environment environment,
+	                                          ObjectProvider<MeterRegistry> meterRegistry) {
+		return pool("primary", properties.determineUrl(), properties, environment, meterRegistry);
+	}
+
+	/**
+	 * Метод создает маршрутизатор с пулами реплик replica-0, replica-1, ...
+	 */
+	@Bean(destroyMethod = "close")
+	public ReplicaRoutingDataSource replicaRoutingDataSource(
+			HikariDataSource primaryDataSource, DataSourceProperties properties, Environment environment,
+			ObjectProvider<MeterRegistry> meterRegistry,
+			@Value("${datasource.replica.urls}") List<String> urls,
+			@Value("${datasource.replica.read-your-writes:10s}") Duration readYourWrites,
+			@Value("${datasource.replica.validation-timeout:2s}") Duration validationTimeout,
+			@Value("${datasource.replica.health-check-interval:PT5S}") Duration healthCheckInterval) {
+		// ожидание соединения с репликой ограничено тем же временем, что и ее проверка
+		// (а не 30 секундами Hikari по умолчанию), но не меньше минимума Hikari
+		long connectionTimeout = Math.max(validationTimeout.toMillis(), MIN_TIMEOUT_MILLIS);
+		Map<String, DataSource> replicas = new LinkedHashMap<>();
+		for (String url : urls) {
+			String name = "replica-" + replicas.size();
+			HikariDataSource replica = pool(name, url.trim(), properties, environment, meterRegistry);
+			// пул не проверяет реплику при создании: недоступная реплика не мешает старту
+			replica.setInitializationFailTimeout(-1);
+			replica.setConnectionTimeout(connectionTimeout);
+			replica.setValidationTimeout(Math.min(replica.getValidationTimeout(), connectionTimeout));
+			replicas.put(name, replica);
+		}
+		ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primaryDataSource, replicas,
+				readYourWrites, validationTimeout);
+		routing.startHealthChecks(healthCheckInterval);
+		return routing;
+	}
+
+	/**
+	 * Метод создает источник данных приложения: соединение берется
+	 * у маршрутизатора при первом запросе транзакции, когда уже известно,
+	 * что она read-only.
+	 */
+	@Bean
+	@Primary
+	public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+		return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+	}
+
+	/**
+	 * Метод настраивает Hibernate возвращать соединение после каждой транзакции
+	 * (по умолчанию оно удерживается до закрытия EntityManager, а при
+	 * open-in-view - до конца запроса, и запись после чтения попала бы на реплику).
+	 */
+	@Bean
+	public HibernatePropertiesCustomizer connectionReleaseCustomizer() {
+		return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+				PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+	}
+
+	/**
+	 * Метод создает пул соединений с учетными данными spring.datasource.*
+	 * и настройками spring.datasource.hikari.*
+	 */
+	private static HikariDataSource pool(String name, String url, DataSourceProperties properties,
+	                                     Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+				.type(HikariDataSource.class)
+				.url(url)
+				.build();
+		Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+		dataSource.setPoolName(name);
+		meterRegistry.ifAvailable(registry ->
+				dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+		return dataSource;
+	}
+}
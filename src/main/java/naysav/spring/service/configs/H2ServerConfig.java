@@ -0,0 +1,28 @@
+package naysav.spring.service.configs;
+
+import org.h2.tools.Server;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.sql.SQLException;
+
+/**
+ * Локальная замена общей БД для запуска нескольких экземпляров сервиса:
+ * экземпляр с профилем dev и заданным h2.server.port открывает свою
+ * in-memory БД по TCP, остальные подключаются к ней с профилем replica
+ * (общие пользователи, клиенты и HTTP-сессии).
+ */
+@Configuration
+@Profile("dev")
+@ConditionalOnProperty(name = "h2.server.port")
+public class H2ServerConfig {
+
+	@Bean(initMethod = "start", destroyMethod = "stop")
+	public Server h2TcpServer(@Value("${h2.server.port}") String port) throws SQLException {
+		return Server.createTcpServer("-tcp", "-tcpPort", port);
+	}
+}
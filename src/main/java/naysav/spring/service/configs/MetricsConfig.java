@@ -0,0 +1,23 @@
+package naysav.spring.service.configs;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация метрик: методы сервисов, отмеченные @Timed, публикуются
+ * как таймеры с тегами class, method и exception (количество ошибок
+ * по типу исключения). Процентили и гистограммы таймеров задаются
+ * свойствами management.metrics.distribution.*, метрики отдаются
+ * в формате Prometheus на /actuator/prometheus.
+ */
+@Configuration
+public class MetricsConfig {
+
+	@Bean
+	public TimedAspect timedAspect(MeterRegistry registry) {
+		return new TimedAspect(registry);
+	}
+}
@@ -0,0 +1,53 @@
+package naysav.spring.service.configs;
+
+import naysav.spring.service.services.PasswordHashingRejectedException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Фильтр отвечает 429 Too Many Requests, если при входе или регистрации
+ * пул хеширования паролей переполнен (PasswordHashingRejectedException).
+ * Стоит в цепочке Spring Security перед формой входа, поэтому перехватывает
+ * исключение как из фильтра аутентификации, так и из контроллеров.
+ */
+public class PasswordHashingRejectionFilter extends OncePerRequestFilter {
+
+	/**
+	 * Рекомендуемая пауза перед повтором, в секундах.
+	 */
+	private static final String RETRY_AFTER = "1";
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+	                                FilterChain chain) throws ServletException, IOException {
+		try {
+			chain.doFilter(request, response);
+		} catch (ServletException | RuntimeException e) {
+			if (!isRejection(e) || response.isCommitted())
+				throw e;
+			response.reset();
+			response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+			response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER);
+			response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+			response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+			response.getWriter().write("Сервис перегружен, повторите попытку позже");
+		}
+	}
+
+	private static boolean isRejection(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause())
+			if (cause instanceof PasswordHashingRejectedException)
+				return true;
+		return false;
+	}
+}
@@ -1,5 +1,6 @@
 package naysav.spring.service.configs;
 
+import naysav.spring.service.services.PasswordHasher;
 import naysav.spring.service.services.UserService;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,9 +8,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 /**
  * Конфигурация Spring Security
@@ -27,9 +29,10 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
 	/**
 	 * Поле для доступа к шифрованию.
+	 * Проверка пароля выполняется в пуле хеширования.
 	 */
 	@Autowired
-	BCryptPasswordEncoder bCryptPasswordEncoder;
+	PasswordHasher passwordHasher;
 
 	/**
 	 * Метод устанавливает разграничение доступа к страницам веб-приложения,
@@ -38,10 +41,11 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 	@Override
 	protected void configure(HttpSecurity http) throws Exception {
 		http
+			.addFilterBefore(new PasswordHashingRejectionFilter(), UsernamePasswordAuthenticationFilter.class)
 			.csrf()
 				.disable()
 			.authorizeRequests()
-				.antMatchers("/", "/registration", "/css/*").permitAll()
+				.antMatchers("/", "/registration").permitAll()
 				.anyRequest().authenticated()
 			.and()
 				.formLogin()
@@ -57,18 +61,30 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 					.logoutSuccessUrl("/")
 					.clearAuthentication(true)
 					.invalidateHttpSession(true)
-					.deleteCookies("JSESSIONID", "remember-me")
+					.deleteCookies("SESSION", "remember-me")
 					.permitAll();
 	}
 
+	/**
+	 * Метод исключает статические ресурсы из цепочек фильтров Spring Security
+	 * (в том числе API): для них не проверяется аутентификация, не читается
+	 * и не создается сессия и не добавляются заголовки запрета кэширования.
+	 */
+	@Override
+	public void configure(WebSecurity web) {
+		web.ignoring().antMatchers(StaticResourceConfig.PATHS);
+	}
+
 	/**
 	 * Метод конфигурирует хранилище пользователей для авторизации.
+	 * UserService также реализует UserDetailsPasswordService, поэтому
+	 * после успешного входа пароль со старой стоимостью хеширования перехешируется.
 	 */
 	@Override
 	protected void configure(AuthenticationManagerBuilder auth) throws Exception {
 		auth
 			.userDetailsService(userService)
-			.passwordEncoder(bCryptPasswordEncoder);
+			.passwordEncoder(passwordHasher);
 
 	}
 }
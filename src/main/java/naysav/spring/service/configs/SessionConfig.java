@@ -0,0 +1,69 @@
+package naysav.spring.service.configs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.session.JdbcSessionDataSourceInitializer;
+import org.springframework.boot.autoconfigure.session.JdbcSessionProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.session.config.SessionRepositoryCustomizer;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.session.jdbc.config.annotation.web.http.EnableJdbcHttpSession;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Конфигурация HTTP-сессий: сессии хранятся в таблицах SPRING_SESSION общей БД,
+ * поэтому экземпляры сервиса за балансировщиком не требуют sticky-сессий,
+ * а перезапуск экземпляра не разлогинивает пользователей.
+ * Перед общим хранилищем стоит ближний кэш (CachingSessionRepository).
+ */
+@Configuration
+@EnableJdbcHttpSession
+@EnableConfigurationProperties(JdbcSessionProperties.class)
+public class SessionConfig {
+
+	/**
+	 * Метод настраивает хранилище сессий в БД:
+	 * время жизни сессии берется из server.servlet.session.timeout.
+	 */
+	@Bean
+	public SessionRepositoryCustomizer<JdbcIndexedSessionRepository> jdbcSessionRepositoryCustomizer(
+			@Value("${server.servlet.session.timeout:30m}") Duration timeout,
+			JdbcSessionProperties properties) {
+		return repository -> {
+			repository.setDefaultMaxInactiveInterval((int) timeout.getSeconds());
+			repository.setTableName(properties.getTableName());
+			repository.setFlushMode(properties.getFlushMode());
+			repository.setSaveMode(properties.getSaveMode());
+		};
+	}
+
+	/**
+	 * Метод создает таблицы сессий во встроенной БД (H2) при старте;
+	 * для MySQL таблицы создаются вручную (см. README).
+	 */
+	@Bean
+	public JdbcSessionDataSourceInitializer jdbcSessionDataSourceInitializer(DataSource dataSource,
+	                                                                         ResourceLoader resourceLoader,
+	                                                                         JdbcSessionProperties properties) {
+		return new JdbcSessionDataSourceInitializer(dataSource, resourceLoader, properties);
+	}
+
+	/**
+	 * Метод создает хранилище сессий с ближним кэшем, которое используется
+	 * фильтром Spring Session вместо обращения к БД на каждый запрос.
+	 */
+	@Bean
+	@Primary
+	public CachingSessionRepository cachingSessionRepository(
+			JdbcIndexedSessionRepository sessionRepository,
+			@Value("${session.cache.maximum-size:10000}") long maximumSize,
+			@Value("${session.cache.ttl:30s}") Duration ttl,
+			@Value("${session.touch-interval:1m}") Duration touchInterval) {
+		return new CachingSessionRepository(sessionRepository, maximumSize, ttl, touchInterval);
+	}
+}
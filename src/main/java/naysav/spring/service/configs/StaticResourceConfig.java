@@ -0,0 +1,103 @@
+package naysav.spring.service.configs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.session.web.http.SessionRepositoryFilter;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Конфигурация статических ресурсов (стили и библиотеки из static/css и static/vendor).
+ * Ссылки на ресурсы в шаблонах (th:href/th:src="@{...}") переписываются на адреса
+ * с хешем содержимого (style-&lt;md5&gt;.css), поэтому ресурс отдается с заголовком
+ * Cache-Control на год и immutable: браузер не перепроверяет его, а измененный
+ * файл получает новый адрес. Текстовые ресурсы отдаются сжатыми (CompressingResourceResolver).
+ * Запросы ресурсов не проходят через Spring Security (см. SecurityConfig)
+ * и не читают HTTP-сессию.
+ */
+@Configuration
+public class StaticResourceConfig implements WebMvcConfigurer {
+
+	/**
+	 * Адреса статических ресурсов.
+	 */
+	public static final String[] PATHS = {"/css/**", "/vendor/**"};
+
+	private static final String[] LOCATIONS = {"classpath:/static/css/", "classpath:/static/vendor/"};
+
+	/**
+	 * Cache-Control для адресов с хешем содержимого: "immutable" в CacheControl
+	 * Spring нет, поэтому значение заголовка задается целиком.
+	 */
+	private static final CacheControl IMMUTABLE = new CacheControl() {
+		@Override
+		public String getHeaderValue() {
+			return "max-age=" + Duration.ofDays(365).getSeconds() + ", public, immutable";
+		}
+	};
+
+	/**
+	 * Кэшировать ли найденные (и сжатые) ресурсы; devtools отключает кэш при разработке.
+	 */
+	@Value("${spring.web.resources.chain.cache:true}")
+	boolean cacheResources;
+
+	@Override
+	public void addResourceHandlers(ResourceHandlerRegistry registry) {
+		for (int i = 0; i < PATHS.length; i++)
+			registry.addResourceHandler(PATHS[i])
+					.addResourceLocations(LOCATIONS[i])
+					.setCacheControl(IMMUTABLE)
+					.resourceChain(cacheResources)
+					.addResolver(new CompressingResourceResolver())
+					.addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+	}
+
+	/**
+	 * Фильтр для запросов ресурсов, стоящий после фильтра Spring Session:
+	 * DispatcherServlet запрашивает существующую сессию (flash-атрибуты) на каждый
+	 * запрос, и без фильтра ресурс с cookie SESSION читал бы сессию из хранилища.
+	 */
+	@Bean
+	public FilterRegistrationBean<OncePerRequestFilter> staticResourceSessionFilter() {
+		FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(new OncePerRequestFilter() {
+			@Override
+			protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+			                                FilterChain chain) throws ServletException, IOException {
+				chain.doFilter(new HttpServletRequestWrapper(request) {
+					@Override
+					public HttpSession getSession(boolean create) {
+						return create ? super.getSession(true) : null;
+					}
+				}, response);
+			}
+		});
+		for (String path : PATHS)
+			registration.addUrlPatterns(path.replace("/**", "/*"));
+		registration.setOrder(SessionRepositoryFilter.DEFAULT_ORDER + 1);
+		return registration;
+	}
+
+	/**
+	 * Фильтр, через который шаблоны получают адреса ресурсов с хешем содержимого.
+	 */
+	@Bean
+	public FilterRegistrationBean<ResourceUrlEncodingFilter> resourceUrlEncodingFilter() {
+		return new FilterRegistrationBean<>(new ResourceUrlEncodingFilter());
+	}
+}
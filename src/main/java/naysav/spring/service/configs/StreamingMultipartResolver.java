@@ -0,0 +1,171 @@
+package naysav.spring.service.configs;
+
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.DefaultMultipartHttpServletRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Потоковый разбор multipart-запросов вместо буферизации контейнером сервлетов
+ * (spring.servlet.multipart.enabled=false).
+ * Поля формы читаются из тела запроса до первой части с файлом, а сам файл
+ * не сохраняется во временный каталог: его содержимое читается из тела запроса
+ * напрямую тем, кто обрабатывает загрузку. Поэтому часть с файлом должна быть
+ * последней в форме - поля после нее не читаются.
+ */
+@Component("multipartResolver")
+public class StreamingMultipartResolver implements MultipartResolver {
+
+	/**
+	 * Максимальный размер значения поля формы.
+	 */
+	static final int MAX_FIELD_SIZE = 64 * 1024;
+
+	@Override
+	public boolean isMultipart(HttpServletRequest request) {
+		return ServletFileUpload.isMultipartContent(request);
+	}
+
+	@Override
+	public MultipartHttpServletRequest resolveMultipart(HttpServletRequest request) throws MultipartException {
+		MultiValueMap<String, MultipartFile> files = new LinkedMultiValueMap<>();
+		Map<String, String[]> parameters = new LinkedHashMap<>();
+		String encoding = request.getCharacterEncoding() != null
+				? request.getCharacterEncoding() : StandardCharsets.UTF_8.name();
+		try {
+			FileItemIterator items = new ServletFileUpload().getItemIterator(request);
+			while (items.hasNext()) {
+				FileItemStream item = items.next();
+				if (!item.isFormField()) {
+					files.add(item.getFieldName(), new StreamingMultipartFile(item));
+					break;
+				}
+				String value = new String(readField(item), encoding);
+				String[] values = parameters.get(item.getFieldName());
+				if (values == null) {
+					values = new String[]{value};
+				} else {
+					String[] extended = new String[values.length + 1];
+					System.arraycopy(values, 0, extended, 0, values.length);
+					extended[values.length] = value;
+					values = extended;
+				}
+				parameters.put(item.getFieldName(), values);
+			}
+		} catch (FileUploadException | IOException e) {
+			throw new MultipartException("Failed to parse multipart request", e);
+		}
+		return new DefaultMultipartHttpServletRequest(request, files, parameters, Collections.emptyMap());
+	}
+
+	@Override
+	public void cleanupMultipart(MultipartHttpServletRequest request) {
+		// временных файлов нет - очищать нечего
+	}
+
+	/**
+	 * Метод читает значение поля формы, ограничивая его размер.
+	 */
+	private static byte[] readField(FileItemStream item) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		try (InputStream in = item.openStream()) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				if (out.size() + read > MAX_FIELD_SIZE)
+					throw new MaxUploadSizeExceededException(MAX_FIELD_SIZE);
+				out.write(buffer, 0, read);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Файл, содержимое которого читается напрямую из тела запроса.
+	 * Размер заранее неизвестен, а содержимое можно прочитать только один раз.
+	 */
+	static class StreamingMultipartFile implements MultipartFile {
+
+		private final FileItemStream item;
+
+		private boolean consumed;
+
+		StreamingMultipartFile(FileItemStream item) {
+			this.item = item;
+		}
+
+		@Override
+		public String getName() {
+			return item.getFieldName();
+		}
+
+		@Override
+		public String getOriginalFilename() {
+			return item.getName();
+		}
+
+		@Override
+		public String getContentType() {
+			return item.getContentType();
+		}
+
+		/**
+		 * Пустота файла становится известна только при чтении,
+		 * поэтому файл без имени считается пустым (поле не заполнено).
+		 */
+		@Override
+		public boolean isEmpty() {
+			return item.getName() == null || item.getName().isEmpty();
+		}
+
+		/**
+		 * @return -1: размер неизвестен до чтения тела запроса
+		 */
+		@Override
+		public long getSize() {
+			return -1;
+		}
+
+		@Override
+		public byte[] getBytes() throws IOException {
+			return FileCopyUtils.copyToByteArray(getInputStream());
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			if (consumed)
+				throw new IllegalStateException("Streamed file " + getName() + " has already been read");
+			consumed = true;
+			return item.openStream();
+		}
+
+		@Override
+		public void transferTo(File dest) throws IOException {
+			try (InputStream in = getInputStream()) {
+				Files.copy(in, dest.toPath());
+			}
+		}
+	}
+}
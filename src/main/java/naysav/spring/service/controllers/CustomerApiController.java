@@ -0,0 +1,356 @@
+package naysav.spring.service.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import naysav.spring.service.cache.CustomerSearchIndex;
+import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.CustomerFilter;
+import naysav.spring.service.models.PassportKey;
+import naysav.spring.service.models.StoredDocument;
+import naysav.spring.service.services.CustomerService;
+import naysav.spring.service.services.DocumentIoExecutor;
+import naysav.spring.service.services.DocumentIoRejectedException;
+import naysav.spring.service.services.DocumentRejectedException;
+import naysav.spring.service.services.DocumentStore;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.Errors;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
+import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Класс-контроллер JSON API клиентов для внутренних инструментов:
+ * список клиентов, поиск по паспорту (в том числе пакетный), по имени и телефону,
+ * создание клиента и сведения о его PDF-файле.
+ * В отличие от MainController не рендерит шаблоны и не использует сессии
+ * (аутентификация HTTP Basic в каждом запросе, см. ApiSecurityConfig).
+ */
+@RestController
+@RequestMapping("/api/customers")
+public class CustomerApiController {
+
+	private static final String NDJSON = "application/x-ndjson";
+
+	/**
+	 * Сервисный класс для работы с данными клиентов.
+	 */
+	@Autowired
+	CustomerService customerService;
+
+	/**
+	 * Хранилище PDF-файлов клиентов.
+	 */
+	@Autowired
+	DocumentStore documentStore;
+
+	/**
+	 * Максимальный размер загружаемого PDF-файла.
+	 */
+	@Value("${upload.max-size:10MB}")
+	private DataSize maxFileSize;
+
+	/**
+	 * Количество строк пакетного поиска, разрешаемых одним запросом к БД.
+	 */
+	@Value("${api.lookup.chunk-size:500}")
+	int lookupChunkSize;
+
+	/**
+	 * Разбор и запись строк NDJSON пакетного поиска.
+	 */
+	@Autowired
+	ObjectMapper objectMapper;
+
+	/**
+	 * Пул чтения и записи файлов вне потоков Tomcat.
+	 */
+	@Autowired
+	DocumentIoExecutor documentIoExecutor;
+
+	/**
+	 * Валидатор ограничений модели Customer.
+	 */
+	@Autowired
+	Validator validator;
+
+	/**
+	 * Метод возвращает страницу списка клиентов с фильтрами по фамилии,
+	 * полу и возрасту. Следующая страница запрашивается с параметром
+	 * after, равным полю next ответа.
+	 * @return 200 и страница клиентов, 400 - если параметры некорректны
+	 */
+	@GetMapping
+	public ResponseEntity<?> list(@Valid CustomerFilter filter, Errors errors) {
+		if (errors.hasErrors())
+			return ResponseEntity.badRequest().body(fieldErrors(errors));
+		try {
+			return ResponseEntity.ok(customerService.listCustomers(filter));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Collections.singletonMap("after", "• некорректная позиция"));
+		}
+	}
+
+	/**
+	 * Метод ищет клиентов по части фамилии, имени или номера телефона.
+	 * @return 200 и клиенты по убыванию релевантности,
+	 *         400 - если в запросе нет слов из двух и более символов
+	 */
+	@GetMapping("/search")
+	public ResponseEntity<?> search(@RequestParam String q,
+	                                @RequestParam(defaultValue = "" + CustomerSearchIndex.DEFAULT_RESULTS) int limit) {
+		if (CustomerSearchIndex.tokens(q).isEmpty())
+			return error(HttpStatus.BAD_REQUEST, "Введите не менее "
+					+ CustomerSearchIndex.MIN_QUERY_LENGTH + " символов");
+		int results = Math.max(1, Math.min(limit, CustomerSearchIndex.MAX_RESULTS));
+		return ResponseEntity.ok(customerService.searchCustomers(q, results));
+	}
+
+	/**
+	 * Метод пакетного поиска клиентов по паспортам. Тело запроса - NDJSON,
+	 * по одному объекту {"passportSeries": ..., "passportNumber": ...} в строке.
+	 * Строки читаются порциями по lookupChunkSize, каждая порция разрешается
+	 * одним запросом к БД, и ее результаты сразу отправляются клиенту
+	 * (NDJSON в порядке строк запроса: found и customer, found=false или error).
+	 */
+	@PostMapping(value = "/lookup", consumes = NDJSON)
+	public void lookup(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+	                   InputStream body, HttpServletResponse response) throws IOException {
+		Charset charset = contentType.getCharset() != null
+				? contentType.getCharset()
+				: StandardCharsets.UTF_8;
+		BufferedReader lines = new BufferedReader(new InputStreamReader(body, charset));
+		response.setContentType(NDJSON);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+		List<LookupRow> chunk = new ArrayList<>(lookupChunkSize);
+		String line;
+		long lineNumber = 0;
+		while ((line = lines.readLine()) != null) {
+			lineNumber++;
+			if (line.trim().isEmpty())
+				continue;
+			chunk.add(parseLookupRow(lineNumber, line));
+			if (chunk.size() >= lookupChunkSize) {
+				writeLookupChunk(chunk, out);
+				chunk.clear();
+			}
+		}
+		writeLookupChunk(chunk, out);
+	}
+
+	/**
+	 * Метод ищет клиента по серии и номеру паспорта.
+	 * @return 200 и данные клиента, 400 - если паспорт некорректен, 404 - если клиент не найден
+	 */
+	@GetMapping("/{passportSeries}/{passportNumber}")
+	public ResponseEntity<?> find(@PathVariable String passportSeries,
+	                              @PathVariable String passportNumber) {
+		Map<String, String> errors = validatePassport(passportSeries, passportNumber);
+		if (!errors.isEmpty())
+			return ResponseEntity.badRequest().body(errors);
+		Customer customer = customerService.findCustomer(passportSeries, passportNumber);
+		if (customer == null)
+			return ResponseEntity.notFound().build();
+		return ResponseEntity.ok(new CustomerSummary(customer));
+	}
+
+	/**
+	 * Метод возвращает сведения о PDF-файле клиента.
+	 * @return 200 и сведения о файле, 400 - если паспорт некорректен,
+	 *         404 - если клиент или файл не найден
+	 */
+	@GetMapping("/{passportSeries}/{passportNumber}/document")
+	public ResponseEntity<?> document(@PathVariable String passportSeries,
+	                                  @PathVariable String passportNumber) {
+		Map<String, String> errors = validatePassport(passportSeries, passportNumber);
+		if (!errors.isEmpty())
+			return ResponseEntity.badRequest().body(errors);
+		Customer customer = customerService.findCustomer(passportSeries, passportNumber);
+		StoredDocument document = customer == null ? null : documentStore.describe(customer.getLinkToFile());
+		if (document == null)
+			return ResponseEntity.notFound().build();
+		String url = ServletUriComponentsBuilder.fromCurrentContextPath()
+				.path("/fileView").queryParam("id", document.getHash()).toUriString();
+		return ResponseEntity.ok(new DocumentSummary(document.getHash(), document.getSize(),
+				document.getRefCount(), url));
+	}
+
+	/**
+	 * Метод создает клиента из полей multipart/form-data и PDF-файла (поле file).
+	 * Формат файла определяется по его содержимому при чтении, Content-Type части
+	 * не учитывается. Чтение файла и запись клиента выполняются в пуле DocumentIoExecutor.
+	 * @return 201 и данные клиента, 400 - если поля некорректны, 409 - если клиент
+	 *         с таким паспортом уже есть, 413/415 - если файл слишком большой или не PDF,
+	 *         503 - если очередь пула заполнена
+	 */
+	@PostMapping
+	public DeferredResult<ResponseEntity<?>> create(@Valid Customer customer, Errors errors,
+	                                                @RequestParam("file") MultipartFile file) {
+		if (errors.hasErrors())
+			return DocumentIoExecutor.completed(ResponseEntity.badRequest().body(fieldErrors(errors)));
+		if (customerService.findCustomer(customer.getPassportSeries(), customer.getPassportNumber()) != null)
+			return DocumentIoExecutor.completed(
+					error(HttpStatus.CONFLICT, "Клиент с такими паспортными данными уже есть!"));
+		URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+				.path("/{passportSeries}/{passportNumber}")
+				.buildAndExpand(customer.getPassportSeries(), customer.getPassportNumber())
+				.toUri();
+		return documentIoExecutor.submit(() -> {
+			if (!customerService.saveCustomer(customer, file))
+				return error(HttpStatus.INTERNAL_SERVER_ERROR, "Не удалось добавить клиента!");
+			return ResponseEntity.created(location).body(new CustomerSummary(customer));
+		});
+	}
+
+	/**
+	 * Метод отвечает 503, если очередь пула чтения и записи файлов заполнена.
+	 */
+	@ExceptionHandler(DocumentIoRejectedException.class)
+	public ResponseEntity<Map<String, String>> documentIoRejected() {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, "1")
+				.body(Collections.singletonMap("error", "Сервис перегружен, повторите попытку позже"));
+	}
+
+	/**
+	 * Метод отвечает на отклонение файла при чтении (размер или сигнатура PDF).
+	 */
+	@ExceptionHandler(DocumentRejectedException.class)
+	public ResponseEntity<Map<String, String>> documentRejected(DocumentRejectedException e) {
+		if (e.getReason() == DocumentRejectedException.Reason.TOO_LARGE)
+			return error(HttpStatus.PAYLOAD_TOO_LARGE,
+					"Файл не должен превышать " + maxFileSize.toMegabytes() + " MB!");
+		return error(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Загруженный файл должен быть формата PDF!");
+	}
+
+	/**
+	 * Метод разрешает порцию строк пакетного поиска и отправляет результаты.
+	 */
+	private void writeLookupChunk(List<LookupRow> chunk, Writer out) throws IOException {
+		Set<Long> passportKeys = new HashSet<>();
+		for (LookupRow row : chunk)
+			if (row.error == null)
+				passportKeys.add(row.passportKey);
+		Map<Long, Customer> found = passportKeys.isEmpty()
+				? Collections.emptyMap()
+				: customerService.findCustomers(passportKeys);
+		for (LookupRow row : chunk) {
+			PassportLookupResult result;
+			if (row.error != null)
+				result = PassportLookupResult.error(row.line, row.passportSeries, row.passportNumber, row.error);
+			else if (found.containsKey(row.passportKey))
+				result = PassportLookupResult.found(row.line, row.passportSeries, row.passportNumber,
+						new CustomerSummary(found.get(row.passportKey)));
+			else
+				result = PassportLookupResult.notFound(row.line, row.passportSeries, row.passportNumber);
+			out.write(objectMapper.writeValueAsString(result));
+			out.write('\n');
+		}
+		out.flush();
+	}
+
+	private LookupRow parseLookupRow(long lineNumber, String line) {
+		LookupRow row = new LookupRow(lineNumber);
+		JsonNode node;
+		try {
+			node = objectMapper.readTree(line);
+		} catch (JsonProcessingException e) {
+			row.error = "Строка не разобрана: " + e.getOriginalMessage();
+			return row;
+		}
+		row.passportSeries = node.path("passportSeries").asText(null);
+		row.passportNumber = node.path("passportNumber").asText(null);
+		Map<String, String> errors = validatePassport(String.valueOf(row.passportSeries),
+				String.valueOf(row.passportNumber));
+		if (errors.isEmpty())
+			row.passportKey = PassportKey.pack(row.passportSeries, row.passportNumber);
+		else
+			row.error = String.join(", ", errors.values());
+		return row;
+	}
+
+	/**
+	 * Строка запроса пакетного поиска.
+	 */
+	private static class LookupRow {
+		final long line;
+		String passportSeries;
+		String passportNumber;
+		long passportKey;
+		String error;
+
+		LookupRow(long line) {
+			this.line = line;
+		}
+	}
+
+	private static Map<String, String> fieldErrors(Errors errors) {
+		Map<String, String> fields = new LinkedHashMap<>();
+		for (FieldError error : errors.getFieldErrors())
+			fields.putIfAbsent(error.getField(), error.getDefaultMessage());
+		return fields;
+	}
+
+	/**
+	 * Метод проверяет серию и номер паспорта ограничениями модели Customer
+	 * (те же сообщения, что и в форме создания клиента). Корректный паспорт
+	 * проверяется без валидатора: строки пакетного поиска почти всегда корректны.
+	 * @return сообщения об ошибках по полям, пустые - если паспорт корректен
+	 */
+	private Map<String, String> validatePassport(String passportSeries, String passportNumber) {
+		Map<String, String> errors = new LinkedHashMap<>();
+		if (PassportKey.isValidSeries(passportSeries) && PassportKey.isValidNumber(passportNumber))
+			return errors;
+		validate("passportSeries", passportSeries, errors);
+		validate("passportNumber", passportNumber, errors);
+		return errors;
+	}
+
+	private void validate(String field, String value, Map<String, String> errors) {
+		for (ConstraintViolation<Customer> violation : validator.validateValue(Customer.class, field, value))
+			errors.putIfAbsent(field, violation.getMessage());
+	}
+
+	private static ResponseEntity<Map<String, String>> error(HttpStatus status, String message) {
+		return ResponseEntity.status(status).body(Collections.singletonMap("error", message));
+	}
+}
@@ -0,0 +1,49 @@
+package naysav.spring.service.controllers;
+
+import naysav.spring.service.services.CustomerImportReport;
+import naysav.spring.service.services.CustomerImportService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Класс-контроллер массового импорта клиентов.
+ * Тело запроса читается потоком и передается сервисному слою
+ * без загрузки файла в память.
+ */
+@RestController
+public class CustomerImportController {
+
+	/**
+	 * Сервисный класс массового импорта клиентов.
+	 */
+	@Autowired
+	CustomerImportService customerImportService;
+
+	/**
+	 * Метод импортирует клиентов из тела запроса в формате CSV (text/csv)
+	 * или NDJSON (application/x-ndjson).
+	 * @return отчет с количеством импортированных строк, ошибками и скоростью
+	 */
+	@PostMapping(value = "/customers/import", consumes = {"text/csv", "application/x-ndjson"})
+	public CustomerImportReport importCustomers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+	                                            InputStream body) throws IOException {
+		CustomerImportService.Format format = "csv".equals(contentType.getSubtype())
+				? CustomerImportService.Format.CSV
+				: CustomerImportService.Format.NDJSON;
+		Charset charset = contentType.getCharset() != null
+				? contentType.getCharset()
+				: StandardCharsets.UTF_8;
+		return customerImportService.importCustomers(new InputStreamReader(body, charset), format);
+	}
+}
@@ -0,0 +1,39 @@
+package naysav.spring.service.controllers;
+
+import lombok.Getter;
+import naysav.spring.service.models.Customer;
+
+/**
+ * Данные клиента в ответах JSON API, без служебных полей сущности.
+ */
+@Getter
+public class CustomerSummary {
+
+	private final String firstName;
+
+	private final String lastName;
+
+	private final String gender;
+
+	private final String age;
+
+	private final String passportSeries;
+
+	private final String passportNumber;
+
+	private final String phoneNumber;
+
+	/** Идентификатор PDF-файла с данными клиента. */
+	private final String documentId;
+
+	public CustomerSummary(Customer customer) {
+		this.firstName = customer.getFirstName();
+		this.lastName = customer.getLastName();
+		this.gender = customer.getGender();
+		this.age = customer.getAge();
+		this.passportSeries = customer.getPassportSeries();
+		this.passportNumber = customer.getPassportNumber();
+		this.phoneNumber = customer.getPhoneNumber();
+		this.documentId = customer.getLinkToFile();
+	}
+}
@@ -0,0 +1,24 @@
+package naysav.spring.service.controllers;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Сведения о PDF-файле клиента в ответах JSON API.
+ */
+@Getter
+@AllArgsConstructor
+public class DocumentSummary {
+
+	/** SHA-256 содержимого файла. */
+	private final String id;
+
+	/** Размер файла в байтах. */
+	private final long size;
+
+	/** Количество клиентов, ссылающихся на файл. */
+	private final int refCount;
+
+	/** Адрес для скачивания файла. */
+	private final String url;
+}
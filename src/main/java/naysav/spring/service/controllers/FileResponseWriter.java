@@ -0,0 +1,212 @@
+package naysav.spring.service.controllers;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Компонент, отдающий файл в HTTP-ответ.
+ * Поддерживает условные запросы (ETag/If-None-Match, Last-Modified/If-Modified-Since
+ * с ответом 304) и запросы диапазона байт (Range/If-Range с ответом 206).
+ * Без копирования через кучу файл передается только при поддержке sendfile
+ * контейнером (Tomcat NIO): передача поручается ему. Иначе используется
+ * FileChannel.transferTo() в поток ответа: для канала поверх OutputStream
+ * JDK копирует данные через временный буфер, и контейнер - в свой буфер ответа.
+ * Содержимое, отображенное в память, также копируется в поток ответа.
+ * Объем отданных файлов публикуется в Micrometer.
+ */
+@Component
+public class FileResponseWriter implements MeterBinder {
+
+	/** Атрибуты запроса Tomcat для передачи файла через sendfile. */
+	static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+	static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	/**
+	 * Объем отданного содержимого (для sendfile - переданного контейнеру).
+	 */
+	private final LongAdder downloadedBytes = new LongAdder();
+
+	/**
+	 * Метод проверяет, передаст ли контейнер файл через sendfile: в этом случае
+	 * файл пишется в ответ после завершения обработчика без участия его потока.
+	 */
+	public boolean isSendfileSupported(HttpServletRequest request) {
+		return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED));
+	}
+
+	/**
+	 * Метод отдает файл целиком или запрошенный диапазон байт.
+	 * @param file - путь к файлу
+	 * @param version - версия содержимого для сильного ETag (например, его хеш)
+	 * @param contentType - тип содержимого
+	 * @param filename - имя файла для заголовка Content-Disposition
+	 */
+	public void write(Path file, String version, String contentType, String filename,
+	                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+		long[] range = writeHeaders(Files.size(file), Files.getLastModifiedTime(file).toMillis(),
+				version, contentType, filename, request, response);
+		if (range == null)
+			return;
+		long start = range[0];
+		long count = range[1];
+
+		if (isSendfileSupported(request)) {
+			request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+			request.setAttribute(SENDFILE_START, start);
+			request.setAttribute(SENDFILE_END, start + count);
+			downloadedBytes.add(count);
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			long position = start;
+			long remaining = count;
+			while (remaining > 0) {
+				long sent = channel.transferTo(position, remaining, out);
+				if (sent <= 0)
+					break;
+				position += sent;
+				remaining -= sent;
+				downloadedBytes.add(sent);
+			}
+		}
+	}
+
+	/**
+	 * Метод отдает содержимое из буфера (например, отображенной в память
+	 * области файла) целиком или запрошенный диапазон байт.
+	 * @param content - содержимое от position до limit
+	 * @param lastModified - время изменения содержимого (мс)
+	 * @param version - версия содержимого для сильного ETag (например, его хеш)
+	 * @param contentType - тип содержимого
+	 * @param filename - имя файла для заголовка Content-Disposition
+	 */
+	public void write(ByteBuffer content, long lastModified, String version, String contentType,
+	                  String filename, HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		long[] range = writeHeaders(content.remaining(), lastModified,
+				version, contentType, filename, request, response);
+		if (range == null)
+			return;
+		ByteBuffer body = content.duplicate();
+		body.position(content.position() + (int) range[0]);
+		body.limit(body.position() + (int) range[1]);
+		WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+		while (body.hasRemaining())
+			downloadedBytes.add(out.write(body));
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("document.downloaded.bytes", downloadedBytes, LongAdder::sum)
+				.description("Size of document content written to responses")
+				.baseUnit(BaseUnits.BYTES)
+				.register(registry);
+	}
+
+	/**
+	 * Метод обрабатывает условный запрос и запрос диапазона и записывает
+	 * заголовки ответа.
+	 * @return начало и длина отдаваемого диапазона или null,
+	 *         если тело ответа отдавать не нужно (304, 416, HEAD)
+	 */
+	private static long[] writeHeaders(long length, long lastModified, String version,
+	                                   String contentType, String filename,
+	                                   HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		String etag = "\"" + version + "\"";
+
+		if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified))
+			return null;
+
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+		response.setContentType(contentType);
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline()
+				.filename(filename, StandardCharsets.UTF_8).build().toString());
+
+		long start = 0;
+		long end = length - 1;
+		String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+		if (rangeHeader != null && ifRangeMatches(request, etag, lastModified)) {
+			List<HttpRange> ranges = parseRanges(rangeHeader);
+			// несколько диапазонов не поддерживаются - файл отдается целиком (RFC 7233)
+			if (ranges.size() == 1) {
+				HttpRange range = ranges.get(0);
+				try {
+					start = range.getRangeStart(length);
+					end = range.getRangeEnd(length);
+				} catch (IllegalArgumentException e) {
+					start = length;
+				}
+				if (start >= length || start > end) {
+					response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+					response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+					return null;
+				}
+				response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+				response.setHeader(HttpHeaders.CONTENT_RANGE,
+						"bytes " + start + "-" + end + "/" + length);
+			}
+		}
+
+		long count = end - start + 1;
+		response.setContentLengthLong(count);
+		if ("HEAD".equals(request.getMethod()) || count <= 0)
+			return null;
+		return new long[]{start, count};
+	}
+
+	/**
+	 * Метод проверяет заголовок If-Range: диапазон отдается, только если
+	 * указанные в нем ETag или дата совпадают с текущей версией файла.
+	 */
+	private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+		String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+		if (ifRange == null)
+			return true;
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+			return ifRange.equals(etag);
+		try {
+			return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Метод разбирает заголовок Range, синтаксически неверный заголовок игнорируется.
+	 */
+	private static List<HttpRange> parseRanges(String rangeHeader) {
+		try {
+			return HttpRange.parseRanges(rangeHeader);
+		} catch (IllegalArgumentException e) {
+			return Collections.emptyList();
+		}
+	}
+}
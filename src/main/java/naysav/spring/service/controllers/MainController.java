@@ -1,34 +1,50 @@
 package naysav.spring.service.controllers;
 
+import naysav.spring.service.cache.CustomerSearchIndex;
 import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.CustomerFilter;
 import naysav.spring.service.models.User;
 
+import naysav.spring.service.services.CustomerPage;
 import naysav.spring.service.services.CustomerService;
+import naysav.spring.service.services.DocumentContent;
+import naysav.spring.service.services.DocumentIoExecutor;
+import naysav.spring.service.services.DocumentIoRejectedException;
+import naysav.spring.service.services.DocumentRejectedException;
+import naysav.spring.service.services.DocumentStore;
 import naysav.spring.service.services.UserService;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.logout.CookieClearingLogoutHandler;
 import org.springframework.ui.Model;
+import org.springframework.util.unit.DataSize;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.Errors;
 
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
-import java.io.File;
-import java.io.FileInputStream;
+import javax.validation.Validator;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Класс-контроллер, отвечающий за отображение страниц,
@@ -50,6 +66,36 @@ public class MainController {
 	@Autowired
 	CustomerService customerService;
 
+	/**
+	 * Максимальный размер загружаемого PDF-файла.
+	 */
+	@Value("${upload.max-size:10MB}")
+	private DataSize maxFileSize;
+
+	/**
+	 * Хранилище PDF-файлов клиентов.
+	 */
+	@Autowired
+	DocumentStore documentStore;
+
+	/**
+	 * Компонент, отдающий файлы в HTTP-ответ.
+	 */
+	@Autowired
+	FileResponseWriter fileResponseWriter;
+
+	/**
+	 * Пул чтения и записи файлов вне потоков Tomcat.
+	 */
+	@Autowired
+	DocumentIoExecutor documentIoExecutor;
+
+	/**
+	 * Валидатор ограничений модели Customer.
+	 */
+	@Autowired
+	Validator validator;
+
 	/**
 	 * Метод возвращает представление домашней страницы.
 	 */
@@ -90,10 +136,22 @@ public class MainController {
 	}
 
 	/**
-	 * Метод возвращает представление страницы поиска клиента.
+	 * Метод возвращает представление страницы поиска клиента,
+	 * а при заданном запросе q - и клиентов, найденных по части
+	 * фамилии, имени или номера телефона.
 	 */
 	@GetMapping("/customers")
-	public String customersGet() { return "customers"; }
+	public String customersGet(@RequestParam(required = false) String q, Model model) {
+		if (q == null)
+			return "customers";
+		model.addAttribute("q", q);
+		if (CustomerSearchIndex.tokens(q).isEmpty())
+			model.addAttribute("errorQuery", "Введите не менее "
+					+ CustomerSearchIndex.MIN_QUERY_LENGTH + " символов");
+		else
+			model.addAttribute("results", customerService.searchCustomers(q, CustomerSearchIndex.DEFAULT_RESULTS));
+		return "customers";
+	}
 
 	/**
 	 * Метод валидирует серию и номер паспорта, ищет
@@ -104,10 +162,8 @@ public class MainController {
 	public String customersFind(Model model,
 	                            @RequestParam String passportSeries,
 	                            @RequestParam String passportNumber) {
-		if (!passportSeries.matches("\\d{4}"))
-			model.addAttribute("errorSeries", "Серия состоит из 4 цифр");
-		if (!passportNumber.matches("\\d{6}"))
-			model.addAttribute("errorNumber", "Номер состоит из 6 цифр");
+		validate("passportSeries", passportSeries, "errorSeries", model);
+		validate("passportNumber", passportNumber, "errorNumber", model);
 		if (model.getAttribute("errorSeries") != null ||
 			model.getAttribute("errorNumber") != null)
 			return "customers";
@@ -123,6 +179,32 @@ public class MainController {
 		return "customers";
 	}
 
+	/**
+	 * Метод возвращает представление со страницей списка клиентов,
+	 * отфильтрованного и отсортированного по параметрам запроса.
+	 * Ссылка на следующую страницу содержит те же параметры и курсор
+	 * последней строки текущей страницы.
+	 */
+	@GetMapping("/customerList")
+	public String customerList(@Valid CustomerFilter customerFilter, Errors errors, Model model) {
+		if (errors.hasErrors())
+			return "customerList";
+		try {
+			CustomerPage page = customerService.listCustomers(customerFilter);
+			model.addAttribute("page", page);
+			if (page.getNext() != null)
+				model.addAttribute("nextUrl", ServletUriComponentsBuilder.fromCurrentRequest()
+						.replaceQueryParam("after", page.getNext()).build().toUriString());
+		} catch (IllegalArgumentException e) {
+			model.addAttribute("error", "Некорректная позиция в списке, список открыт с начала");
+			customerFilter.setAfter(null);
+			model.addAttribute("page", customerService.listCustomers(customerFilter));
+		}
+		model.addAttribute("firstUrl", ServletUriComponentsBuilder.fromCurrentRequest()
+				.replaceQueryParam("after").build().toUriString());
+		return "customerList";
+	}
+
 	/**
 	 * Метод возращает представление с формой создания клиента.
 	 */
@@ -138,59 +220,109 @@ public class MainController {
 	 * с ошибками, иначе сохраняет клиента в БД Customers и
 	 * возвращает представление createCustomer.html с
 	 * сообщении об успешной записи.
+	 * Файл читается из тела запроса потоком только после проверки полей
+	 * и отсутствия клиента в БД; размер и формат файла проверяются
+	 * только при чтении по его содержимому (см. DocumentStore.stage()):
+	 * размер части заранее неизвестен, а Content-Type задает клиент. Чтение файла и запись
+	 * клиента выполняются в пуле DocumentIoExecutor, поток Tomcat
+	 * на это время освобождается.
 	 */
 	@PostMapping("/createCustomer")
-	public String createCustomerProcess(@Valid Customer customer, Errors errors,
-	                                    Model model, @RequestParam("file") MultipartFile file,
-	                                    RedirectAttributes redirectAttrs) throws IOException {
-		if (file.getSize() > 10485760)
-			model.addAttribute("errorSize",
-					"Файл не должен превышать 10 MB!");
-		if(!"application/pdf".equals(file.getContentType())) {
-			model.addAttribute("errorPDF",
-					"Загруженный файл должен быть формата PDF!");
-		}
-		if (errors.hasErrors()
-				|| model.getAttribute("errorSize") != null
-				|| model.getAttribute("errorPDF") != null)
-			return "createCustomer";
+	public DeferredResult<String> createCustomerProcess(@Valid Customer customer, Errors errors,
+	                                                    Model model, @RequestParam("file") MultipartFile file,
+	                                                    RedirectAttributes redirectAttrs) {
+		if (errors.hasErrors())
+			return DocumentIoExecutor.completed("createCustomer");
 		if (customerService.findCustomer(customer.getPassportSeries(),
-				customer.getPassportNumber()) != null)
+				customer.getPassportNumber()) != null) {
 			model.addAttribute("errorCustomer",
 					"Клиент с такими паспортными данными уже есть!");
-		if (model.getAttribute("errorCustomer") == null &&
-				model.getAttribute("errorPDF") == null) {
-			if (!customerService.saveCustomer(customer, file))
-				model.addAttribute("errorDB",
-						"Не удалось добавить клиента!");
+			return DocumentIoExecutor.completed("createCustomer");
 		}
-		if (model.getAttribute("errorCustomer") != null ||
-				model.getAttribute("errorDB") != null ||
-				model.getAttribute("errorPDF") != null)
-			return "createCustomer";
-		else
+		return documentIoExecutor.submit(() -> {
+			try {
+				if (!customerService.saveCustomer(customer, file))
+					model.addAttribute("errorDB",
+							"Не удалось добавить клиента!");
+			} catch (DocumentRejectedException e) {
+				if (e.getReason() == DocumentRejectedException.Reason.TOO_LARGE)
+					model.addAttribute("errorSize", fileSizeMessage());
+				else
+					model.addAttribute("errorPDF",
+							"Загруженный файл должен быть формата PDF!");
+			}
+			if (model.getAttribute("errorDB") != null ||
+					model.getAttribute("errorSize") != null ||
+					model.getAttribute("errorPDF") != null)
+				return "createCustomer";
 			redirectAttrs.addFlashAttribute("successMessage",
 					"Клиент успешно добавлен!");
-		return "redirect:/createCustomer";
+			return "redirect:/createCustomer";
+		});
+	}
+
+	/**
+	 * Метод проверяет значение поля ограничениями модели Customer и записывает
+	 * сообщение об ошибке в атрибут attribute (те же сообщения, что и в форме
+	 * создания клиента).
+	 */
+	private void validate(String field, String value, String attribute, Model model) {
+		for (ConstraintViolation<Customer> violation : validator.validateValue(Customer.class, field, value))
+			if (model.getAttribute(attribute) == null)
+				model.addAttribute(attribute, violation.getMessage());
 	}
 
 	/**
-	 * Метод отображает файл.
-	 * @param filePath - локальный путь загрузки файла
-	 * @return - страница просмотра файла PDF с пользовательскими данными
+	 * Метод возвращает сообщение о превышении размера файла.
+	 */
+	private String fileSizeMessage() {
+		return "Файл не должен превышать " + maxFileSize.toMegabytes() + " MB!";
+	}
+
+	/**
+	 * Метод отображает файл с поддержкой запросов диапазона (206)
+	 * и условных запросов (304).
+	 * Содержимое файла с данным идентификатором не меняется,
+	 * поэтому ответ кэшируется браузером без ограничения срока.
+	 * Если файл передает контейнер (sendfile), ответ завершается сразу
+	 * и файл не копируется через кучу; иначе файл копируется в поток
+	 * ответа в пуле DocumentIoExecutor.
+	 * @param id - идентификатор файла в хранилище
+	 * @return null, если ответ уже записан, иначе результат асинхронной записи
+	 *         (null вместо ModelAndView - ответ записан без представления)
 	 * @throws FileNotFoundException - если файл не найден
 	 */
 	@GetMapping("/fileView")
-	public ResponseEntity<InputStreamResource> fileView(@RequestParam("path") String filePath)
-			throws FileNotFoundException {
-		File file = new File(filePath);
-		InputStreamResource resource = new InputStreamResource(new FileInputStream(file));
-		return ResponseEntity.ok()
-				.header(HttpHeaders.CONTENT_DISPOSITION, file.getName())
-				.contentType(MediaType.parseMediaType("application/pdf"))
-				.contentLength(file.length())
-				.body(resource);
+	public DeferredResult<ModelAndView> fileView(@RequestParam("id") String id,
+	                                             HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		DocumentContent content = documentStore.open(id);
+		response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+		if (content.getFile() != null && fileResponseWriter.isSendfileSupported(request)) {
+			fileResponseWriter.write(content.getFile(), id, MediaType.APPLICATION_PDF_VALUE,
+					id + ".pdf", request, response);
+			return null;
+		}
+		return documentIoExecutor.submit(() -> {
+			if (content.getFile() != null)
+				fileResponseWriter.write(content.getFile(), id, MediaType.APPLICATION_PDF_VALUE,
+						id + ".pdf", request, response);
+			else
+				fileResponseWriter.write(content.getBuffer(), content.getLastModified(), id,
+						MediaType.APPLICATION_PDF_VALUE, id + ".pdf", request, response);
+			return null;
+		});
+	}
 
+	/**
+	 * Метод отвечает 503, если очередь пула чтения и записи файлов заполнена.
+	 */
+	@ExceptionHandler(DocumentIoRejectedException.class)
+	public ResponseEntity<String> documentIoRejected() {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, "1")
+				.contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+				.body("Сервис перегружен, повторите попытку позже");
 	}
 
 }
@@ -0,0 +1,53 @@
+package naysav.spring.service.controllers;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+
+/**
+ * Строка ответа пакетного поиска клиентов по паспортам:
+ * паспорт из запроса и найденный клиент, признак отсутствия клиента
+ * или ошибка в строке запроса.
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PassportLookupResult {
+
+	/** Номер строки запроса. */
+	private final long line;
+
+	private final String passportSeries;
+
+	private final String passportNumber;
+
+	/** Найден ли клиент; отсутствует, если строка запроса некорректна. */
+	private final Boolean found;
+
+	private final CustomerSummary customer;
+
+	/** Описание ошибки в строке запроса. */
+	private final String error;
+
+	private PassportLookupResult(long line, String passportSeries, String passportNumber,
+	                             Boolean found, CustomerSummary customer, String error) {
+		this.line = line;
+		this.passportSeries = passportSeries;
+		this.passportNumber = passportNumber;
+		this.found = found;
+		this.customer = customer;
+		this.error = error;
+	}
+
+	static PassportLookupResult found(long line, String passportSeries, String passportNumber,
+	                                  CustomerSummary customer) {
+		return new PassportLookupResult(line, passportSeries, passportNumber, true, customer, null);
+	}
+
+	static PassportLookupResult notFound(long line, String passportSeries, String passportNumber) {
+		return new PassportLookupResult(line, passportSeries, passportNumber, false, null, null);
+	}
+
+	static PassportLookupResult error(long line, String passportSeries, String passportNumber,
+	                                  String error) {
+		return new PassportLookupResult(line, passportSeries, passportNumber, null, null, error);
+	}
+}
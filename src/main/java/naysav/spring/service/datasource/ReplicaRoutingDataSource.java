@@ -0,0 +1,288 @@
+package naysav.spring.service.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Источник данных, направляющий read-only транзакции на реплики,
+ * а все остальные запросы (запись, запросы вне транзакции) - на основную БД.
+ * Реплики выбираются по очереди среди доступных; если соединение с репликой
+ * получить не удалось, она исключается до следующей успешной проверки
+ * (checkReplicas() в собственном потоке, см. startHealthChecks()),
+ * а запрос выполняется на основной БД.
+ * Чтение своих записей: после фиксации транзакции с записью пользователь
+ * (по логину из SecurityContext) читает с основной БД в течение окна
+ * readYourWritesWindow, пока реплики не получат изменения.
+ * Решение принимается при получении соединения, поэтому источник должен быть
+ * обернут в LazyConnectionDataSourceProxy: тогда соединение берется при первом
+ * запросе, когда признак read-only транзакции уже установлен.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements MeterBinder, Closeable {
+
+	/**
+	 * Чтение в текущем потоке выполняется на основной БД (см. onPrimary()).
+	 */
+	private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+	/**
+	 * Есть ли в приложении источник данных с репликами.
+	 */
+	private static volatile boolean active;
+
+	private final DataSource primary;
+
+	private final List<Replica> replicas;
+
+	private final int validationTimeoutSeconds;
+
+	/**
+	 * Пользователи, недавно записавшие данные: ключ - логин.
+	 */
+	private final Cache<String, Boolean> recentWriters;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	private final LongAdder fallbacks = new LongAdder();
+
+	/**
+	 * Поток проверки реплик: медленная проверка не задерживает
+	 * другие задачи общего планировщика.
+	 */
+	private final ScheduledExecutorService healthChecks;
+
+	/**
+	 * @param primary - основная БД
+	 * @param replicas - реплики по именам (имя используется в журнале и метриках)
+	 * @param readYourWritesWindow - сколько после своей записи пользователь читает с основной БД
+	 * @param validationTimeout - предельное время проверки реплики
+	 */
+	public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+	                                Duration readYourWritesWindow, Duration validationTimeout) {
+		this.primary = primary;
+		List<Replica> list = new ArrayList<>(replicas.size());
+		replicas.forEach((name, dataSource) -> list.add(new Replica(name, dataSource)));
+		this.replicas = Collections.unmodifiableList(list);
+		this.validationTimeoutSeconds = (int) Math.max(1, validationTimeout.getSeconds());
+		this.recentWriters = Caffeine.newBuilder()
+				.expireAfterWrite(readYourWritesWindow)
+				.build();
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("replica-health-");
+		threadFactory.setDaemon(true);
+		this.healthChecks = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		active = !list.isEmpty();
+	}
+
+	/**
+	 * Метод запускает периодическую проверку реплик (checkReplicas()).
+	 * @param interval - пауза между проверками
+	 */
+	public void startHealthChecks(Duration interval) {
+		if (replicas.isEmpty())
+			return;
+		healthChecks.scheduleWithFixedDelay(() -> {
+			try {
+				checkReplicas();
+			} catch (RuntimeException e) {
+				log.warn("Replica health check failed: " + e);
+			}
+		}, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Метод выполняет чтение на основной БД, например, повторный поиск после
+	 * промаха на реплике: запись могла еще не дойти до нее.
+	 */
+	public static <T> T onPrimary(Supplier<T> read) {
+		Boolean previous = PRIMARY.get();
+		PRIMARY.set(Boolean.TRUE);
+		try {
+			return read.get();
+		} finally {
+			if (previous == null)
+				PRIMARY.remove();
+		}
+	}
+
+	/**
+	 * Метод сообщает, может ли чтение выполняться на реплике
+	 * (настроен источник данных с репликами).
+	 */
+	public static boolean isActive() {
+		return active;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (readsFromReplica()) {
+			Connection connection = replicaConnection();
+			if (connection != null)
+				return connection;
+			fallbacks.increment();
+		} else {
+			trackWrite();
+		}
+		return primary.getConnection();
+	}
+
+	/**
+	 * Учетные данные задаются в пулах соединений, поэтому соединение
+	 * с другими учетными данными не поддерживается.
+	 */
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Учетные данные задаются в пулах соединений");
+	}
+
+	/**
+	 * Метод определяет, можно ли текущий запрос выполнить на реплике.
+	 */
+	private boolean readsFromReplica() {
+		if (replicas.isEmpty() || PRIMARY.get() != null
+				|| !TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+			return false;
+		String user = currentUser();
+		return user == null || recentWriters.getIfPresent(user) == null;
+	}
+
+	/**
+	 * Метод возвращает соединение со следующей доступной репликой
+	 * или null, если доступных реплик нет.
+	 */
+	private Connection replicaConnection() {
+		int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+		for (int i = 0; i < replicas.size(); i++) {
+			Replica replica = replicas.get((start + i) % replicas.size());
+			if (!replica.available)
+				continue;
+			try {
+				return replica.dataSource.getConnection();
+			} catch (SQLException e) {
+				replica.available = false;
+				log.warn("Replica " + replica.name + " is unavailable, reading from primary: " + e);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Метод запоминает пользователя после фиксации транзакции с записью,
+	 * чтобы его следующие чтения шли на основную БД.
+	 */
+	private void trackWrite() {
+		if (replicas.isEmpty() || !TransactionSynchronizationManager.isSynchronizationActive()
+				|| TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+			return;
+		String user = currentUser();
+		if (user == null)
+			return;
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				recentWriters.put(user, Boolean.TRUE);
+			}
+		});
+	}
+
+	/**
+	 * Метод возвращает логин вошедшего пользователя или null.
+	 */
+	private static String currentUser() {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (authentication == null || !authentication.isAuthenticated()
+				|| authentication instanceof AnonymousAuthenticationToken)
+			return null;
+		return authentication.getName();
+	}
+
+	/**
+	 * Метод проверяет реплики: недоступная реплика возвращается в работу,
+	 * как только с ней снова удается соединиться.
+	 */
+	public void checkReplicas() {
+		for (Replica replica : replicas) {
+			boolean available;
+			try (Connection connection = replica.dataSource.getConnection()) {
+				available = connection.isValid(validationTimeoutSeconds);
+			} catch (SQLException e) {
+				available = false;
+			}
+			if (available != replica.available)
+				log.warn("Replica " + replica.name + (available ? " is available again" : " is unavailable"));
+			replica.available = available;
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		for (Replica replica : replicas)
+			Gauge.builder("datasource.replica.available", replica, r -> r.available ? 1 : 0)
+					.description("Whether read-only transactions are routed to the replica")
+					.tag("replica", replica.name)
+					.register(registry);
+		FunctionCounter.builder("datasource.replica.fallbacks", fallbacks, LongAdder::sum)
+				.description("Read-only transactions sent to primary because no replica was available")
+				.register(registry);
+	}
+
+	/**
+	 * Метод останавливает проверку и закрывает пулы реплик
+	 * (пул основной БД закрывает его владелец).
+	 */
+	@Override
+	public void close() throws IOException {
+		active = false;
+		healthChecks.shutdownNow();
+		for (Replica replica : replicas)
+			if (replica.dataSource instanceof Closeable)
+				((Closeable) replica.dataSource).close();
+	}
+
+	/**
+	 * Реплика и ее состояние.
+	 */
+	private static class Replica {
+
+		final String name;
+
+		final DataSource dataSource;
+
+		volatile boolean available = true;
+
+		Replica(String name, DataSource dataSource) {
+			this.name = name;
+			this.dataSource = dataSource;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package naysav.spring.service.models;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Конвертер возраста клиента в числовой столбец БД.
+ */
+@Converter
+public class AgeConverter implements AttributeConverter<String, Short> {
+
+	@Override
+	public Short convertToDatabaseColumn(String age) {
+		if (age == null || age.isEmpty())
+			return null;
+		return Short.valueOf(age);
+	}
+
+	@Override
+	public String convertToEntityAttribute(Short value) {
+		return value == null ? null : value.toString();
+	}
+}
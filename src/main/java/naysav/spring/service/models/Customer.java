@@ -1,25 +1,42 @@
 package naysav.spring.service.models;
 
 import lombok.Data;
+import naysav.spring.service.validation.DigitString;
 
+import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PostLoad;
+import javax.persistence.PrePersist;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.NotEmpty;
-import javax.validation.constraints.Pattern;
 
 /**
- * Модель, предназначенная для хранения и валидации учетных данных клиента
+ * Модель, предназначенная для хранения и валидации учетных данных клиента.
+ * Серия и номер паспорта хранятся в БД одним упакованным ключом passport_key.
+ * Индекс idx_customer_name обслуживает список клиентов, отсортированный по имени.
  */
 @Data
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_customer_passport_key",
+		columnNames = "passport_key"),
+		indexes = @Index(name = "idx_customer_name", columnList = "lastName, firstName, id"))
 public class Customer{
 	/**
-	 * Индентификационный номер для таблицы customer
+	 * Индентификационный номер для таблицы customer.
+	 * Выделяется блоками по 50 из последовательности customer_seq (pooled),
+	 * что позволяет Hibernate группировать вставки в JDBC batch.
 	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+	@SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
 	private Long id;
 
 	/**
@@ -44,28 +61,39 @@ public class Customer{
 	 * Поле возраста клиента
 	 */
 	@NotEmpty(message = "• обязательное поле")
-	@Pattern(regexp="\\d{1,3}", message = "• необходимо неотрицательное число")
+	@DigitString(min = 1, max = 3, message = "• необходимо неотрицательное число")
+	@Convert(converter = AgeConverter.class)
 	private String age;
 
+	/**
+	 * Упакованный ключ паспорта клиента (серия * 10^6 + номер),
+	 * вычисляется из серии и номера перед записью в БД
+	 */
+	@Column(name = "passport_key", nullable = false)
+	private Long passportKey;
+
 	/**
 	 * Поле серии паспорта клиента
 	 */
 	@NotEmpty(message = "• обязательное поле")
-	@Pattern(regexp="\\d{4}", message = "• необходимо 4 цифры")
+	@DigitString(min = PassportKey.SERIES_LENGTH, max = PassportKey.SERIES_LENGTH, message = "• необходимо 4 цифры")
+	@Transient
 	private String passportSeries;
 
 	/**
 	 * Поле номера паспорта клиента
 	 */
 	@NotEmpty(message = "• обязательное поле")
-	@Pattern(regexp="\\d{6}", message = "• необходимо 6 цифр")
+	@DigitString(min = PassportKey.NUMBER_LENGTH, max = PassportKey.NUMBER_LENGTH, message = "• необходимо 6 цифр")
+	@Transient
 	private String passportNumber;
 
 	/**
 	 * Поле телефонного номера клиента
 	 */
 	@NotEmpty(message = "• обязательное поле")
-	@Pattern(regexp="\\d{10}", message = "• необходимо 10 цифр")
+	@DigitString(min = 10, max = 10, message = "• необходимо 10 цифр")
+	@Convert(converter = PhoneNumberConverter.class)
 	private String phoneNumber;
 
 	/**
@@ -74,4 +102,21 @@ public class Customer{
 	private String linkToFile;
 
 	public Customer() {	}
+
+	/**
+	 * Метод упаковывает серию и номер паспорта в ключ перед вставкой в БД.
+	 */
+	@PrePersist
+	void packPassportKey() {
+		passportKey = PassportKey.pack(passportSeries, passportNumber);
+	}
+
+	/**
+	 * Метод восстанавливает серию и номер паспорта из ключа после чтения из БД.
+	 */
+	@PostLoad
+	void unpackPassportKey() {
+		passportSeries = PassportKey.series(passportKey);
+		passportNumber = PassportKey.number(passportKey);
+	}
 }
@@ -0,0 +1,58 @@
+package naysav.spring.service.models;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор keyset-пагинации списка клиентов: ключ сортировки последней строки
+ * страницы (идентификатор, фамилия и имя). Передается клиенту в виде
+ * base64url-строки, следующая страница начинается строго после него.
+ */
+@Getter
+public final class CustomerCursor {
+
+	private static final char SEPARATOR = '\0';
+
+	private final long id;
+
+	private final String lastName;
+
+	private final String firstName;
+
+	private CustomerCursor(long id, String lastName, String firstName) {
+		this.id = id;
+		this.lastName = lastName;
+		this.firstName = firstName;
+	}
+
+	/**
+	 * Метод возвращает курсор, указывающий на строку списка.
+	 */
+	public static String of(CustomerListItem item) {
+		String value = item.getId() + String.valueOf(SEPARATOR)
+				+ nullToEmpty(item.getLastName()) + SEPARATOR + nullToEmpty(item.getFirstName());
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Метод разбирает курсор.
+	 * @return курсор или null, если курсор не задан
+	 * @throws IllegalArgumentException, если курсор некорректен
+	 */
+	public static CustomerCursor parse(String cursor) {
+		if (cursor == null || cursor.isEmpty())
+			return null;
+		String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		String[] parts = value.split(String.valueOf(SEPARATOR), -1);
+		if (parts.length != 3)
+			throw new IllegalArgumentException("Malformed cursor: " + cursor);
+		return new CustomerCursor(Long.parseLong(parts[0]), parts[1], parts[2]);
+	}
+
+	private static String nullToEmpty(String value) {
+		return value == null ? "" : value;
+	}
+}
@@ -0,0 +1,71 @@
+package naysav.spring.service.models;
+
+import lombok.Data;
+import naysav.spring.service.validation.DigitString;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Pattern;
+
+/**
+ * Модель параметров списка клиентов: фильтры, сортировка и позиция страницы.
+ * Страница задается не номером, а курсором after - ключом сортировки
+ * последней строки предыдущей страницы (keyset-пагинация).
+ */
+@Data
+public class CustomerFilter {
+
+	/** Размер страницы по умолчанию. */
+	public static final int DEFAULT_SIZE = 50;
+
+	/** Наибольший размер страницы. */
+	public static final int MAX_SIZE = 200;
+
+	/**
+	 * Начало фамилии клиента
+	 */
+	private String lastName;
+
+	/**
+	 * Пол клиента
+	 */
+	private String gender;
+
+	/**
+	 * Наименьший возраст клиента
+	 */
+	@DigitString(max = 3, message = "• необходимо неотрицательное число")
+	private String minAge;
+
+	/**
+	 * Наибольший возраст клиента
+	 */
+	@DigitString(max = 3, message = "• необходимо неотрицательное число")
+	private String maxAge;
+
+	/**
+	 * Сортировка: id - по порядку добавления, name - по фамилии и имени
+	 */
+	@Pattern(regexp="(id|name)?", message = "• допустимо id или name")
+	private String sort = "id";
+
+	/**
+	 * Курсор - позиция, после которой начинается страница
+	 */
+	@Pattern(regexp="[A-Za-z0-9_-]*", message = "• некорректная позиция")
+	private String after;
+
+	/**
+	 * Размер страницы
+	 */
+	@Min(value = 1, message = "• не меньше 1")
+	@Max(value = MAX_SIZE, message = "• не больше " + MAX_SIZE)
+	private Integer size = DEFAULT_SIZE;
+
+	/**
+	 * Метод проверяет, выбрана ли сортировка по фамилии и имени.
+	 */
+	public boolean isSortByName() {
+		return "name".equals(sort);
+	}
+}
@@ -0,0 +1,42 @@
+package naysav.spring.service.models;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Строка списка клиентов: только столбцы, которые выводятся в таблице.
+ * Заполняется конструктором в JPQL-запросе, сущность Customer не загружается.
+ */
+@Getter
+public class CustomerListItem {
+
+	/** Идентификатор - последний ключ сортировки, в ответы не выводится. */
+	@Getter(AccessLevel.PACKAGE)
+	private final Long id;
+
+	private final String firstName;
+
+	private final String lastName;
+
+	private final String gender;
+
+	private final String age;
+
+	private final String passportSeries;
+
+	private final String passportNumber;
+
+	private final String phoneNumber;
+
+	public CustomerListItem(Long id, String firstName, String lastName,
+	                        String gender, String age, Long passportKey, String phoneNumber) {
+		this.id = id;
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.gender = gender;
+		this.age = age;
+		this.passportSeries = PassportKey.series(passportKey);
+		this.passportNumber = PassportKey.number(passportKey);
+		this.phoneNumber = phoneNumber;
+	}
+}
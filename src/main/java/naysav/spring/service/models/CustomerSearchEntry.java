@@ -0,0 +1,30 @@
+package naysav.spring.service.models;
+
+import lombok.Getter;
+
+/**
+ * Данные клиента для фильтра Блума и поискового индекса: только ключ
+ * паспорта, имя, фамилия и телефон (и идентификатор для постраничного чтения).
+ * Заполняется конструктором в JPQL-запросе, сущность Customer не загружается.
+ */
+@Getter
+public class CustomerSearchEntry {
+
+	private final Long id;
+
+	private final Long passportKey;
+
+	private final String firstName;
+
+	private final String lastName;
+
+	private final String phoneNumber;
+
+	public CustomerSearchEntry(Long id, Long passportKey, String firstName, String lastName, String phoneNumber) {
+		this.id = id;
+		this.passportKey = passportKey;
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.phoneNumber = phoneNumber;
+	}
+}
@@ -0,0 +1,100 @@
+package naysav.spring.service.models;
+
+import naysav.spring.service.validation.DigitStringValidator;
+
+/**
+ * Упакованный 64-битный ключ паспорта: серия * 10^6 + номер.
+ * Заменяет пару строковых столбцов passport_series и passport_number
+ * одним числовым столбцом с уникальным индексом, поэтому поиск по паспорту
+ * и выборка всех паспортов серии сводятся к точечному поиску
+ * и диапазонному сканированию индекса.
+ */
+public final class PassportKey {
+
+	/** Количество возможных номеров в одной серии. */
+	public static final long NUMBER_RANGE = 1_000_000L;
+
+	/** Длина серии паспорта. */
+	public static final int SERIES_LENGTH = 4;
+
+	/** Длина номера паспорта. */
+	public static final int NUMBER_LENGTH = 6;
+
+	private PassportKey() { }
+
+	/**
+	 * Метод упаковывает серию и номер паспорта в ключ.
+	 * @param passportSeries - серия паспорта из 4 цифр
+	 * @param passportNumber - номер паспорта из 6 цифр
+	 * @throws IllegalArgumentException, если серия или номер некорректны
+	 */
+	public static long pack(String passportSeries, String passportNumber) {
+		return parse(passportSeries, SERIES_LENGTH) * NUMBER_RANGE
+				+ parse(passportNumber, NUMBER_LENGTH);
+	}
+
+	/**
+	 * Метод проверяет, что серия паспорта состоит из 4 цифр (по тому же правилу,
+	 * что и @DigitString поля Customer.passportSeries, без регулярного выражения).
+	 */
+	public static boolean isValidSeries(String passportSeries) {
+		return isDigits(passportSeries, SERIES_LENGTH);
+	}
+
+	/**
+	 * Метод проверяет, что номер паспорта состоит из 6 цифр.
+	 */
+	public static boolean isValidNumber(String passportNumber) {
+		return isDigits(passportNumber, NUMBER_LENGTH);
+	}
+
+	/**
+	 * Метод возвращает наименьший ключ серии.
+	 */
+	public static long seriesLowerBound(String passportSeries) {
+		return parse(passportSeries, SERIES_LENGTH) * NUMBER_RANGE;
+	}
+
+	/**
+	 * Метод возвращает наибольший ключ серии.
+	 */
+	public static long seriesUpperBound(String passportSeries) {
+		return seriesLowerBound(passportSeries) + NUMBER_RANGE - 1;
+	}
+
+	/**
+	 * Метод извлекает серию паспорта из ключа.
+	 */
+	public static String series(long passportKey) {
+		return pad(passportKey / NUMBER_RANGE, SERIES_LENGTH);
+	}
+
+	/**
+	 * Метод извлекает номер паспорта из ключа.
+	 */
+	public static String number(long passportKey) {
+		return pad(passportKey % NUMBER_RANGE, NUMBER_LENGTH);
+	}
+
+	private static long parse(String digits, int length) {
+		if (!isDigits(digits, length))
+			throw new IllegalArgumentException("Expected " + length + " digits: " + digits);
+		long value = 0;
+		for (int i = 0; i < length; i++)
+			value = value * 10 + (digits.charAt(i) - '0');
+		return value;
+	}
+
+	private static boolean isDigits(String digits, int length) {
+		return DigitStringValidator.isDigits(digits, length, length);
+	}
+
+	private static String pad(long value, int length) {
+		char[] chars = new char[length];
+		for (int i = length - 1; i >= 0; i--) {
+			chars[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,33 @@
+package naysav.spring.service.models;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Конвертер номера телефона из 10 цифр в числовой столбец БД.
+ * Ведущие нули восстанавливаются при чтении.
+ */
+@Converter
+public class PhoneNumberConverter implements AttributeConverter<String, Long> {
+
+	/** Длина номера телефона. */
+	private static final int LENGTH = 10;
+
+	@Override
+	public Long convertToDatabaseColumn(String phoneNumber) {
+		if (phoneNumber == null || phoneNumber.isEmpty())
+			return null;
+		return Long.valueOf(phoneNumber);
+	}
+
+	@Override
+	public String convertToEntityAttribute(Long value) {
+		if (value == null)
+			return null;
+		String digits = value.toString();
+		StringBuilder result = new StringBuilder(LENGTH);
+		for (int i = digits.length(); i < LENGTH; i++)
+			result.append('0');
+		return result.append(digits).toString();
+	}
+}
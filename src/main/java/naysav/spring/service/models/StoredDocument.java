@@ -0,0 +1,42 @@
+package naysav.spring.service.models;
+
+import lombok.Data;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Модель, описывающая PDF-файл в контентно-адресуемом хранилище.
+ * Файл идентифицируется SHA-256 своего содержимого, одинаковые файлы
+ * хранятся один раз, а refCount считает ссылающихся на него клиентов.
+ */
+@Data
+@Entity
+public class StoredDocument {
+	/**
+	 * SHA-256 содержимого файла (64 шестнадцатеричных символа),
+	 * он же идентификатор файла в customer.link_to_file.
+	 */
+	@Id
+	@Column(length = 64)
+	private String hash;
+
+	/**
+	 * Размер файла в байтах
+	 */
+	private long size;
+
+	/**
+	 * Количество ссылок на файл
+	 */
+	private int refCount;
+
+	public StoredDocument() { }
+
+	public StoredDocument(String hash, long size) {
+		this.hash = hash;
+		this.size = size;
+		this.refCount = 1;
+	}
+}
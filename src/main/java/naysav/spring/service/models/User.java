@@ -3,11 +3,12 @@ package naysav.spring.service.models;
 import javax.persistence.*;
 
 import javax.validation.constraints.NotEmpty;
-import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 import javax.validation.constraints.AssertTrue;
 
 import lombok.Data;
+import naysav.spring.service.validation.AlphanumericString;
+import naysav.spring.service.validation.DigitString;
 import org.springframework.data.annotation.Transient;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -20,12 +21,16 @@ import java.util.Collection;
  */
 @Data
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_user_username", columnNames = "username"))
 public class User implements UserDetails{
 	/**
-	 * Индентификационный номер для таблицы user
+	 * Индентификационный номер для таблицы user.
+	 * Выделяется блоками по 50 из последовательности user_seq (pooled),
+	 * что позволяет Hibernate группировать вставки в JDBC batch.
 	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+	@SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
 	private Long id;
 
 	/**
@@ -44,7 +49,7 @@ public class User implements UserDetails{
 	 */
 	@NotEmpty(message = "• обязательное поле")
 	@Size(min = 4, max = 12, message = "• необходимо 4-12 символов")
-	@Pattern(regexp="[a-zA-Z[0-9]]{4,12}", message = "• необходимы цифры или латинские буквы")
+	@AlphanumericString(min = 4, max = 12, message = "• необходимы цифры или латинские буквы")
 	private String username;
 
 	/**
@@ -70,7 +75,7 @@ public class User implements UserDetails{
 	/**
 	 * Поле возраста пользователя
 	 */
-	@Pattern(regexp="\\d{0,3}", message = "• необходимо неотрицательное число")
+	@DigitString(max = 3, message = "• необходимо неотрицательное число")
 	private String age;
 
 	/**
@@ -0,0 +1,88 @@
+package naysav.spring.service.models;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Облегченные учетные данные вошедшего пользователя, которые хранятся
+ * в HTTP-сессии вместо сущности User. Хеш пароля нужен только для проверки
+ * при входе: он стирается после аутентификации и не сериализуется
+ * в хранилище сессий.
+ */
+@Getter
+@ToString(exclude = "password")
+@EqualsAndHashCode(of = "username")
+public class UserPrincipal implements UserDetails, CredentialsContainer {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Индентификационный номер пользователя в таблице user.
+	 */
+	private final Long id;
+
+	/**
+	 * Логин пользователя.
+	 */
+	private final String username;
+
+	/**
+	 * Хеш пароля пользователя.
+	 */
+	private transient String password;
+
+	public UserPrincipal(User user) {
+		this(user.getId(), user.getUsername(), user.getPassword());
+	}
+
+	private UserPrincipal(Long id, String username, String password) {
+		this.id = id;
+		this.username = username;
+		this.password = password;
+	}
+
+	/**
+	 * Метод возвращает копию учетных данных. Кэшированный экземпляр
+	 * не отдается наружу, так как Spring Security стирает в нем пароль.
+	 */
+	public UserPrincipal copy() {
+		return new UserPrincipal(id, username, password);
+	}
+
+	@Override
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public boolean isAccountNonExpired() {
+		return true;
+	}
+
+	@Override
+	public boolean isAccountNonLocked() {
+		return true;
+	}
+
+	@Override
+	public boolean isCredentialsNonExpired() {
+		return true;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public void eraseCredentials() {
+		password = null;
+	}
+}
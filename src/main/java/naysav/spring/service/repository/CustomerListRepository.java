@@ -0,0 +1,29 @@
+package naysav.spring.service.repository;
+
+import naysav.spring.service.models.CustomerCursor;
+import naysav.spring.service.models.CustomerFilter;
+import naysav.spring.service.models.CustomerListItem;
+
+import java.util.List;
+
+/**
+ * Интерфейс постраничного просмотра таблицы customer
+ * (реализация - CustomerListRepositoryImpl)
+ */
+public interface CustomerListRepository {
+
+	/**
+	 * Выборка столбцов строки списка клиентов
+	 */
+	String SELECT_LIST_ITEM = "select new naysav.spring.service.models.CustomerListItem("
+			+ "c.id, c.firstName, c.lastName, c.gender, c.age, c.passportKey, c.phoneNumber) from Customer c";
+
+	/**
+	 * Метод получает страницу списка клиентов, начинающуюся строго после курсора
+	 * (keyset-пагинация: поиск по индексу ключа сортировки вместо OFFSET)
+	 * @param filter - фильтры и сортировка
+	 * @param after - курсор предыдущей страницы или null для первой страницы
+	 * @param limit - максимальное количество строк
+	 */
+	List<CustomerListItem> findPage(CustomerFilter filter, CustomerCursor after, int limit);
+}
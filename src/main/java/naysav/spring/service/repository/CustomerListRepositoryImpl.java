@@ -0,0 +1,83 @@
+package naysav.spring.service.repository;
+
+import naysav.spring.service.models.CustomerCursor;
+import naysav.spring.service.models.CustomerFilter;
+import naysav.spring.service.models.CustomerListItem;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Реализация постраничного просмотра таблицы customer.
+ * Запрос составляется из заданных фильтров, выбираются только столбцы
+ * строки списка. Сортировка по id идет по первичному ключу, по имени - по
+ * индексу idx_customer_name (last_name, first_name, id); условие
+ * "после курсора" сравнивает ключ сортировки целиком, поэтому страница
+ * читается поиском по индексу, а не пропуском OFFSET строк.
+ */
+public class CustomerListRepositoryImpl implements CustomerListRepository {
+
+	@PersistenceContext
+	EntityManager entityManager;
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<CustomerListItem> findPage(CustomerFilter filter, CustomerCursor after, int limit) {
+		StringBuilder jpql = new StringBuilder(SELECT_LIST_ITEM + " where 1 = 1");
+		Map<String, Object> parameters = new LinkedHashMap<>();
+
+		if (hasText(filter.getLastName())) {
+			jpql.append(" and c.lastName like :lastName escape '!'");
+			parameters.put("lastName", escapeLike(filter.getLastName().trim()) + "%");
+		}
+		if (hasText(filter.getGender())) {
+			jpql.append(" and c.gender = :gender");
+			parameters.put("gender", filter.getGender());
+		}
+		if (hasText(filter.getMinAge())) {
+			jpql.append(" and c.age >= :minAge");
+			parameters.put("minAge", filter.getMinAge());
+		}
+		if (hasText(filter.getMaxAge())) {
+			jpql.append(" and c.age <= :maxAge");
+			parameters.put("maxAge", filter.getMaxAge());
+		}
+
+		if (filter.isSortByName()) {
+			if (after != null) {
+				// первое условие избыточно, но дает границу диапазона индекса и тем СУБД,
+				// которые не используют индекс для сравнения кортежей
+				jpql.append(" and c.lastName >= :afterLastName"
+						+ " and (c.lastName, c.firstName, c.id) > (:afterLastName, :afterFirstName, :afterId)");
+				parameters.put("afterLastName", after.getLastName());
+				parameters.put("afterFirstName", after.getFirstName());
+				parameters.put("afterId", after.getId());
+			}
+			jpql.append(" order by c.lastName, c.firstName, c.id");
+		} else {
+			if (after != null) {
+				jpql.append(" and c.id > :afterId");
+				parameters.put("afterId", after.getId());
+			}
+			jpql.append(" order by c.id");
+		}
+
+		TypedQuery<CustomerListItem> query = entityManager.createQuery(jpql.toString(), CustomerListItem.class);
+		parameters.forEach(query::setParameter);
+		return query.setMaxResults(limit).getResultList();
+	}
+
+	private static boolean hasText(String value) {
+		return value != null && !value.trim().isEmpty();
+	}
+
+	private static String escapeLike(String value) {
+		return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+	}
+}
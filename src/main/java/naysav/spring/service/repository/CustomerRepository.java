@@ -1,21 +1,101 @@
 package naysav.spring.service.repository;
 
 import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.CustomerListItem;
+import naysav.spring.service.models.CustomerSearchEntry;
+import naysav.spring.service.models.PassportKey;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Интерфейс для взаимодействия с таблицей customer БД
  */
 @Component
 public interface CustomerRepository
-		extends JpaRepository<Customer, Long> {
+		extends JpaRepository<Customer, Long>, CustomerListRepository {
+
+	/**
+	 * Метод получает данные клиента по упакованному ключу паспорта
+	 * (точечный поиск по уникальному индексу passport_key)
+	 */
+	Customer findByPassportKey(Long passportKey);
+
+	/**
+	 * Метод получает клиентов с ключами паспорта в диапазоне [from, to]
+	 * (диапазонное сканирование индекса passport_key)
+	 */
+	List<Customer> findByPassportKeyBetweenOrderByPassportKey(Long from, Long to);
+
+	/**
+	 * Метод получает клиентов по набору ключей паспортов
+	 * (точечные поиски по индексу passport_key одним запросом)
+	 */
+	List<Customer> findByPassportKeyIn(Collection<Long> passportKeys);
+
+	/**
+	 * Метод получает очередную порцию ключей паспортов, больших after,
+	 * в порядке возрастания (постраничный обход индекса passport_key)
+	 */
+	@Query("select c.passportKey from Customer c where c.passportKey > :after order by c.passportKey")
+	List<Long> findPassportKeysAfter(@Param("after") Long after, Pageable pageable);
+
+	/**
+	 * Метод получает очередную порцию строк списка клиентов с ключами паспортов,
+	 * большими after, в порядке возрастания (постраничный обход индекса passport_key)
+	 */
+	@Query(SELECT_LIST_ITEM + " where c.passportKey > :after order by c.passportKey")
+	List<CustomerListItem> findListItemsAfter(@Param("after") Long after, Pageable pageable);
+
+	/**
+	 * Метод получает очередную порцию ключей паспортов, имен и телефонов клиентов
+	 * с идентификаторами, большими after, в порядке возрастания (клиенты,
+	 * записанные другими экземплярами сервиса; сущности не загружаются)
+	 */
+	@Query("select new naysav.spring.service.models.CustomerSearchEntry("
+			+ "c.id, c.passportKey, c.firstName, c.lastName, c.phoneNumber) from Customer c"
+			+ " where c.id > :after order by c.id")
+	List<CustomerSearchEntry> findSearchEntriesAfter(@Param("after") Long after, Pageable pageable);
+
+	/**
+	 * Метод получает наибольший идентификатор клиента или null, если клиентов нет
+	 */
+	@Query("select max(c.id) from Customer c")
+	Long findMaxId();
+
+	/**
+	 * Метод получает строки списка клиентов по ключам паспортов
+	 */
+	@Query(SELECT_LIST_ITEM + " where c.passportKey in :keys")
+	List<CustomerListItem> findListItemsByPassportKeys(@Param("keys") Collection<Long> keys);
+
+	/**
+	 * Метод получает ключи паспортов из переданного набора, уже имеющиеся в БД
+	 */
+	@Query("select c.passportKey from Customer c where c.passportKey in :keys")
+	List<Long> findExistingPassportKeys(@Param("keys") Collection<Long> keys);
 
 	/**
 	 * Метод получает данные клиента с искомыми значениями полей
 	 * passportSeries и passportNumber
 	 */
-	Customer findByPassportSeriesAndPassportNumber(String passportSeries, String passportNumber);
+	default Customer findByPassportSeriesAndPassportNumber(String passportSeries, String passportNumber) {
+		return findByPassportKey(PassportKey.pack(passportSeries, passportNumber));
+	}
+
+	/**
+	 * Метод получает всех клиентов с паспортами указанной серии
+	 */
+	default List<Customer> findAllByPassportSeries(String passportSeries) {
+		return findByPassportKeyBetweenOrderByPassportKey(
+				PassportKey.seriesLowerBound(passportSeries),
+				PassportKey.seriesUpperBound(passportSeries));
+	}
 
 }
@@ -0,0 +1,44 @@
+package naysav.spring.service.repository;
+
+import naysav.spring.service.models.StoredDocument;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Component;
+
+/**
+ * Интерфейс для взаимодействия с таблицей stored_document БД
+ */
+@Component
+public interface StoredDocumentRepository
+		extends JpaRepository<StoredDocument, String> {
+
+	/**
+	 * Метод атомарно добавляет запись о файле с одной ссылкой или, если она
+	 * уже есть, увеличивает счетчик ссылок (одна вставка вместо проверки
+	 * и вставки, поэтому одновременные первые загрузки одного файла
+	 * не конфликтуют по первичному ключу)
+	 */
+	@Modifying
+	@Query(value = "insert into stored_document (hash, size, ref_count) values (:hash, :size, 1)"
+			+ " on duplicate key update ref_count = ref_count + 1", nativeQuery = true)
+	void addReference(@Param("hash") String hash, @Param("size") long size);
+
+	/**
+	 * Метод атомарно уменьшает счетчик ссылок на файл
+	 * @return количество измененных строк
+	 */
+	@Modifying
+	@Query("update StoredDocument d set d.refCount = d.refCount - 1 where d.hash = :hash and d.refCount > 0")
+	int decrementRefCount(@Param("hash") String hash);
+
+	/**
+	 * Метод удаляет запись о файле, если ссылок на него не осталось
+	 * @return количество удаленных строк
+	 */
+	@Modifying
+	@Query("delete from StoredDocument d where d.hash = :hash and d.refCount = 0")
+	int deleteUnreferenced(@Param("hash") String hash);
+}
@@ -0,0 +1,81 @@
+package naysav.spring.service.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Отчет о массовом импорте клиентов: количество обработанных строк,
+ * ошибки по номерам строк (не более заданного количества) и скорость импорта.
+ */
+@Getter
+public class CustomerImportReport {
+
+	/** Количество обработанных строк. */
+	private long total;
+
+	/** Количество вставленных клиентов. */
+	private long imported;
+
+	/** Количество отклоненных строк. */
+	private long rejected;
+
+	/** Время импорта в миллисекундах. */
+	private long elapsedMillis;
+
+	/** Скорость импорта, строк в секунду. */
+	private double rowsPerSecond;
+
+	/** Ошибки по строкам. */
+	private final List<RowError> errors = new ArrayList<>();
+
+	/** Признак того, что в отчет попали не все ошибки. */
+	private boolean errorsTruncated;
+
+	/** Максимальное количество ошибок в отчете. */
+	@Getter(lombok.AccessLevel.NONE)
+	private final int maxErrors;
+
+	public CustomerImportReport(int maxErrors) {
+		this.maxErrors = maxErrors;
+	}
+
+	void imported(int count) {
+		imported += count;
+		total += count;
+	}
+
+	void rejected(long line, String message) {
+		rejected++;
+		total++;
+		if (errors.size() < maxErrors)
+			errors.add(new RowError(line, message));
+		else
+			errorsTruncated = true;
+	}
+
+	void finish(long elapsedNanos) {
+		elapsedMillis = elapsedNanos / 1_000_000;
+		rowsPerSecond = elapsedNanos == 0 ? 0 : total * 1_000_000_000.0 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "total=" + total + ", imported=" + imported + ", rejected=" + rejected
+				+ ", elapsedMillis=" + elapsedMillis + ", rowsPerSecond=" + Math.round(rowsPerSecond);
+	}
+
+	/**
+	 * Ошибка импорта строки.
+	 */
+	@Getter
+	@AllArgsConstructor
+	public static class RowError {
+		/** Номер строки во входном потоке. */
+		private final long line;
+		/** Описание ошибки. */
+		private final String message;
+	}
+}
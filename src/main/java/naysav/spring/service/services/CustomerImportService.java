@@ -0,0 +1,285 @@
+package naysav.spring.service.services;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import naysav.spring.service.cache.PassportBloomFilter;
+import naysav.spring.service.datasource.ReplicaRoutingDataSource;
+import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.PassportKey;
+import naysav.spring.service.repository.CustomerRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Сервисный класс массового импорта клиентов из потока CSV или NDJSON.
+ * Строки читаются порциями, поэтому файл не загружается в память целиком.
+ * Каждая порция валидируется параллельно по ограничениям модели Customer,
+ * проверяется на дубликаты паспортов и вставляется одной транзакцией
+ * JDBC batch'ами (hibernate.jdbc.batch_size).
+ */
+@Slf4j
+@Service
+public class CustomerImportService {
+
+	/**
+	 * Формат входного потока.
+	 */
+	public enum Format { CSV, NDJSON }
+
+	/**
+	 * Количество столбцов CSV: firstName, lastName, gender, age,
+	 * passportSeries, passportNumber, phoneNumber.
+	 */
+	private static final int CSV_COLUMNS = 7;
+
+	/**
+	 * Поле для доступа к таблице customer.
+	 */
+	@Autowired
+	CustomerRepository customerRepository;
+
+	/**
+	 * Сервис клиентов - обновление фильтра Блума и кэша при вставке.
+	 */
+	@Autowired
+	CustomerService customerService;
+
+	/**
+	 * Фильтр Блума: паспорта, гарантированно отсутствующие в БД,
+	 * не проверяются запросом на дубликаты.
+	 */
+	@Autowired
+	PassportBloomFilter passportFilter;
+
+	/**
+	 * Валидатор ограничений модели Customer.
+	 */
+	@Autowired
+	Validator validator;
+
+	/**
+	 * Разбор строк NDJSON.
+	 */
+	@Autowired
+	ObjectMapper objectMapper;
+
+	/**
+	 * Менеджер транзакций - одна транзакция на порцию.
+	 */
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	EntityManager entityManager;
+
+	/**
+	 * Количество строк в порции.
+	 */
+	@Value("${customer.import.chunk-size:1000}")
+	int chunkSize;
+
+	/**
+	 * Максимальное количество ошибок в отчете.
+	 */
+	@Value("${customer.import.max-reported-errors:1000}")
+	int maxReportedErrors;
+
+	/**
+	 * Метод импортирует клиентов из потока.
+	 * @param reader - поток строк CSV или NDJSON
+	 * @param format - формат потока
+	 * @return отчет об импорте
+	 */
+	public CustomerImportReport importCustomers(Reader reader, Format format) throws IOException {
+		long started = System.nanoTime();
+		CustomerImportReport report = new CustomerImportReport(maxReportedErrors);
+		BufferedReader lines = new BufferedReader(reader);
+		List<Row> chunk = new ArrayList<>(chunkSize);
+		String line;
+		long lineNumber = 0;
+		while ((line = lines.readLine()) != null) {
+			lineNumber++;
+			if (line.trim().isEmpty()
+					|| (lineNumber == 1 && format == Format.CSV && isCsvHeader(line)))
+				continue;
+			chunk.add(new Row(lineNumber, line));
+			if (chunk.size() >= chunkSize) {
+				importChunk(chunk, format, report);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty())
+			importChunk(chunk, format, report);
+		report.finish(System.nanoTime() - started);
+		log.info("Customers imported: " + report);
+		return report;
+	}
+
+	/**
+	 * Метод разбирает, валидирует и вставляет одну порцию строк.
+	 */
+	private void importChunk(List<Row> chunk, Format format, CustomerImportReport report) {
+		chunk.parallelStream().forEach(row -> parse(row, format));
+
+		Map<Long, Row> valid = new LinkedHashMap<>();
+		for (Row row : chunk) {
+			if (row.error != null) {
+				report.rejected(row.lineNumber, row.error);
+				continue;
+			}
+			long passportKey = PassportKey.pack(row.customer.getPassportSeries(),
+					row.customer.getPassportNumber());
+			if (valid.putIfAbsent(passportKey, row) != null)
+				report.rejected(row.lineNumber, "• паспорт повторяется в файле");
+		}
+
+		List<Long> maybeExisting = valid.keySet().stream()
+				.filter(passportFilter::mightContain)
+				.collect(Collectors.toList());
+		// проверка перед записью - на основной БД: реплика может отставать
+		if (!maybeExisting.isEmpty())
+			for (Long passportKey : ReplicaRoutingDataSource.onPrimary(
+					() -> customerRepository.findExistingPassportKeys(maybeExisting))) {
+				Row duplicate = valid.remove(passportKey);
+				if (duplicate != null)
+					report.rejected(duplicate.lineNumber, "• клиент с такими паспортными данными уже есть");
+			}
+		if (valid.isEmpty())
+			return;
+
+		List<Customer> customers = valid.values().stream()
+				.map(row -> row.customer)
+				.collect(Collectors.toList());
+		try {
+			new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+				customers.forEach(customerService::trackImport);
+				customerRepository.saveAll(customers);
+				entityManager.flush();
+				entityManager.clear();
+			});
+			report.imported(customers.size());
+		} catch (RuntimeException e) {
+			log.warn("Customer import chunk failed: " + e);
+			for (Row row : valid.values())
+				report.rejected(row.lineNumber, "• не удалось записать порцию в БД");
+		}
+	}
+
+	/**
+	 * Метод разбирает строку в модель Customer и валидирует ее.
+	 * Результат или описание ошибки записываются в row.
+	 */
+	private void parse(Row row, Format format) {
+		Customer customer;
+		try {
+			customer = format == Format.CSV ? parseCsv(row.text) : parseJson(row.text);
+		} catch (IllegalArgumentException | IOException e) {
+			row.error = "• строка не разобрана: " + e.getMessage();
+			return;
+		}
+		Set<ConstraintViolation<Customer>> violations = validator.validate(customer);
+		if (!violations.isEmpty()) {
+			row.error = violations.stream()
+					.map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+					.sorted()
+					.collect(Collectors.joining("; "));
+			return;
+		}
+		row.customer = customer;
+	}
+
+	private Customer parseCsv(String line) {
+		List<String> fields = splitCsv(line);
+		if (fields.size() != CSV_COLUMNS)
+			throw new IllegalArgumentException("ожидается " + CSV_COLUMNS
+					+ " столбцов, получено " + fields.size());
+		Customer customer = new Customer();
+		customer.setFirstName(fields.get(0));
+		customer.setLastName(fields.get(1));
+		customer.setGender(fields.get(2));
+		customer.setAge(fields.get(3));
+		customer.setPassportSeries(fields.get(4));
+		customer.setPassportNumber(fields.get(5));
+		customer.setPhoneNumber(fields.get(6));
+		return customer;
+	}
+
+	private Customer parseJson(String line) throws IOException {
+		Customer customer = objectMapper.readerFor(Customer.class)
+				.without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+				.readValue(line);
+		customer.setId(null);
+		customer.setPassportKey(null);
+		customer.setLinkToFile(null);
+		return customer;
+	}
+
+	/**
+	 * Метод разбивает строку CSV на поля с учетом кавычек.
+	 */
+	static List<String> splitCsv(String line) {
+		List<String> fields = new ArrayList<>(CSV_COLUMNS);
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c != '"')
+					field.append(c);
+				else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+					field.append(line.charAt(++i));
+				else
+					quoted = false;
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString().trim());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		if (quoted)
+			throw new IllegalArgumentException("незакрытая кавычка");
+		fields.add(field.toString().trim());
+		return fields;
+	}
+
+	private static boolean isCsvHeader(String line) {
+		return line.trim().toLowerCase().startsWith("firstname");
+	}
+
+	/**
+	 * Строка входного потока и результат ее разбора.
+	 */
+	private static class Row {
+		final long lineNumber;
+		final String text;
+		Customer customer;
+		String error;
+
+		Row(long lineNumber, String text) {
+			this.lineNumber = lineNumber;
+			this.text = text;
+		}
+	}
+}
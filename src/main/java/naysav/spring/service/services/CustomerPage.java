@@ -0,0 +1,21 @@
+package naysav.spring.service.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import naysav.spring.service.models.CustomerListItem;
+
+import java.util.List;
+
+/**
+ * Страница списка клиентов и курсор следующей страницы.
+ */
+@Getter
+@AllArgsConstructor
+public class CustomerPage {
+
+	/** Строки страницы. */
+	private final List<CustomerListItem> items;
+
+	/** Курсор следующей страницы, null - если страница последняя. */
+	private final String next;
+}
@@ -1,26 +1,56 @@
 package naysav.spring.service.services;
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
+import naysav.spring.service.cache.CustomerCache;
+import naysav.spring.service.cache.CustomerSearchIndex;
+import naysav.spring.service.cache.PassportBloomFilter;
+import naysav.spring.service.datasource.ReplicaRoutingDataSource;
 import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.CustomerCursor;
+import naysav.spring.service.models.CustomerFilter;
+import naysav.spring.service.models.CustomerListItem;
+import naysav.spring.service.models.CustomerSearchEntry;
+import naysav.spring.service.models.PassportKey;
 import naysav.spring.service.repository.CustomerRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Сервисный класс для чтения и записи данных таблицы customer,
  * полученных от класса Controllers.
+ * Время поиска и записи клиента, а также количество неудачных записей
+ * публикуются в Micrometer.
  */
 @Slf4j
 @Service
-public class CustomerService {
+public class CustomerService implements MeterBinder {
 
 	/**
 	 * Поле для доступа к таблице customer.
@@ -29,60 +59,405 @@ public class CustomerService {
 	CustomerRepository customerRepository;
 
 	/**
-	 * Поле, хранящее путь загрузки PDF-файлов.
+	 * Ближний кэш результатов поиска клиента по паспорту.
 	 */
-	@Value("${upload.path}")
-	private String uploadPath;
+	@Autowired
+	CustomerCache customerCache;
+
+	/**
+	 * Фильтр Блума по ключам паспортов, позволяющий не обращаться к БД
+	 * за гарантированно отсутствующими клиентами.
+	 */
+	@Autowired
+	PassportBloomFilter passportFilter;
+
+	/**
+	 * Поисковый индекс по фамилии, имени и телефону клиентов.
+	 */
+	@Autowired
+	CustomerSearchIndex searchIndex;
+
+	/**
+	 * Контентно-адресуемое хранилище PDF-файлов.
+	 */
+	@Autowired
+	DocumentStore documentStore;
+
+	/**
+	 * Менеджер транзакций - транзакция записи клиента не включает запись файла.
+	 */
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	/**
+	 * Размер порции ключей при заполнении фильтра Блума.
+	 */
+	private static final int PASSPORT_FILTER_BATCH = 10000;
+
+	/**
+	 * Размер порции клиентов при построении поискового индекса.
+	 */
+	private static final int SEARCH_INDEX_BATCH = 10000;
+
+	/**
+	 * Размер порции клиентов при догоняющем чтении.
+	 */
+	private static final int CATCH_UP_BATCH = 1000;
+
+	/**
+	 * На сколько идентификаторов назад от наибольшего прочитанного повторяется
+	 * догоняющее чтение: экземпляры сервиса берут идентификаторы блоками
+	 * из customer_seq, и клиент с меньшим идентификатором может быть записан позже.
+	 */
+	@Value("${customer.catch-up.id-overlap:1000}")
+	long catchUpOverlap;
+
+	/**
+	 * Наибольший идентификатор клиента, прочитанный догоняющим чтением.
+	 */
+	private volatile long lastSeenId;
+
+	/**
+	 * Количество записей клиента, завершившихся ошибкой.
+	 */
+	private final LongAdder saveFailures = new LongAdder();
 
 	/**
-	 * Метод поиска клиента в таблице customer
+	 * Метод поиска клиента в таблице customer.
+	 * Паспорта, гарантированно отсутствующие по фильтру Блума, сразу
+	 * считаются не найденными (клиент, записанный другим экземпляром сервиса,
+	 * попадает в фильтр через catchUpCustomers()), затем проверяется ближний кэш, к БД
+	 * (в read-only транзакции репозитория) запрос уходит только при промахе.
+	 * Если клиент не найден на реплике, поиск повторяется на основной БД:
+	 * фильтр Блума уже знает о клиенте, а реплика могла еще не получить запись.
 	 * @param passportSeries - серия паспорта
 	 * @param passportNumber - номер паспорта
 	 * @return модель Customer с данными клиента,
 	 *         если не найдена, то null
 	 */
-	@Transactional(readOnly = true)
+	@Timed(value = "customer.service", description = "CustomerService method execution time")
 	public Customer findCustomer(String passportSeries, String passportNumber)
 	{
-		Customer customerFromDB = customerRepository.
-				findByPassportSeriesAndPassportNumber(passportSeries, passportNumber);
+		long passportKey = PassportKey.pack(passportSeries, passportNumber);
+		if (!passportFilter.mightContain(passportKey))
+			return null;
+		return customerCache.get(passportKey, () -> {
+			Customer customer = customerRepository.findByPassportKey(passportKey);
+			if (customer == null && ReplicaRoutingDataSource.isActive())
+				customer = ReplicaRoutingDataSource.onPrimary(() -> customerRepository.findByPassportKey(passportKey));
+			return customer;
+		});
+	}
 
-		return customerFromDB;
+	/**
+	 * Метод пакетного поиска клиентов по ключам паспортов.
+	 * Паспорта, отсутствующие по фильтру Блума, и результаты из ближнего кэша
+	 * не запрашиваются, остальные читаются из БД одним запросом IN
+	 * (в read-only транзакции репозитория). Результаты из БД в кэш не
+	 * записываются, чтобы массовые сверки не вытесняли из него часто
+	 * запрашиваемых клиентов.
+	 * @param passportKeys - упакованные ключи паспортов
+	 * @return найденные клиенты по ключам паспортов, ненайденных ключей в результате нет
+	 */
+	public Map<Long, Customer> findCustomers(Collection<Long> passportKeys) {
+		Map<Long, Customer> found = new HashMap<>();
+		List<Long> candidates = new ArrayList<>();
+		for (Long passportKey : passportKeys)
+			if (passportFilter.mightContain(passportKey))
+				candidates.add(passportKey);
+		if (candidates.isEmpty())
+			return found;
+		Map<Long, Optional<Customer>> cached = customerCache.getAllPresent(candidates);
+		List<Long> missed = new ArrayList<>(candidates.size() - cached.size());
+		for (Long passportKey : candidates) {
+			Optional<Customer> customer = cached.get(passportKey);
+			if (customer == null)
+				missed.add(passportKey);
+			else
+				customer.ifPresent(c -> found.put(passportKey, c));
+		}
+		if (!missed.isEmpty())
+			for (Customer customer : customerRepository.findByPassportKeyIn(missed))
+				found.put(customer.getPassportKey(), customer);
+		return found;
+	}
+
+	/**
+	 * Метод поиска всех клиентов с паспортами указанной серии
+	 * (диапазонное сканирование индекса passport_key).
+	 * @param passportSeries - серия паспорта
+	 * @return список клиентов, упорядоченный по номеру паспорта
+	 */
+	public List<Customer> findCustomersBySeries(String passportSeries) {
+		return customerRepository.findAllByPassportSeries(passportSeries);
+	}
+
+	/**
+	 * Метод ищет клиентов по части фамилии, имени или номера телефона
+	 * в поисковом индексе и читает найденных из БД по ключам паспортов.
+	 * @param query - слова запроса (каждое должно совпасть с одним из полей)
+	 * @param limit - максимальное количество результатов
+	 * @return клиенты по убыванию релевантности
+	 */
+	public List<CustomerListItem> searchCustomers(String query, int limit) {
+		long[] keys = searchIndex.search(query, limit);
+		if (keys.length == 0)
+			return Collections.emptyList();
+		List<Long> passportKeys = new ArrayList<>(keys.length);
+		for (long key : keys)
+			passportKeys.add(key);
+		Map<Long, CustomerListItem> found = new HashMap<>();
+		for (CustomerListItem item : customerRepository.findListItemsByPassportKeys(passportKeys))
+			found.put(PassportKey.pack(item.getPassportSeries(), item.getPassportNumber()), item);
+		List<CustomerListItem> result = new ArrayList<>(keys.length);
+		for (Long key : passportKeys)
+			if (found.containsKey(key))
+				result.add(found.get(key));
+		return result;
 	}
 
 	/**
-	 * Метод записывает данные клиента и ссылку на файл с его данными
-	 * в таблицу customer
+	 * Метод получает страницу списка клиентов.
+	 * Запрашивается на одну строку больше размера страницы: если она есть,
+	 * курсором следующей страницы становится последняя строка текущей.
+	 * @param filter - фильтры, сортировка, курсор и размер страницы
+	 * @return страница клиентов
+	 * @throws IllegalArgumentException - если курсор некорректен
+	 */
+	public CustomerPage listCustomers(CustomerFilter filter) {
+		int size = filter.getSize() == null ? CustomerFilter.DEFAULT_SIZE
+				: Math.max(1, Math.min(filter.getSize(), CustomerFilter.MAX_SIZE));
+		List<CustomerListItem> items = customerRepository.findPage(filter,
+				CustomerCursor.parse(filter.getAfter()), size + 1);
+		if (items.size() <= size)
+			return new CustomerPage(items, null);
+		items = items.subList(0, size);
+		return new CustomerPage(items, CustomerCursor.of(items.get(size - 1)));
+	}
+
+	/**
+	 * Метод записывает данные клиента и идентификатор файла с его данными
+	 * в таблицу customer.
+	 * Файл записывается на диск до начала транзакции, поэтому медленный диск
+	 * не удерживает соединение с БД; на место он переносится только после
+	 * фиксации транзакции, а при неудаче удаляется.
 	 * @param customer - модель, хранящая данные клиента
 	 * @param file - PDF-файл с данными клиента
 	 * @return true, если успешно сохранены данные
 	 *         false, если сохранение не удалось
+	 * @throws DocumentRejectedException - если файл превышает допустимый размер или не является PDF
 	 */
-	@Transactional()
+	@Timed(value = "customer.service", description = "CustomerService method execution time")
 	public boolean saveCustomer(Customer customer, MultipartFile file)
 			throws IOException {
 
-		if (file != null) {
-			File uploadDirectory = new File(uploadPath);
-
-			if (!uploadDirectory.exists())
-				uploadDirectory.mkdir();
-
-			String uuidFile = UUID.randomUUID().toString();
-			String resultFilename = uuidFile + "." + file.getOriginalFilename();
-
-			file.transferTo(new File(uploadPath + "/" + resultFilename));
-			customer.setLinkToFile(uploadPath + "/" + resultFilename);
-		}
-		else
+		if (file == null)
 			return false;
+		DocumentStore.StagedDocument document = documentStore.stage(file);
+		customer.setLinkToFile(document.getId());
 		try {
-			customerRepository.save(customer);
+			new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+				documentStore.register(document);
+				trackSaving(customer);
+				customerRepository.save(customer);
+			});
 			log.info("Customer saved: " + customer);
 			return true;
 		} catch (Exception e) {
+			saveFailures.increment();
+			log.warn("Failed to save customer: " + customer, e);
+			documentStore.discard(document);
 			return false;
 		}
 	}
+
+	/**
+	 * Метод вызывается перед записью клиента в БД внутри транзакции:
+	 * ключ паспорта сразу добавляется в фильтр Блума (чтобы не было
+	 * ложноотрицательных ответов), а клиент попадает в ближний кэш
+	 * и поисковый индекс только после фиксации транзакции.
+	 */
+	void trackSaving(Customer customer) {
+		long passportKey = PassportKey.pack(customer.getPassportSeries(), customer.getPassportNumber());
+		passportFilter.put(passportKey);
+		afterCommit(() -> {
+			customerCache.put(customer);
+			searchIndex.add(passportKey, customer.getFirstName(),
+					customer.getLastName(), customer.getPhoneNumber());
+		});
+	}
+
+	/**
+	 * Метод вызывается перед записью импортированного клиента в БД внутри
+	 * транзакции: ключ паспорта сразу добавляется в фильтр Блума, а клиент
+	 * после фиксации транзакции - в поисковый индекс. В ближний кэш клиент
+	 * не записывается, чтобы массовый импорт не вытеснял из него часто
+	 * запрашиваемых клиентов; из кэша удаляется только возможный
+	 * отрицательный результат поиска по его паспорту.
+	 */
+	void trackImport(Customer customer) {
+		long passportKey = PassportKey.pack(customer.getPassportSeries(), customer.getPassportNumber());
+		passportFilter.put(passportKey);
+		afterCommit(() -> {
+			customerCache.invalidate(passportKey);
+			searchIndex.add(passportKey, customer.getFirstName(),
+					customer.getLastName(), customer.getPhoneNumber());
+		});
+	}
+
+	/**
+	 * Метод заполняет фильтр Блума ключами паспортов всех клиентов из БД
+	 * после старта приложения. Ключи читаются порциями по индексу passport_key.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadPassportFilter() {
+		long started = System.nanoTime();
+		long loaded = scanPassportKeys();
+		passportFilter.markReady();
+		log.info("Passport bloom filter loaded: " + loaded + " keys, "
+				+ passportFilter.memoryBytes() + " bytes, "
+				+ (System.nanoTime() - started) / 1_000_000 + " ms");
+	}
+
+	/**
+	 * Метод строит поисковый индекс по всем клиентам из БД после старта
+	 * приложения. Клиенты читаются порциями по индексу passport_key,
+	 * выбираются только поля строки списка.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadSearchIndex() {
+		long started = System.nanoTime();
+		long after = -1;
+		List<CustomerListItem> items;
+		do {
+			items = customerRepository.findListItemsAfter(after, PageRequest.of(0, SEARCH_INDEX_BATCH));
+			for (CustomerListItem item : items) {
+				after = PassportKey.pack(item.getPassportSeries(), item.getPassportNumber());
+				searchIndex.load(after, item.getFirstName(), item.getLastName(), item.getPhoneNumber());
+			}
+		} while (items.size() == SEARCH_INDEX_BATCH);
+		searchIndex.markReady();
+		log.info("Customer search index loaded: " + searchIndex.size() + " customers, "
+				+ searchIndex.memoryBytes() + " bytes, "
+				+ (System.nanoTime() - started) / 1_000_000 + " ms");
+	}
+
+	/**
+	 * Метод запоминает наибольший идентификатор клиента до загрузки фильтра
+	 * Блума и поискового индекса: клиентов, записанных после него другими
+	 * экземплярами сервиса, добавляет догоняющее чтение (catchUpCustomers()).
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public void startCatchUp() {
+		Long maxId = customerRepository.findMaxId();
+		lastSeenId = maxId == null ? 0 : maxId;
+	}
+
+	/**
+	 * Метод периодически добавляет в фильтр Блума и поисковый индекс клиентов,
+	 * записанных другими экземплярами сервиса (идентификатор больше
+	 * прочитанного ранее за вычетом customer.catch-up.id-overlap), и удаляет
+	 * из ближнего кэша отрицательные результаты поиска по их паспортам.
+	 * Повторно прочитанные клиенты фильтр и индекс не меняют.
+	 * Если наибольший идентификатор не изменился, клиенты не читаются: клиента
+	 * из более раннего блока customer_seq, зафиксированного без новых записей
+	 * после него, добавит следующее чтение или сверка (resyncCustomers()).
+	 */
+	@Scheduled(fixedDelayString = "${customer.catch-up.interval:PT5S}",
+			initialDelayString = "${customer.catch-up.interval:PT5S}")
+	public void catchUpCustomers() {
+		if (!passportFilter.isReady() || !searchIndex.isReady())
+			return;
+		Long maxId = customerRepository.findMaxId();
+		if (maxId == null || maxId <= lastSeenId)
+			return;
+		long after = Math.max(0, lastSeenId - catchUpOverlap);
+		List<CustomerSearchEntry> entries;
+		do {
+			entries = customerRepository.findSearchEntriesAfter(after, PageRequest.of(0, CATCH_UP_BATCH));
+			for (CustomerSearchEntry entry : entries) {
+				passportFilter.put(entry.getPassportKey());
+				customerCache.invalidateNegative(entry.getPassportKey());
+				searchIndex.add(entry.getPassportKey(), entry.getFirstName(),
+						entry.getLastName(), entry.getPhoneNumber());
+				after = entry.getId();
+			}
+		} while (entries.size() == CATCH_UP_BATCH);
+		lastSeenId = Math.max(maxId, after);
+	}
+
+	/**
+	 * Метод периодически сверяет фильтр Блума и поисковый индекс со всей
+	 * таблицей customer. Догоняющее чтение пропускает клиента, если экземпляр
+	 * записал его с идентификатором из давно взятого блока customer_seq
+	 * (меньше прочитанного на customer.catch-up.id-overlap и более);
+	 * сверка добавляет таких клиентов.
+	 */
+	@Scheduled(fixedDelayString = "${customer.catch-up.full-interval:PT1H}",
+			initialDelayString = "${customer.catch-up.full-interval:PT1H}")
+	public void resyncCustomers() {
+		if (!passportFilter.isReady() || !searchIndex.isReady())
+			return;
+		long started = System.nanoTime();
+		scanPassportKeys();
+		int before = searchIndex.size();
+		long after = -1;
+		List<CustomerListItem> items;
+		do {
+			items = customerRepository.findListItemsAfter(after, PageRequest.of(0, SEARCH_INDEX_BATCH));
+			for (CustomerListItem item : items) {
+				after = PassportKey.pack(item.getPassportSeries(), item.getPassportNumber());
+				searchIndex.add(after, item.getFirstName(), item.getLastName(), item.getPhoneNumber());
+			}
+		} while (items.size() == SEARCH_INDEX_BATCH);
+		log.info("Customers resynced: " + (searchIndex.size() - before) + " missed customers added, "
+				+ (System.nanoTime() - started) / 1_000_000 + " ms");
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("customer.save.failed", saveFailures, LongAdder::sum)
+				.description("Customer saves that failed and were rolled back")
+				.register(registry);
+	}
+
+	/**
+	 * Метод добавляет в фильтр Блума ключи паспортов всех клиентов из БД,
+	 * читая их порциями по индексу passport_key.
+	 * @return количество прочитанных ключей
+	 */
+	private long scanPassportKeys() {
+		long loaded = 0;
+		long after = -1;
+		List<Long> keys;
+		do {
+			keys = customerRepository.findPassportKeysAfter(after,
+					PageRequest.of(0, PASSPORT_FILTER_BATCH));
+			for (Long key : keys)
+				passportFilter.put(key);
+			loaded += keys.size();
+			if (!keys.isEmpty())
+				after = keys.get(keys.size() - 1);
+		} while (keys.size() == PASSPORT_FILTER_BATCH);
+		return loaded;
+	}
+
+	/**
+	 * Метод выполняет действие после успешной фиксации текущей транзакции,
+	 * а вне транзакции - сразу.
+	 */
+	private static void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
+	}
 }
 
@@ -0,0 +1,54 @@
+package naysav.spring.service.services;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Способ размещения PDF-файлов на диске, используемый DocumentStore.
+ * Выбирается свойством document.store: files - отдельный файл на документ
+ * (FileDocumentBackend), segments - документы дописываются в большие
+ * файлы-сегменты (SegmentDocumentBackend).
+ */
+public interface DocumentBackend {
+
+	/**
+	 * Метод проверяет, хранится ли документ.
+	 * @param id - идентификатор документа (SHA-256 содержимого)
+	 */
+	boolean contains(String id) throws IOException;
+
+	/**
+	 * Метод помещает записанный во временный каталог файл в хранилище.
+	 * После успешного вызова документ сброшен на диск (содержимое
+	 * и запись каталога), а временного файла больше не существует;
+	 * при ошибке временный файл остается на месте.
+	 * @param id - идентификатор документа (SHA-256 содержимого)
+	 * @param staged - временный файл с содержимым
+	 */
+	void put(String id, Path staged) throws IOException;
+
+	/**
+	 * Метод открывает содержимое документа для чтения.
+	 * @param id - идентификатор документа (SHA-256 содержимого)
+	 * @throws FileNotFoundException - если документ не найден
+	 */
+	DocumentContent open(String id) throws IOException;
+
+	/**
+	 * Метод удаляет документ.
+	 * @param id - идентификатор документа (SHA-256 содержимого)
+	 */
+	void delete(String id) throws IOException;
+
+	/**
+	 * Метод возвращает идентификаторы документов из индекса в памяти
+	 * для сверки с stored_document при старте приложения.
+	 * @return пустой список, если хранилище не ведет индекс в памяти
+	 */
+	default Collection<String> indexedIds() {
+		return Collections.emptyList();
+	}
+}
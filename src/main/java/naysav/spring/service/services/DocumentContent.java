@@ -0,0 +1,53 @@
+package naysav.spring.service.services;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Содержимое хранимого PDF-файла для отдачи клиенту:
+ * либо отдельный файл (file), либо отображенная в память область
+ * сегмента (buffer), в зависимости от используемого DocumentBackend.
+ */
+@Getter
+public class DocumentContent {
+
+	/**
+	 * Путь к файлу или null, если содержимое хранится в сегменте
+	 */
+	private final Path file;
+
+	/**
+	 * Отображенное в память содержимое или null, если содержимое - отдельный файл
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * Размер содержимого в байтах
+	 */
+	private final long length;
+
+	/**
+	 * Время сохранения содержимого (мс)
+	 */
+	private final long lastModified;
+
+	private DocumentContent(Path file, ByteBuffer buffer, long length, long lastModified) {
+		this.file = file;
+		this.buffer = buffer;
+		this.length = length;
+		this.lastModified = lastModified;
+	}
+
+	public static DocumentContent ofFile(Path file) throws IOException {
+		return new DocumentContent(file, null, Files.size(file),
+				Files.getLastModifiedTime(file).toMillis());
+	}
+
+	public static DocumentContent ofBuffer(ByteBuffer buffer, long lastModified) {
+		return new DocumentContent(null, buffer, buffer.remaining(), lastModified);
+	}
+}
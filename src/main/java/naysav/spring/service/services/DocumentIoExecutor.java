@@ -0,0 +1,119 @@
+package naysav.spring.service.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Отдельный пул потоков для чтения и записи PDF-файлов клиентов (загрузка
+ * файла из тела запроса, выдача файла в ответ). Обработчик запроса передает
+ * работу с файлом в пул и возвращает DeferredResult, поэтому поток Tomcat
+ * освобождается на время передачи файла, и медленные клиенты не занимают
+ * пул потоков контейнера. При заполненной очереди запрос сразу отклоняется
+ * (DocumentIoRejectedException, HTTP 503).
+ * Размер очереди, количество занятых потоков и выполненных задач публикуются
+ * в Micrometer (executor.* с тегом name=document.io).
+ */
+@Component
+public class DocumentIoExecutor implements MeterBinder {
+
+	/**
+	 * Имя пула в метриках.
+	 */
+	private static final String NAME = "document.io";
+
+	final ThreadPoolExecutor executor;
+
+	/**
+	 * Предельное время обработки запроса, включая ожидание в очереди.
+	 */
+	private final long timeoutMillis;
+
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * @param threads - количество потоков
+	 * @param queueCapacity - максимальное количество ожидающих задач
+	 * @param timeout - предельное время обработки запроса
+	 */
+	public DocumentIoExecutor(@Value("${document.io.threads:32}") int threads,
+	                          @Value("${document.io.queue-capacity:200}") int queueCapacity,
+	                          @Value("${document.io.timeout:10m}") Duration timeout) {
+		this.timeoutMillis = timeout.toMillis();
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("document-io-");
+		threadFactory.setDaemon(true);
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Метод выполняет задачу в пуле с SecurityContext запроса
+	 * (по нему, например, выбирается БД для чтения своих записей).
+	 * Если задача не завершилась за document.io.timeout, она прерывается,
+	 * а запрос завершается с AsyncRequestTimeoutException (HTTP 503).
+	 * @param task - работа с файлом; исключение задачи обрабатывается
+	 *             обработчиками исключений контроллера
+	 * @return результат задачи для асинхронного ответа
+	 * @throws DocumentIoRejectedException - если очередь заполнена
+	 */
+	public <T> DeferredResult<T> submit(Callable<T> task) {
+		DeferredResult<T> result = new DeferredResult<>(timeoutMillis);
+		Callable<T> securedTask = new DelegatingSecurityContextCallable<>(task);
+		Future<?> future;
+		try {
+			future = executor.submit(() -> {
+				try {
+					result.setResult(securedTask.call());
+				} catch (Throwable e) {
+					result.setErrorResult(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw new DocumentIoRejectedException("Document I/O queue is full");
+		}
+		result.onTimeout(() -> future.cancel(true));
+		return result;
+	}
+
+	/**
+	 * Метод возвращает уже готовый результат, не занимая пул
+	 * (например, если форма не прошла проверку до чтения файла).
+	 */
+	public static <T> DeferredResult<T> completed(T value) {
+		DeferredResult<T> result = new DeferredResult<>();
+		result.setResult(value);
+		return result;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		new ExecutorServiceMetrics(executor, NAME, Collections.emptyList()).bindTo(registry);
+		FunctionCounter.builder(NAME + ".rejected", rejected, LongAdder::sum)
+				.description("File transfers rejected because the queue was full")
+				.register(registry);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,14 @@
+package naysav.spring.service.services;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Исключение выбрасывается, когда очередь пула чтения и записи PDF-файлов
+ * заполнена и загрузка или выдача файла отклоняется без ожидания (HTTP 503).
+ */
+public class DocumentIoRejectedException extends RejectedExecutionException {
+
+	public DocumentIoRejectedException(String message) {
+		super(message);
+	}
+}
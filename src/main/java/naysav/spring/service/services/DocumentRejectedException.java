@@ -0,0 +1,29 @@
+package naysav.spring.service.services;
+
+import java.io.IOException;
+
+/**
+ * Исключение, выбрасываемое при отказе в сохранении загружаемого файла
+ * во время его чтения: файл превышает допустимый размер или не является PDF.
+ */
+public class DocumentRejectedException extends IOException {
+
+	/**
+	 * Причина отказа.
+	 */
+	public enum Reason {
+		TOO_LARGE,
+		NOT_PDF
+	}
+
+	private final Reason reason;
+
+	public DocumentRejectedException(Reason reason, String message) {
+		super(message);
+		this.reason = reason;
+	}
+
+	public Reason getReason() {
+		return reason;
+	}
+}
@@ -0,0 +1,416 @@
+package naysav.spring.service.services;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import naysav.spring.service.models.StoredDocument;
+import naysav.spring.service.repository.StoredDocumentRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Сервисный класс контентно-адресуемого хранилища PDF-файлов.
+ * Файл идентифицируется SHA-256 своего содержимого. Повторная загрузка того же
+ * содержимого не создает копию, а увеличивает счетчик ссылок в stored_document.
+ * Наружу (в customer.link_to_file и /fileView) отдается только хеш.
+ * Размещение файлов на диске определяет DocumentBackend (свойство document.store).
+ * <p>
+ * Запись файла разделена на два шага, чтобы медленный диск не удерживал
+ * транзакцию и соединение с БД: stage() вне транзакции записывает файл
+ * в каталог upload.path/tmp, а register() внутри транзакции обновляет
+ * stored_document и передает файл в DocumentBackend только после фиксации
+ * транзакции (при откате файл удаляется). Файлы, оставшиеся в tmp после сбоя,
+ * периодически удаляет sweep().
+ */
+@Slf4j
+@Service
+public class DocumentStore implements MeterBinder {
+
+	/**
+	 * Поле для доступа к таблице stored_document.
+	 */
+	@Autowired
+	StoredDocumentRepository storedDocumentRepository;
+
+	/**
+	 * Размещение файлов на диске.
+	 */
+	@Autowired
+	DocumentBackend backend;
+
+	/**
+	 * Формат идентификатора файла: SHA-256 в шестнадцатеричном виде.
+	 */
+	private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Сигнатура, с которой начинается любой PDF-файл.
+	 */
+	private static final byte[] PDF_SIGNATURE = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Размер порции идентификаторов при сверке с stored_document.
+	 */
+	private static final int RECONCILE_BATCH = 1000;
+
+	/**
+	 * Расширение файла, который еще записывается (хеш неизвестен).
+	 */
+	private static final String PART_SUFFIX = ".part";
+
+	/**
+	 * Расширение записанного файла, ожидающего фиксации транзакции.
+	 * Имя такого файла начинается с его хеша.
+	 */
+	private static final String STAGED_SUFFIX = ".staged";
+
+	/**
+	 * Каталог для файлов, еще не перенесенных на место.
+	 */
+	private final Path staging;
+
+	/**
+	 * Максимальный размер файла.
+	 */
+	private final DataSize maxSize;
+
+	/**
+	 * Время, после которого файл в каталоге tmp считается брошенным.
+	 */
+	private final Duration sweepGrace;
+
+	/**
+	 * Счетчики удаленных брошенных файлов и их объема.
+	 */
+	private final LongAdder sweptFiles = new LongAdder();
+	private final LongAdder sweptBytes = new LongAdder();
+
+	/**
+	 * Объем принятых файлов (в том числе повторных загрузок того же содержимого).
+	 */
+	private final LongAdder uploadedBytes = new LongAdder();
+
+	/**
+	 * @param uploadPath - путь загрузки PDF-файлов
+	 * @param maxSize - максимальный размер файла
+	 * @param sweepGrace - возраст, после которого файл в tmp считается брошенным
+	 */
+	public DocumentStore(@Value("${upload.path}") String uploadPath,
+	                     @Value("${upload.max-size:10MB}") DataSize maxSize,
+	                     @Value("${upload.sweep.grace:PT1H}") Duration sweepGrace) {
+		this.staging = Paths.get(uploadPath).resolve("tmp");
+		this.maxSize = maxSize;
+		this.sweepGrace = sweepGrace;
+	}
+
+	/**
+	 * Метод записывает файл в каталог tmp за один проход по его содержимому:
+	 * при чтении вычисляется SHA-256, проверяется сигнатура %PDF- в начале
+	 * файла и допустимый размер, при нарушении чтение сразу прекращается.
+	 * Вызывается вне транзакции.
+	 * @param file - PDF-файл с данными клиента
+	 * @return записанный файл, ожидающий register()
+	 * @throws DocumentRejectedException - если файл превышает допустимый размер или не является PDF
+	 */
+	@Timed(value = "document.store", description = "Document store operation time")
+	public StagedDocument stage(MultipartFile file) throws IOException {
+		Files.createDirectories(staging);
+		Path part = Files.createTempFile(staging, "upload", PART_SUFFIX);
+		try {
+			MessageDigest digest = sha256();
+			long size = 0;
+			try (InputStream in = file.getInputStream();
+			     OutputStream out = Files.newOutputStream(part)) {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					for (int i = 0; i < read && size + i < PDF_SIGNATURE.length; i++)
+						if (buffer[i] != PDF_SIGNATURE[(int) size + i])
+							throw new DocumentRejectedException(DocumentRejectedException.Reason.NOT_PDF,
+									"Document is not a PDF");
+					size += read;
+					if (size > maxSize.toBytes())
+						throw new DocumentRejectedException(DocumentRejectedException.Reason.TOO_LARGE,
+								"Document exceeds " + maxSize);
+					digest.update(buffer, 0, read);
+					out.write(buffer, 0, read);
+				}
+			}
+			if (size < PDF_SIGNATURE.length)
+				throw new DocumentRejectedException(DocumentRejectedException.Reason.NOT_PDF,
+						"Document is not a PDF");
+			String id = toHex(digest.digest());
+			Path staged = staging.resolve(id + "-" + UUID.randomUUID() + STAGED_SUFFIX);
+			Files.move(part, staged, StandardCopyOption.ATOMIC_MOVE);
+			uploadedBytes.add(size);
+			return new StagedDocument(id, size, staged);
+		} finally {
+			Files.deleteIfExists(part);
+		}
+	}
+
+	/**
+	 * Метод учитывает ссылку на записанный файл в stored_document в текущей
+	 * транзакции. После фиксации транзакции файл передается в DocumentBackend
+	 * (или удаляется, если такое содержимое уже хранится), при откате - удаляется.
+	 * @param document - файл, записанный методом stage()
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void register(StagedDocument document) {
+		storedDocumentRepository.addReference(document.getId(), document.getSize());
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				try {
+					if (status == STATUS_COMMITTED)
+						backend.put(document.getId(), document.getPath());
+					else
+						discard(document);
+				} catch (IOException e) {
+					// файл останется в tmp и будет обработан sweep()
+					log.warn("Failed to complete staged document " + document.getPath(), e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Метод удаляет записанный файл, если он больше не нужен
+	 * (например, запись клиента не удалась до register()).
+	 */
+	public void discard(StagedDocument document) throws IOException {
+		Files.deleteIfExists(document.getPath());
+	}
+
+	/**
+	 * Метод снимает ссылку на файл в текущей транзакции. Когда ссылок
+	 * не остается, запись stored_document удаляется, а после фиксации
+	 * транзакции удаляется и сам файл.
+	 * @param id - идентификатор файла
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void release(String id) {
+		storedDocumentRepository.decrementRefCount(id);
+		if (storedDocumentRepository.deleteUnreferenced(id) == 0)
+			return;
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				try {
+					// файл мог быть загружен заново, пока транзакция фиксировалась
+					if (!storedDocumentRepository.existsById(id))
+						backend.delete(id);
+				} catch (IOException e) {
+					log.warn("Failed to delete document " + id, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Метод открывает файл по идентификатору.
+	 * @param id - идентификатор файла
+	 * @return содержимое файла
+	 * @throws FileNotFoundException - если идентификатор некорректен или файл не найден
+	 */
+	@Timed(value = "document.store", description = "Document store operation time")
+	public DocumentContent open(String id) throws IOException {
+		if (id == null || !ID_PATTERN.matcher(id).matches())
+			throw new FileNotFoundException(String.valueOf(id));
+		return backend.open(id);
+	}
+
+	/**
+	 * Метод возвращает сведения о файле из stored_document.
+	 * @param id - идентификатор файла
+	 * @return размер и количество ссылок на файл, null - если файла нет
+	 */
+	public StoredDocument describe(String id) {
+		if (id == null || !ID_PATTERN.matcher(id).matches())
+			return null;
+		return storedDocumentRepository.findById(id).orElse(null);
+	}
+
+	/**
+	 * Метод сверяет индекс DocumentBackend (если он его ведет) с stored_document
+	 * после старта приложения и удаляет документы, ссылок на которые больше нет.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void reconcile() {
+		List<String> ids = new ArrayList<>(backend.indexedIds());
+		int removed = 0;
+		for (int from = 0; from < ids.size(); from += RECONCILE_BATCH) {
+			List<String> batch = ids.subList(from, Math.min(ids.size(), from + RECONCILE_BATCH));
+			Set<String> referenced = new HashSet<>();
+			for (StoredDocument document : storedDocumentRepository.findAllById(batch))
+				referenced.add(document.getHash());
+			for (String id : batch) {
+				if (referenced.contains(id))
+					continue;
+				try {
+					backend.delete(id);
+					removed++;
+				} catch (IOException e) {
+					log.warn("Failed to delete document " + id, e);
+				}
+			}
+		}
+		if (!ids.isEmpty())
+			log.info("Documents reconciled: " + ids.size() + " indexed, " + removed + " unreferenced removed");
+	}
+
+	/**
+	 * Метод периодически очищает каталог tmp от файлов старше upload.sweep.grace:
+	 * недописанных загрузок и файлов, запись клиента для которых не удалась или
+	 * была отменена. Если же ссылка на файл в stored_document есть (транзакция
+	 * зафиксирована, но перенос не выполнился), файл переносится на место.
+	 */
+	@Scheduled(fixedDelayString = "${upload.sweep.interval:PT10M}",
+			initialDelayString = "${upload.sweep.interval:PT10M}")
+	public void sweep() {
+		if (!Files.isDirectory(staging))
+			return;
+		long threshold = System.currentTimeMillis() - sweepGrace.toMillis();
+		long files = 0;
+		long bytes = 0;
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(staging)) {
+			for (Path entry : entries) {
+				try {
+					if (!Files.isRegularFile(entry)
+							|| Files.getLastModifiedTime(entry).toMillis() > threshold)
+						continue;
+					String name = entry.getFileName().toString();
+					String id = name.endsWith(STAGED_SUFFIX) && name.length() > 64
+							? name.substring(0, 64) : null;
+					if (id != null && ID_PATTERN.matcher(id).matches()
+							&& storedDocumentRepository.existsById(id)
+							&& !backend.contains(id)) {
+						backend.put(id, entry);
+						log.info("Staged document recovered: " + id);
+						continue;
+					}
+					long size = Files.size(entry);
+					if (Files.deleteIfExists(entry)) {
+						files++;
+						bytes += size;
+					}
+				} catch (IOException e) {
+					log.warn("Failed to sweep " + entry, e);
+				}
+			}
+		} catch (IOException e) {
+			log.warn("Failed to sweep " + staging, e);
+		}
+		sweptFiles.add(files);
+		sweptBytes.add(bytes);
+		if (files > 0)
+			log.info("Orphaned documents swept: " + files + " files, " + bytes + " bytes");
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("document.swept.files", sweptFiles, LongAdder::sum)
+				.description("Orphaned staged documents removed by the sweeper")
+				.register(registry);
+		FunctionCounter.builder("document.swept.bytes", sweptBytes, LongAdder::sum)
+				.description("Size of orphaned staged documents removed by the sweeper")
+				.baseUnit(BaseUnits.BYTES)
+				.register(registry);
+		FunctionCounter.builder("document.uploaded.bytes", uploadedBytes, LongAdder::sum)
+				.description("Size of accepted uploaded documents")
+				.baseUnit(BaseUnits.BYTES)
+				.register(registry);
+	}
+
+	long sweptFiles() {
+		return sweptFiles.sum();
+	}
+
+	long sweptBytes() {
+		return sweptBytes.sum();
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Файл, записанный в каталог tmp и ожидающий фиксации транзакции.
+	 */
+	@Getter
+	public static class StagedDocument {
+		/**
+		 * Идентификатор файла (SHA-256 содержимого)
+		 */
+		private final String id;
+
+		/**
+		 * Размер файла в байтах
+		 */
+		private final long size;
+
+		/**
+		 * Путь к файлу в каталоге tmp
+		 */
+		private final Path path;
+
+		StagedDocument(String id, long size, Path path) {
+			this.id = id;
+			this.size = size;
+			this.path = path;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package naysav.spring.service.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Размещение документов по одному файлу в шардированных каталогах
+ * upload.path/ab/cd/abcd..., где ab и cd - первые байты хеша,
+ * поэтому ни один каталог не разрастается до миллионов записей.
+ * Используется по умолчанию (document.store=files).
+ */
+@Component
+@ConditionalOnProperty(name = "document.store", havingValue = "files", matchIfMissing = true)
+public class FileDocumentBackend implements DocumentBackend {
+
+	/**
+	 * Корневой каталог хранилища.
+	 */
+	private final Path root;
+
+	/**
+	 * @param uploadPath - путь загрузки PDF-файлов
+	 */
+	public FileDocumentBackend(@Value("${upload.path}") String uploadPath) {
+		this.root = Paths.get(uploadPath);
+	}
+
+	@Override
+	public boolean contains(String id) {
+		return Files.exists(pathOf(id));
+	}
+
+	/**
+	 * Файл переносится на место переименованием, если такого содержимого
+	 * там еще нет, иначе удаляется. Содержимое сбрасывается на диск
+	 * до переименования, запись каталога - после, новые каталоги
+	 * шардов - в записях их родителей.
+	 */
+	@Override
+	public void put(String id, Path staged) throws IOException {
+		Path target = pathOf(id);
+		if (Files.exists(target)) {
+			Files.deleteIfExists(staged);
+			return;
+		}
+		Path directory = target.getParent();
+		boolean created = !Files.isDirectory(directory);
+		Files.createDirectories(directory);
+		FileSync.force(staged);
+		try {
+			Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (FileAlreadyExistsException e) {
+			// тот же файл одновременно перенесен другим запросом
+			Files.deleteIfExists(staged);
+			return;
+		}
+		FileSync.forceDirectory(directory);
+		if (created) {
+			FileSync.forceDirectory(directory.getParent());
+			FileSync.forceDirectory(root);
+		}
+	}
+
+	@Override
+	public DocumentContent open(String id) throws IOException {
+		Path file = pathOf(id);
+		if (!Files.isRegularFile(file))
+			throw new FileNotFoundException(id);
+		return DocumentContent.ofFile(file);
+	}
+
+	@Override
+	public void delete(String id) throws IOException {
+		Files.deleteIfExists(pathOf(id));
+	}
+
+	/**
+	 * Метод возвращает путь к файлу в шардированном каталоге: ab/cd/abcd...
+	 */
+	Path pathOf(String id) {
+		return root.resolve(id.substring(0, 2)).resolve(id.substring(2, 4)).resolve(id);
+	}
+}
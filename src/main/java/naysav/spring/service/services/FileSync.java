@@ -0,0 +1,42 @@
+package naysav.spring.service.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Сброс файлов и каталогов хранилища документов на диск: документ
+ * считается сохраненным, только когда после сбоя он найдется на месте,
+ * ведь на него уже ссылается запись в БД.
+ */
+@Slf4j
+final class FileSync {
+
+	private FileSync() {
+	}
+
+	/**
+	 * Метод сбрасывает на диск содержимое файла.
+	 */
+	static void force(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Метод сбрасывает на диск записи каталога (созданные, переименованные файлы).
+	 * Не на всех платформах каталог можно открыть (например, Windows),
+	 * поэтому ошибка только записывается в журнал.
+	 */
+	static void forceDirectory(Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			log.debug("Cannot sync directory " + directory + ": " + e);
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package naysav.spring.service.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Хеширование и проверка паролей BCrypt в отдельном ограниченном пуле потоков.
+ * Потоки Tomcat только ожидают результат, поэтому всплеск регистраций
+ * или подбора паролей занимает не больше password.hashing.threads ядер,
+ * а при заполненной очереди запрос сразу отклоняется
+ * (PasswordHashingRejectedException, HTTP 429).
+ * Используется как PasswordEncoder при входе: пароль, захешированный
+ * с другой стоимостью, чем password.bcrypt.strength, перехешируется
+ * после успешного входа (upgradeEncoding()).
+ * Время ожидания в очереди и время хеширования публикуются в Micrometer
+ * как таймеры (с процентилями, см. management.metrics.distribution.*).
+ */
+@Component
+public class PasswordHasher implements PasswordEncoder, MeterBinder {
+
+	private static final Pattern BCRYPT_STRENGTH = Pattern.compile("\\$2[aby]?\\$(\\d\\d)\\$.*");
+
+	/**
+	 * Энкодер с текущей стоимостью хеширования.
+	 */
+	private final BCryptPasswordEncoder encoder;
+
+	/**
+	 * Текущая стоимость хеширования (log2 количества раундов).
+	 */
+	private final int strength;
+
+	final ThreadPoolExecutor executor;
+
+	private final Stats queueWait = new Stats();
+
+	private final Stats encodeTime = new Stats();
+
+	private final Stats matchesTime = new Stats();
+
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * @param strength - стоимость хеширования BCrypt
+	 * @param threads - количество потоков хеширования (0 - половина ядер)
+	 * @param queueCapacity - максимальное количество ожидающих хеширования запросов
+	 */
+	public PasswordHasher(@Value("${password.bcrypt.strength:10}") int strength,
+	                      @Value("${password.hashing.threads:0}") int threads,
+	                      @Value("${password.hashing.queue-capacity:100}") int queueCapacity) {
+		if (threads <= 0)
+			threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		this.strength = strength;
+		this.encoder = new BCryptPasswordEncoder(strength);
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("password-hashing-");
+		threadFactory.setDaemon(true);
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	@Override
+	public String encode(CharSequence rawPassword) {
+		return submit(() -> encoder.encode(rawPassword), encodeTime);
+	}
+
+	@Override
+	public boolean matches(CharSequence rawPassword, String encodedPassword) {
+		return submit(() -> encoder.matches(rawPassword, encodedPassword), matchesTime);
+	}
+
+	/**
+	 * Пароль перехешируется, если его стоимость отличается от текущей
+	 * как в большую, так и в меньшую сторону.
+	 */
+	@Override
+	public boolean upgradeEncoding(String encodedPassword) {
+		if (encodedPassword == null)
+			return false;
+		Matcher matcher = BCRYPT_STRENGTH.matcher(encodedPassword);
+		return matcher.matches() && Integer.parseInt(matcher.group(1)) != strength;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		queueWait.register(registry, "password.hashing.wait", "Time spent waiting for a hashing thread", null);
+		encodeTime.register(registry, "password.hashing.time", "Password hashing time", "encode");
+		matchesTime.register(registry, "password.hashing.time", "Password hashing time", "matches");
+		FunctionCounter.builder("password.hashing.rejected", rejected, LongAdder::sum)
+				.description("Hashing requests rejected because the queue was full")
+				.register(registry);
+		Gauge.builder("password.hashing.queue", executor, e -> e.getQueue().size())
+				.description("Hashing requests waiting for a thread")
+				.register(registry);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Метод выполняет задачу в пуле и ожидает ее результат.
+	 * @throws PasswordHashingRejectedException, если очередь заполнена
+	 */
+	private <T> T submit(Callable<T> task, Stats time) {
+		long submitted = System.nanoTime();
+		Future<T> future;
+		try {
+			future = executor.submit(() -> {
+				long started = System.nanoTime();
+				queueWait.record(started - submitted);
+				try {
+					return task.call();
+				} finally {
+					time.record(System.nanoTime() - started);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw new PasswordHashingRejectedException("Password hashing queue is full");
+		}
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new PasswordHashingRejectedException("Interrupted while waiting for password hashing");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Таймер операции; до регистрации в MeterRegistry измерения не сохраняются.
+	 */
+	private static final class Stats {
+		private volatile Timer timer;
+
+		void record(long nanos) {
+			Timer timer = this.timer;
+			if (timer != null)
+				timer.record(nanos, TimeUnit.NANOSECONDS);
+		}
+
+		void register(MeterRegistry registry, String name, String description, String operation) {
+			Timer.Builder builder = Timer.builder(name).description(description);
+			if (operation != null)
+				builder.tag("operation", operation);
+			timer = builder.register(registry);
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package naysav.spring.service.services;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Исключение выбрасывается, когда очередь хеширования паролей заполнена
+ * и запрос регистрации или входа отклоняется без ожидания (HTTP 429).
+ */
+public class PasswordHashingRejectedException extends RejectedExecutionException {
+
+	public PasswordHashingRejectedException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,448 @@
+package naysav.spring.service.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PreDestroy;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Размещение документов в больших файлах-сегментах upload.path/segments/segment-N.dat
+ * (document.store=segments). Документы только дописываются в конец текущего сегмента
+ * записью "заголовок + содержимое", поэтому на документ не тратятся отдельный файл,
+ * запись каталога и поиск по каталогу. Индекс "хеш - сегмент, смещение, длина"
+ * хранится в памяти и восстанавливается при старте чтением заголовков сегментов;
+ * недописанная после сбоя запись в конце сегмента отбрасывается.
+ * Содержимое читается через отображенные в память (mmap) области сегментов.
+ * Удаление убирает документ из индекса; место освобождается фоновым уплотнением,
+ * которое переносит живые документы из сегментов с большой долей удаленных
+ * в текущий сегмент и удаляет старый файл. Удаления не пишутся в сегменты:
+ * после перезапуска удаленные документы отсеиваются сверкой индекса
+ * с stored_document (см. DocumentStore.reconcile()).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "document.store", havingValue = "segments")
+public class SegmentDocumentBackend implements DocumentBackend, MeterBinder {
+
+	/**
+	 * Сигнатура заголовка записи ("PDFS").
+	 */
+	private static final int RECORD_MAGIC = 0x50444653;
+
+	/**
+	 * Размер заголовка записи: сигнатура, SHA-256, время записи, длина содержимого.
+	 */
+	static final int HEADER_SIZE = 4 + 32 + 8 + 8;
+
+	private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.dat");
+
+	/**
+	 * Каталог сегментов.
+	 */
+	private final Path directory;
+
+	/**
+	 * Максимальный размер сегмента (не больше 2 ГБ - предел одного отображения в память).
+	 */
+	private final long maxSegmentSize;
+
+	/**
+	 * Доля удаленных данных в сегменте, после которой он уплотняется.
+	 */
+	private final double compactionThreshold;
+
+	/**
+	 * Индекс: хеш документа - его расположение.
+	 */
+	private final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<>();
+
+	/**
+	 * Сегменты по номерам.
+	 */
+	private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Файлы уплотненных сегментов, которые не удалось удалить сразу
+	 * (Windows не удаляет файлы, отображенные в память).
+	 */
+	private final List<Path> retired = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Сегмент, в который дописываются документы.
+	 */
+	private Segment active;
+
+	/**
+	 * Счетчик освобожденного уплотнением места.
+	 */
+	private final LongAdder reclaimedBytes = new LongAdder();
+
+	/**
+	 * @param uploadPath - путь загрузки PDF-файлов
+	 * @param maxSegmentSize - максимальный размер сегмента
+	 * @param compactionThreshold - доля удаленных данных, после которой сегмент уплотняется
+	 */
+	public SegmentDocumentBackend(@Value("${upload.path}") String uploadPath,
+	                              @Value("${document.segments.max-size:1GB}") DataSize maxSegmentSize,
+	                              @Value("${document.segments.compaction-threshold:0.5}") double compactionThreshold)
+			throws IOException {
+		this.directory = Paths.get(uploadPath).resolve("segments");
+		this.maxSegmentSize = Math.min(maxSegmentSize.toBytes(), Integer.MAX_VALUE);
+		this.compactionThreshold = compactionThreshold;
+		Files.createDirectories(directory);
+		load();
+	}
+
+	@Override
+	public boolean contains(String id) {
+		return index.containsKey(id);
+	}
+
+	/**
+	 * Документ дописывается в конец текущего сегмента и сбрасывается на диск,
+	 * после этого временный файл удаляется. Если дописать документ не удалось,
+	 * временный файл остается в tmp и переносится позже (см. DocumentStore.sweep()).
+	 */
+	@Override
+	public void put(String id, Path staged) throws IOException {
+		synchronized (this) {
+			if (!index.containsKey(id)) {
+				try (FileChannel in = FileChannel.open(staged, StandardOpenOption.READ)) {
+					long length = in.size();
+					index.put(id, append(id, System.currentTimeMillis(), length, (out, position) -> {
+						long written = 0;
+						while (written < length) {
+							long sent = out.transferFrom(in, position + written, length - written);
+							if (sent <= 0)
+								throw new IOException("Unexpected end of " + staged);
+							written += sent;
+						}
+					}));
+				}
+			}
+		}
+		Files.deleteIfExists(staged);
+	}
+
+	@Override
+	public DocumentContent open(String id) throws IOException {
+		for (int attempt = 0; ; attempt++) {
+			Location location = index.get(id);
+			if (location == null)
+				throw new FileNotFoundException(id);
+			try {
+				return DocumentContent.ofBuffer(location.segment.slice(location.offset, location.length),
+						location.timestamp);
+			} catch (ClosedChannelException e) {
+				// сегмент уплотнен во время чтения - документ уже перенесен в другой сегмент
+				if (attempt > 0)
+					throw e;
+			}
+		}
+	}
+
+	@Override
+	public void delete(String id) {
+		Location location = index.remove(id);
+		if (location != null)
+			location.segment.liveBytes.addAndGet(-(HEADER_SIZE + location.length));
+	}
+
+	@Override
+	public Collection<String> indexedIds() {
+		return new ArrayList<>(index.keySet());
+	}
+
+	/**
+	 * Метод периодически уплотняет сегменты, в которых доля удаленных
+	 * данных превышает document.segments.compaction-threshold.
+	 */
+	@Scheduled(fixedDelayString = "${document.segments.compaction-interval:PT10M}",
+			initialDelayString = "${document.segments.compaction-interval:PT10M}")
+	public void compact() {
+		for (Segment segment : segments.values()) {
+			synchronized (this) {
+				if (segment == active)
+					continue;
+			}
+			long size = segment.size;
+			if (size > 0 && (double) (size - segment.liveBytes.get()) / size < compactionThreshold)
+				continue;
+			try {
+				compact(segment);
+			} catch (IOException e) {
+				log.warn("Failed to compact " + segment.path, e);
+			}
+		}
+		for (Path path : retired) {
+			try {
+				Files.deleteIfExists(path);
+				retired.remove(path);
+			} catch (IOException e) {
+				// файл еще отображен в память - повтор при следующем уплотнении
+			}
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("document.segments.count", segments, Map::size)
+				.description("Number of document segment files")
+				.register(registry);
+		Gauge.builder("document.segments.size", this, backend -> backend.totalBytes(false))
+				.description("Total size of document segment files")
+				.baseUnit(BaseUnits.BYTES)
+				.register(registry);
+		Gauge.builder("document.segments.live", this, backend -> backend.totalBytes(true))
+				.description("Size of live documents in segment files")
+				.baseUnit(BaseUnits.BYTES)
+				.register(registry);
+		FunctionCounter.builder("document.segments.reclaimed", reclaimedBytes, LongAdder::sum)
+				.description("Space reclaimed by segment compaction")
+				.baseUnit(BaseUnits.BYTES)
+				.register(registry);
+	}
+
+	@PreDestroy
+	public synchronized void close() throws IOException {
+		for (Segment segment : segments.values())
+			segment.channel.close();
+	}
+
+	/**
+	 * Метод переносит живые документы сегмента в текущий сегмент и удаляет его.
+	 */
+	private void compact(Segment segment) throws IOException {
+		for (Map.Entry<String, Location> entry : index.entrySet()) {
+			Location location = entry.getValue();
+			if (location.segment != segment)
+				continue;
+			synchronized (this) {
+				ByteBuffer content = segment.slice(location.offset, location.length);
+				Location copy = append(entry.getKey(), location.timestamp, location.length,
+						(out, position) -> {
+							long written = 0;
+							while (content.hasRemaining())
+								written += out.write(content, position + written);
+						});
+				if (!index.replace(entry.getKey(), location, copy))
+					// документ удален во время переноса - копия сразу становится мусором
+					copy.segment.liveBytes.addAndGet(-(HEADER_SIZE + copy.length));
+			}
+		}
+		synchronized (this) {
+			segments.remove(segment.number);
+		}
+		segment.channel.close();
+		reclaimedBytes.add(segment.size - Math.max(0, segment.liveBytes.get()));
+		try {
+			Files.deleteIfExists(segment.path);
+		} catch (IOException e) {
+			retired.add(segment.path);
+		}
+		log.info("Document segment compacted: " + segment.path);
+	}
+
+	/**
+	 * Метод дописывает запись документа в текущий сегмент, при необходимости
+	 * начиная новый, и сбрасывает ее на диск: запись на документ уже есть
+	 * в stored_document, а уплотнение удаляет старый сегмент сразу после переноса.
+	 * Вызывается под блокировкой this.
+	 * @return расположение содержимого записанного документа
+	 */
+	private Location append(String id, long timestamp, long length, ContentWriter writer) throws IOException {
+		long recordSize = HEADER_SIZE + length;
+		if (active == null || (active.size > 0 && active.size + recordSize > maxSegmentSize)) {
+			long number = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+			active = new Segment(number, directory.resolve("segment-" + number + ".dat"),
+					StandardOpenOption.CREATE_NEW);
+			segments.put(number, active);
+			FileSync.forceDirectory(directory);
+		}
+		Segment segment = active;
+		long offset = segment.size;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(RECORD_MAGIC).put(fromHex(id)).putLong(timestamp).putLong(length).flip();
+		try {
+			while (header.hasRemaining())
+				segment.channel.write(header, offset + header.position());
+			writer.write(segment.channel, offset + HEADER_SIZE);
+			segment.channel.force(false);
+		} catch (IOException e) {
+			segment.channel.truncate(offset);
+			throw e;
+		}
+		segment.size = offset + recordSize;
+		segment.liveBytes.addAndGet(recordSize);
+		return new Location(segment, offset + HEADER_SIZE, (int) length, timestamp);
+	}
+
+	/**
+	 * Метод открывает существующие сегменты и восстанавливает индекс
+	 * по заголовкам записей. Недописанный хвост сегмента отрезается.
+	 */
+	private void load() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+				if (matcher.matches()) {
+					long number = Long.parseLong(matcher.group(1));
+					segments.put(number, new Segment(number, file, StandardOpenOption.READ));
+				}
+			}
+		}
+		long documents = 0;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		for (Segment segment : segments.values()) {
+			long fileSize = segment.channel.size();
+			long position = 0;
+			while (position + HEADER_SIZE <= fileSize) {
+				header.clear();
+				while (header.hasRemaining()
+						&& segment.channel.read(header, position + header.position()) > 0) {
+					// чтение заголовка целиком
+				}
+				header.flip();
+				if (header.getInt() != RECORD_MAGIC)
+					break;
+				byte[] hash = new byte[32];
+				header.get(hash);
+				long timestamp = header.getLong();
+				long length = header.getLong();
+				if (length < 0 || position + HEADER_SIZE + length > fileSize)
+					break;
+				String id = DocumentStore.toHex(hash);
+				Location previous = index.put(id, new Location(segment, position + HEADER_SIZE,
+						(int) length, timestamp));
+				// копия, оставшаяся после прерванного уплотнения
+				if (previous != null)
+					previous.segment.liveBytes.addAndGet(-(HEADER_SIZE + previous.length));
+				segment.liveBytes.addAndGet(HEADER_SIZE + length);
+				position += HEADER_SIZE + length;
+				documents++;
+			}
+			if (position < fileSize) {
+				log.warn("Truncating incomplete record in " + segment.path + " at " + position);
+				segment.channel.truncate(position);
+			}
+			segment.size = position;
+		}
+		active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+		log.info("Document segments loaded: " + segments.size() + " segments, " + documents + " documents");
+	}
+
+	private long totalBytes(boolean live) {
+		long total = 0;
+		for (Segment segment : segments.values())
+			total += live ? segment.liveBytes.get() : segment.size;
+		return total;
+	}
+
+	private static byte[] fromHex(String id) {
+		byte[] bytes = new byte[id.length() / 2];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) Integer.parseInt(id.substring(i * 2, i * 2 + 2), 16);
+		return bytes;
+	}
+
+	/**
+	 * Запись содержимого документа в сегмент с указанной позиции.
+	 */
+	private interface ContentWriter {
+		void write(FileChannel out, long position) throws IOException;
+	}
+
+	/**
+	 * Расположение содержимого документа.
+	 */
+	private static final class Location {
+		final Segment segment;
+		final long offset;
+		final int length;
+		final long timestamp;
+
+		Location(Segment segment, long offset, int length, long timestamp) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.timestamp = timestamp;
+		}
+	}
+
+	/**
+	 * Файл-сегмент. Отображение в память создается при первом чтении
+	 * и пересоздается, когда читается документ, дописанный после него.
+	 */
+	private static final class Segment {
+		final long number;
+		final Path path;
+		final FileChannel channel;
+
+		/**
+		 * Размер записанных целиком записей.
+		 */
+		volatile long size;
+
+		/**
+		 * Размер записей, на которые ссылается индекс.
+		 */
+		final AtomicLong liveBytes = new AtomicLong();
+
+		private volatile MappedByteBuffer mapped;
+
+		Segment(long number, Path path, StandardOpenOption mode) throws IOException {
+			this.number = number;
+			this.path = path;
+			this.channel = FileChannel.open(path, mode, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+
+		ByteBuffer slice(long offset, int length) throws IOException {
+			MappedByteBuffer view = mapped;
+			if (view == null || offset + length > view.capacity()) {
+				synchronized (this) {
+					view = mapped;
+					if (view == null || offset + length > view.capacity()) {
+						view = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+						mapped = view;
+					}
+				}
+			}
+			ByteBuffer content = view.duplicate();
+			content.position((int) offset);
+			content.limit((int) offset + length);
+			return content.slice();
+		}
+	}
+}
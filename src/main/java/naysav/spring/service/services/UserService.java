@@ -1,22 +1,31 @@
 package naysav.spring.service.services;
 
+import io.micrometer.core.annotation.Timed;
+import naysav.spring.service.cache.UserDetailsCache;
+import lombok.extern.slf4j.Slf4j;
+import naysav.spring.service.datasource.ReplicaRoutingDataSource;
 import naysav.spring.service.models.User;
+import naysav.spring.service.models.UserPrincipal;
 import naysav.spring.service.repository.UserRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Сервисный класс для чтения и записи данных таблицы user,
  * полученных от класса Controllers.
  */
+@Slf4j
 @Service
-public class UserService implements UserDetailsService{
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
 	/**
 	 * Поле для доступа к таблице user.
@@ -25,52 +34,122 @@ public class UserService implements UserDetailsService{
 	UserRepository userRepository;
 
 	/**
-	 * Поле для доступа к шифрованию.
+	 * Поле для доступа к шифрованию (в пуле хеширования паролей).
 	 */
 	@Autowired
-	BCryptPasswordEncoder bCryptPasswordEncoder;
+	PasswordHasher passwordHasher;
+
+	/**
+	 * Поле для доступа к кэшу пользователей.
+	 */
+	@Autowired
+	UserDetailsCache userCache;
 
 	/**
 	 * Метод необходим для реализации интерфейса UserDetailsService.
+	 * Пользователь берется из кэша, при промахе загружается из БД
+	 * (запрос выполняется в собственной read-only транзакции репозитория,
+	 * поэтому при попадании соединение с БД не открывается).
+	 * Если запрос выполнялся на реплике и пользователь не найден, он повторяется
+	 * на основной БД: пользователь мог только что зарегистрироваться.
 	 * @param username - логин пользователя
-	 * @return - пользователь с логином username
+	 * @return - учетные данные пользователя с логином username,
+	 *           которые после входа хранятся в сессии
 	 * @throws UsernameNotFoundException, если пользователь не найден
 	 */
 	@Override
-	@Transactional(readOnly = true)
+	@Timed(value = "user.service", description = "UserService method execution time")
 	public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+		UserDetails cached = userCache.getUserFromCache(username);
+		if (cached != null) {
+			return ((UserPrincipal) cached).copy();
+		}
+
 		User user = userRepository.findByUsername(username);
+		if (user == null && ReplicaRoutingDataSource.isActive())
+			user = ReplicaRoutingDataSource.onPrimary(() -> userRepository.findByUsername(username));
 
 		if (user == null) {
 			throw new UsernameNotFoundException("User not found");
 		}
-		return user;
+		UserPrincipal principal = new UserPrincipal(user);
+		userCache.putUserInCache(principal);
+		return principal.copy();
 	}
 
 	/**
-	 * Метод сохраняет данные пользователя в БД user
+	 * Метод сохраняет данные пользователя в БД user одной вставкой:
+	 * занятый логин определяется по нарушению уникального индекса
+	 * uk_user_username, поэтому из одновременных регистраций с одним
+	 * логином успешна ровно одна.
+	 * Пароль хешируется до записи, вне транзакции, чтобы ожидание
+	 * пула хеширования не удерживало соединение с БД.
 	 * @param user - модель, содержащая данные пользователя
 	 * @return true, если успешно сохранены
-	 *         false, если сохранение не удалось
+	 *         false, если логин занят (модель user при этом не изменяется)
+	 * @throws PasswordHashingRejectedException, если пул хеширования перегружен
+	 * @throws org.springframework.dao.DataAccessException, если БД недоступна
+	 *         или запись не удалась по другой причине
 	 */
-	@Transactional()
+	@Timed(value = "user.service", description = "UserService method execution time")
 	public boolean saveUser(User user) {
-		User userFromDB = userRepository.findByUsername(user.getUsername());
-
-		if (userFromDB != null) {
-			return false;
-		}
-
+		String password = user.getPassword();
+		String passwordVerify = user.getPasswordVerify();
 		try {
-			user.setPassword(bCryptPasswordEncoder.encode(user.getPassword()));
+			user.setPassword(passwordHasher.encode(password));
 			user.setPasswordVerify(user.getPassword());
 			user.setRole("USER");
 			userRepository.save(user);
+			evictAfterCommit(user.getUsername());
 			return true;
-		} catch (Exception e) {
-			System.out.println("Exception: " + e);
+		} catch (DataIntegrityViolationException e) {
+			log.info("Username already taken: " + user.getUsername());
+			user.setId(null);
+			user.setPassword(password);
+			user.setPasswordVerify(passwordVerify);
+			user.setRole(null);
 			return false;
 		}
 	}
-}
 
+	/**
+	 * Метод необходим для реализации интерфейса UserDetailsPasswordService.
+	 * Вызывается Spring Security после успешного входа, если стоимость
+	 * хеширования пароля отличается от password.bcrypt.strength.
+	 * @param user - вошедший пользователь
+	 * @param newPassword - пароль, захешированный с текущей стоимостью
+	 * @return - пользователь с обновленным паролем
+	 */
+	@Override
+	@Transactional
+	public UserDetails updatePassword(UserDetails user, String newPassword) {
+		User userFromDB = userRepository.findByUsername(user.getUsername());
+		if (userFromDB == null) {
+			return user;
+		}
+		userFromDB.setPassword(newPassword);
+		userFromDB.setPasswordVerify(newPassword);
+		userRepository.save(userFromDB);
+		evictAfterCommit(userFromDB.getUsername());
+		return new UserPrincipal(userFromDB);
+	}
+
+	/**
+	 * Метод удаляет пользователя из кэша после фиксации транзакции,
+	 * в которой изменены его данные (или сразу, если транзакции нет).
+	 * Должен вызываться при любом изменении пароля пользователя.
+	 * @param username - логин пользователя
+	 */
+	void evictAfterCommit(String username) {
+		userCache.removeUserFromCache(username);
+		if (!TransactionSynchronizationManager.isSynchronizationActive())
+			return;
+		// повторно - на случай, если запись успели закэшировать до фиксации
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				userCache.removeUserFromCache(username);
+			}
+		});
+	}
+}
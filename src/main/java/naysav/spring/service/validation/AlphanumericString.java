@@ -0,0 +1,41 @@
+package naysav.spring.service.validation;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.ANNOTATION_TYPE;
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Строка из латинских букв и цифр длиной от min до max символов.
+ * Заменяет @Pattern(regexp = "[a-zA-Z[0-9]]{min,max}") с тем же результатом проверки:
+ * null считается корректным значением (обязательность проверяет @NotEmpty).
+ */
+@Documented
+@Constraint(validatedBy = AlphanumericStringValidator.class)
+@Target({FIELD, METHOD, PARAMETER, ANNOTATION_TYPE})
+@Retention(RUNTIME)
+public @interface AlphanumericString {
+
+	String message();
+
+	/**
+	 * Минимальная длина строки.
+	 */
+	int min() default 0;
+
+	/**
+	 * Максимальная длина строки.
+	 */
+	int max() default Integer.MAX_VALUE;
+
+	Class<?>[] groups() default {};
+
+	Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,42 @@
+package naysav.spring.service.validation;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+/**
+ * Проверка @AlphanumericString посимвольным просмотром строки
+ * без регулярного выражения.
+ */
+public class AlphanumericStringValidator implements ConstraintValidator<AlphanumericString, CharSequence> {
+
+	private int min;
+
+	private int max;
+
+	@Override
+	public void initialize(AlphanumericString constraint) {
+		min = constraint.min();
+		max = constraint.max();
+	}
+
+	@Override
+	public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+		return value == null || isAlphanumeric(value, min, max);
+	}
+
+	/**
+	 * Метод проверяет, что строка состоит из латинских букв a-z, A-Z и цифр 0-9
+	 * и ее длина от min до max символов.
+	 * @return false также для null
+	 */
+	public static boolean isAlphanumeric(CharSequence value, int min, int max) {
+		if (value == null || value.length() < min || value.length() > max)
+			return false;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if ((c < 'a' || c > 'z') && (c < 'A' || c > 'Z') && (c < '0' || c > '9'))
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,41 @@
+package naysav.spring.service.validation;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.ANNOTATION_TYPE;
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Строка из цифр 0-9 длиной от min до max символов.
+ * Заменяет @Pattern(regexp = "\\d{min,max}") с тем же результатом проверки:
+ * null считается корректным значением (обязательность проверяет @NotEmpty).
+ */
+@Documented
+@Constraint(validatedBy = DigitStringValidator.class)
+@Target({FIELD, METHOD, PARAMETER, ANNOTATION_TYPE})
+@Retention(RUNTIME)
+public @interface DigitString {
+
+	String message();
+
+	/**
+	 * Минимальная длина строки.
+	 */
+	int min() default 0;
+
+	/**
+	 * Максимальная длина строки.
+	 */
+	int max() default Integer.MAX_VALUE;
+
+	Class<?>[] groups() default {};
+
+	Class<? extends Payload>[] payload() default {};
+}
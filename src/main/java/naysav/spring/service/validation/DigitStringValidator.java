@@ -0,0 +1,42 @@
+package naysav.spring.service.validation;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+/**
+ * Проверка @DigitString посимвольным просмотром строки: в отличие от @Pattern
+ * и String.matches() не создает Matcher и не компилирует регулярное выражение.
+ */
+public class DigitStringValidator implements ConstraintValidator<DigitString, CharSequence> {
+
+	private int min;
+
+	private int max;
+
+	@Override
+	public void initialize(DigitString constraint) {
+		min = constraint.min();
+		max = constraint.max();
+	}
+
+	@Override
+	public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+		return value == null || isDigits(value, min, max);
+	}
+
+	/**
+	 * Метод проверяет, что строка состоит из цифр 0-9 (как \d в регулярном выражении)
+	 * и ее длина от min до max символов.
+	 * @return false также для null
+	 */
+	public static boolean isDigits(CharSequence value, int min, int max) {
+		if (value == null || value.length() < min || value.length() > max)
+			return false;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+		}
+		return true;
+	}
+}
@@ -6,5 +6,9 @@ INSERT INTO user(id, username, password, password_verify, role, first_name)
 values('8', 'tuxedo', '$2a$10$zxhgnn.hkUFRlh3Qg/j0q.ngbXxEghXMhm2bfg493qJATYHYvN0.S',
        '$2a$10$zxhgnn.hkUFRlh3Qg/j0q.ngbXxEghXMhm2bfg493qJATYHYvN0.S', 'USER', 'VASILIY');
 
-INSERT INTO customer(id, first_name, last_name, gender, age, passport_series, passport_number, phone_number, link_to_file)
-values('7', 'Ivan', 'Ivanov', 'Male', '34', '4321', '098765', '1234567890', 'C:/my/testFile.pdf');
\ No newline at end of file
+INSERT INTO customer(id, first_name, last_name, gender, age, passport_key, phone_number, link_to_file)
+values('7', 'Ivan', 'Ivanov', 'Male', 34, 4321098765, 1234567890, 'dea7111a8406e27cfc8bf5f49c5d40898402b0b584b3285f069170a36f9eec31');
+
+-- идентификаторы выделяются блоками из последовательностей, начинаем выше тестовых записей
+ALTER SEQUENCE customer_seq RESTART WITH 101;
+ALTER SEQUENCE user_seq RESTART WITH 101;
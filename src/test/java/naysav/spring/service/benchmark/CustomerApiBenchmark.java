@@ -0,0 +1,151 @@
+package naysav.spring.service.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Сравнение поиска клиента по паспорту через HTML-страницу (POST /customers,
+ * вход через форму и cookie SESSION) и через JSON API
+ * (GET /api/customers/{серия}/{номер}, HTTP Basic): пропускная способность,
+ * медиана и 99-й перцентиль задержки.
+ * Сервис должен быть запущен, пользователь и клиент - созданы заранее.
+ * Запуск: java ... CustomerApiBenchmark адрес логин пароль серия номер
+ * [количество запросов] [параллельность]
+ */
+public class CustomerApiBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 5) {
+			System.out.println("Usage: CustomerApiBenchmark <url> <username> <password> <series> <number> [requests] [concurrency]");
+			return;
+		}
+		String baseUrl = args[0].replaceAll("/$", "");
+		String username = args[1];
+		String password = args[2];
+		String passportSeries = args[3];
+		String passportNumber = args[4];
+		int requests = args.length > 5 ? Integer.parseInt(args[5]) : 10000;
+		int concurrency = args.length > 6 ? Integer.parseInt(args[6]) : 16;
+
+		String session = login(baseUrl, username, password);
+		String form = "passportSeries=" + passportSeries + "&passportNumber=" + passportNumber;
+		Callable<Integer> html = () -> send(baseUrl + "/customers", "POST", "Cookie", session, form);
+
+		String basic = "Basic " + Base64.getEncoder().encodeToString(
+				(username + ":" + password).getBytes(StandardCharsets.UTF_8));
+		String apiUrl = baseUrl + "/api/customers/" + passportSeries + "/" + passportNumber;
+		Callable<Integer> api = () -> send(apiUrl, "GET", "Authorization", basic, null);
+
+		// прогрев: JIT, пулы соединений и ближние кэши сервиса
+		run("warmup html", html, Math.min(requests, 1000), concurrency, false);
+		run("warmup api", api, Math.min(requests, 1000), concurrency, false);
+		run("html", html, requests, concurrency, true);
+		run("api", api, requests, concurrency, true);
+	}
+
+	/**
+	 * Метод входит через форму и возвращает cookie сессии.
+	 */
+	private static String login(String baseUrl, String username, String password) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/login").openConnection();
+		connection.setInstanceFollowRedirects(false);
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(("username=" + URLEncoder.encode(username, "UTF-8")
+					+ "&password=" + URLEncoder.encode(password, "UTF-8")).getBytes(StandardCharsets.UTF_8));
+		}
+		String location = connection.getHeaderField("Location");
+		String cookie = connection.getHeaderField("Set-Cookie");
+		drain(connection);
+		if (connection.getResponseCode() != 302 || location == null || location.contains("error") || cookie == null)
+			throw new IllegalStateException("Не удалось войти: " + connection.getResponseCode() + " " + location);
+		return cookie.split(";", 2)[0];
+	}
+
+	private static void run(String name, Callable<Integer> request, int requests, int concurrency,
+	                        boolean print) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		List<Future<long[]>> futures = new ArrayList<>(concurrency);
+		long start = System.nanoTime();
+		for (int t = 0; t < concurrency; t++) {
+			int count = requests / concurrency + (t < requests % concurrency ? 1 : 0);
+			futures.add(executor.submit(() -> {
+				long[] latencies = new long[count];
+				for (int i = 0; i < count; i++) {
+					long begin = System.nanoTime();
+					int status = request.call();
+					latencies[i] = System.nanoTime() - begin;
+					if (status != 200)
+						throw new IllegalStateException(name + ": HTTP " + status);
+				}
+				return latencies;
+			}));
+		}
+		long[] all = new long[requests];
+		int position = 0;
+		for (Future<long[]> future : futures) {
+			long[] latencies = future.get();
+			System.arraycopy(latencies, 0, all, position, latencies.length);
+			position += latencies.length;
+		}
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+		if (!print)
+			return;
+		Arrays.sort(all);
+		System.out.printf("%-5s %8.0f req/s, p50: %7.2f ms, p99: %7.2f ms, max: %7.2f ms%n", name,
+				requests / (elapsed / 1e9), percentile(all, 0.50), percentile(all, 0.99),
+				all[all.length - 1] / 1e6);
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+	}
+
+	private static int send(String url, String method, String header, String value, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setInstanceFollowRedirects(false);
+		connection.setRequestMethod(method);
+		connection.setRequestProperty(header, value);
+		if (body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		int status = connection.getResponseCode();
+		drain(connection);
+		return status;
+	}
+
+	/**
+	 * Метод дочитывает ответ, чтобы соединение вернулось в пул keep-alive.
+	 */
+	private static void drain(HttpURLConnection connection) throws IOException {
+		InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+		if (in == null)
+			return;
+		try (InputStream stream = in) {
+			byte[] buffer = new byte[8192];
+			while (stream.read(buffer) != -1) {
+				// ответ не нужен
+			}
+		}
+	}
+}
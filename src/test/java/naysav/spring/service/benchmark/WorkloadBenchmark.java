@@ -0,0 +1,492 @@
+package naysav.spring.service.benchmark;
+
+import naysav.spring.service.ServiceApplication;
+import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.PassportKey;
+import naysav.spring.service.models.User;
+import naysav.spring.service.services.CustomerService;
+import naysav.spring.service.services.UserService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный тест сервиса со смешанной нагрузкой: вход через форму (POST /login),
+ * поиск клиента по паспорту (POST /customers), создание клиента с загрузкой
+ * PDF-файла (POST /createCustomer) и выдача PDF-файла (GET /fileView).
+ * Сервис запускается во встроенном Tomcat со случайным портом (профиль dev, H2),
+ * перед запуском в БД записываются клиенты, пользователи и клиенты с PDF-файлами.
+ * Каждый поток входит под своим пользователем и выбирает следующую операцию
+ * случайно с весами из load.mix. После прогрева выводятся для каждой операции:
+ * пропускная способность, перцентили задержки и доля ошибок с их HTTP-статусами.
+ * Параметры (системные свойства):
+ * load.mix - веса операций (login:1,search:6,create:1,view:2),
+ * load.threads - параллельность (32), load.warmup и load.duration - прогрев и
+ * измерение в секундах (10 и 60), load.customers - клиентов в БД (100000),
+ * load.documents - клиентов с PDF-файлами (200), load.users - пользователей (20),
+ * load.document-size - размер PDF-файла (200KB), load.hit-ratio - доля поисков
+ * существующих паспортов (0.9).
+ * Запуск: java -Dload.mix=... ... WorkloadBenchmark
+ */
+public class WorkloadBenchmark {
+
+	/** Идентификаторы клиентов без файлов начинаются после клиентов из data.sql. */
+	private static final long FIRST_ID = 1000;
+
+	/**
+	 * Ключи паспортов клиентов без файлов: первый ключ и шаг, ключ + 1 - паспорт,
+	 * которого нет в БД.
+	 */
+	private static final long FIRST_KEY = 1_000_000_000L;
+
+	private static final long KEY_STEP = 7;
+
+	/** Ключи паспортов клиентов с PDF-файлами. */
+	private static final long DOCUMENT_KEY = 2_000_000_000L;
+
+	/** Ключи паспортов клиентов, создаваемых во время теста. */
+	private static final long CREATED_KEY = 3_000_000_000L;
+
+	private static final String PASSWORD = "Loadtest123";
+
+	private static final String BOUNDARY = "----WorkloadBenchmarkBoundary";
+
+	/**
+	 * Операции нагрузки и статус успешного ответа.
+	 */
+	enum Operation {
+		LOGIN("POST /login", 302),
+		SEARCH("POST /customers", 200),
+		CREATE("POST /createCustomer", 302),
+		VIEW("GET /fileView", 200);
+
+		final String request;
+
+		final int expectedStatus;
+
+		Operation(String request, int expectedStatus) {
+			this.request = request;
+			this.expectedStatus = expectedStatus;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<Operation, Integer> mix = parseMix(System.getProperty("load.mix", "login:1,search:6,create:1,view:2"));
+		int threads = Integer.getInteger("load.threads", 32);
+		int warmup = Integer.getInteger("load.warmup", 10);
+		int duration = Integer.getInteger("load.duration", 60);
+		int customers = Integer.getInteger("load.customers", 100000);
+		int documents = Integer.getInteger("load.documents", 200);
+		int users = Integer.getInteger("load.users", 20);
+		int documentSize = (int) DataSize.parse(System.getProperty("load.document-size", "200KB")).toBytes();
+		double hitRatio = Double.parseDouble(System.getProperty("load.hit-ratio", "0.9"));
+
+		Path uploads = Files.createTempDirectory("workload-uploads");
+		List<String> documentIds = new ArrayList<>(documents);
+		// devtools перезапускал бы приложение в другом потоке и загрузчике классов
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(ServiceApplication.class)
+				.profiles("dev")
+				.listeners(new ApplicationListener<ApplicationStartedEvent>() {
+					@Override
+					public void onApplicationEvent(ApplicationStartedEvent event) {
+						seed(event.getApplicationContext(), customers, documents, users, documentSize, documentIds);
+					}
+				})
+				.run("--server.port=0",
+						"--spring.main.banner-mode=off",
+						"--spring.jpa.show-sql=false",
+						"--logging.level.root=WARN",
+						"--upload.path=" + uploads);
+		try {
+			String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+			Workload workload = new Workload(baseUrl, mix, customers, users, documentIds, documentSize, hitRatio);
+			System.out.printf("%d customers, %d documents, %d users; %d threads, mix %s%n",
+					customers, documents, users, threads, mix);
+			workload.run(threads, warmup, false);
+			workload.run(threads, duration, true);
+		} finally {
+			context.close();
+			FileSystemUtils.deleteRecursively(uploads);
+		}
+	}
+
+	/**
+	 * Метод разбирает веса операций вида "login:1,search:6".
+	 */
+	static Map<Operation, Integer> parseMix(String value) {
+		Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+		for (String entry : value.split(",")) {
+			String[] parts = entry.trim().split(":");
+			if (parts.length != 2)
+				throw new IllegalArgumentException("Ожидается операция:вес, получено: " + entry);
+			int weight = Integer.parseInt(parts[1].trim());
+			if (weight > 0)
+				mix.put(Operation.valueOf(parts[0].trim().toUpperCase()), weight);
+		}
+		if (mix.isEmpty())
+			throw new IllegalArgumentException("Не задана ни одна операция: " + value);
+		return mix;
+	}
+
+	/**
+	 * Метод заполняет БД до построения фильтра Блума и поискового индекса клиентов
+	 * (они строятся по ApplicationReadyEvent): клиенты без файлов - одним запросом
+	 * INSERT ... SELECT, клиенты с PDF-файлами и пользователи - через сервисы,
+	 * как при регистрации и создании клиента.
+	 */
+	private static void seed(ConfigurableApplicationContext context, int customers, int documents, int users,
+	                         int documentSize, List<String> documentIds) {
+		JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+		jdbcTemplate.update("insert into customer"
+				+ " (id, first_name, last_name, gender, age, passport_key, phone_number, link_to_file)"
+				+ " select " + FIRST_ID + " + x, 'Ivan', 'Ivanov', 'Male', 30,"
+				+ " " + FIRST_KEY + " + x * " + KEY_STEP + ", 9000000000 + x, null"
+				+ " from system_range(1, " + customers + ")");
+		// оптимизатор pooled выделяет блок из 50 идентификаторов, заканчивающийся значением последовательности
+		jdbcTemplate.execute("alter sequence customer_seq restart with " + (FIRST_ID + customers + 50));
+
+		CustomerService customerService = context.getBean(CustomerService.class);
+		Random random = new Random(42);
+		try {
+			for (int i = 0; i < documents; i++) {
+				Customer customer = customer(DOCUMENT_KEY + i);
+				if (!customerService.saveCustomer(customer, new MockMultipartFile("file", "file.pdf",
+						"application/pdf", pdf(random, documentSize))))
+					throw new IllegalStateException("Не удалось создать клиента " + customer);
+				documentIds.add(customer.getLinkToFile());
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		UserService userService = context.getBean(UserService.class);
+		for (int i = 0; i < users; i++) {
+			User user = new User();
+			user.setFirstName("Load");
+			user.setLastName("Test");
+			user.setUsername(username(i));
+			user.setPassword(PASSWORD);
+			user.setPasswordVerify(PASSWORD);
+			user.setGender("Male");
+			user.setAge("30");
+			if (!userService.saveUser(user))
+				throw new IllegalStateException("Не удалось создать пользователя " + user.getUsername());
+		}
+	}
+
+	private static Customer customer(long passportKey) {
+		Customer customer = new Customer();
+		customer.setFirstName("Petr");
+		customer.setLastName("Petrov");
+		customer.setGender("Male");
+		customer.setAge("40");
+		customer.setPassportSeries(PassportKey.series(passportKey));
+		customer.setPassportNumber(PassportKey.number(passportKey));
+		customer.setPhoneNumber(String.valueOf(8000000000L + passportKey % 1_000_000_000L));
+		return customer;
+	}
+
+	private static String username(int i) {
+		return "load" + i;
+	}
+
+	/**
+	 * Метод создает PDF-файл со случайным содержимым: хранилище адресуется
+	 * по SHA-256, поэтому одинаковые файлы хранились бы один раз.
+	 */
+	private static byte[] pdf(Random random, int size) {
+		byte[] content = new byte[Math.max(size, 16)];
+		random.nextBytes(content);
+		System.arraycopy("%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII), 0, content, 0, 9);
+		return content;
+	}
+
+	/**
+	 * Нагрузка на запущенный сервис: потоки, их сессии и результаты.
+	 */
+	static class Workload {
+
+		private final String baseUrl;
+
+		private final Operation[] operations;
+
+		private final int[] cumulativeWeights;
+
+		private final int customers;
+
+		private final int users;
+
+		private final List<String> documentIds;
+
+		private final double hitRatio;
+
+		/** Общая часть тела загружаемых PDF-файлов, уникален только хвост. */
+		private final byte[] document;
+
+		private final AtomicLong created = new AtomicLong();
+
+		Workload(String baseUrl, Map<Operation, Integer> mix, int customers, int users,
+		         List<String> documentIds, int documentSize, double hitRatio) {
+			this.baseUrl = baseUrl;
+			this.operations = mix.keySet().toArray(new Operation[0]);
+			this.cumulativeWeights = new int[operations.length];
+			int total = 0;
+			for (int i = 0; i < operations.length; i++)
+				cumulativeWeights[i] = total += mix.get(operations[i]);
+			this.customers = customers;
+			this.users = users;
+			this.documentIds = documentIds;
+			this.hitRatio = hitRatio;
+			this.document = pdf(new Random(7), documentSize);
+			if (mix.containsKey(Operation.VIEW) && documentIds.isEmpty())
+				throw new IllegalArgumentException("Для fileView нужен хотя бы один документ (load.documents)");
+		}
+
+		/**
+		 * Метод выполняет смешанную нагрузку заданное время и,
+		 * если print, выводит результаты по операциям.
+		 */
+		void run(int threads, int seconds, boolean print) throws Exception {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			List<Future<Map<Operation, Recorder>>> futures = new ArrayList<>(threads);
+			long start = System.nanoTime();
+			long deadline = start + seconds * 1_000_000_000L;
+			for (int t = 0; t < threads; t++) {
+				String username = username(t % users);
+				futures.add(executor.submit(() -> work(username, deadline)));
+			}
+			Map<Operation, Recorder> results = new EnumMap<>(Operation.class);
+			for (Future<Map<Operation, Recorder>> future : futures)
+				for (Map.Entry<Operation, Recorder> entry : future.get().entrySet())
+					results.computeIfAbsent(entry.getKey(), operation -> new Recorder()).add(entry.getValue());
+			double elapsed = (System.nanoTime() - start) / 1e9;
+			executor.shutdown();
+			if (!print)
+				return;
+			System.out.printf("%-20s %8s %8s %8s %8s %8s %8s %8s %7s  %s%n", "operation", "requests", "req/s",
+					"p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "errors", "statuses");
+			Recorder total = new Recorder();
+			for (Map.Entry<Operation, Recorder> entry : results.entrySet()) {
+				entry.getValue().print(entry.getKey().request, elapsed);
+				total.add(entry.getValue());
+			}
+			total.print("total", elapsed);
+		}
+
+		/**
+		 * Цикл одного потока: вход под своим пользователем и случайные операции до deadline.
+		 */
+		private Map<Operation, Recorder> work(String username, long deadline) throws IOException {
+			String session = login(username);
+			if (session == null)
+				throw new IllegalStateException("Не удалось войти: " + username);
+			Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			long now;
+			while ((now = System.nanoTime()) < deadline) {
+				Operation operation = next(random);
+				String status;
+				try {
+					int code = call(operation, session, random);
+					status = code == operation.expectedStatus ? null : String.valueOf(code);
+				} catch (IOException e) {
+					status = e.getClass().getSimpleName();
+				}
+				recorders.computeIfAbsent(operation, o -> new Recorder()).record(System.nanoTime() - now, status);
+			}
+			return recorders;
+		}
+
+		private Operation next(ThreadLocalRandom random) {
+			int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+			int i = 0;
+			while (value >= cumulativeWeights[i])
+				i++;
+			return operations[i];
+		}
+
+		private int call(Operation operation, String session, ThreadLocalRandom random) throws IOException {
+			switch (operation) {
+				case LOGIN:
+					return login(username(random.nextInt(users))) != null ? 302 : -1;
+				case SEARCH:
+					long key = FIRST_KEY + (1 + random.nextInt(customers)) * KEY_STEP;
+					if (random.nextDouble() >= hitRatio)
+						key++;
+					return send("POST", "/customers", session, "application/x-www-form-urlencoded",
+							("passportSeries=" + PassportKey.series(key) + "&passportNumber="
+									+ PassportKey.number(key)).getBytes(StandardCharsets.UTF_8));
+				case CREATE:
+					return send("POST", "/createCustomer", session, "multipart/form-data; boundary=" + BOUNDARY,
+							multipart(customer(CREATED_KEY + created.getAndIncrement())));
+				case VIEW:
+					return send("GET", "/fileView?id=" + documentIds.get(random.nextInt(documentIds.size())),
+							session, null, null);
+				default:
+					throw new IllegalArgumentException(operation.name());
+			}
+		}
+
+		/**
+		 * Метод входит через форму и возвращает cookie сессии
+		 * или null, если вход не удался (в том числе 429 при перегрузке хеширования).
+		 */
+		private String login(String username) throws IOException {
+			HttpURLConnection connection = open("POST", "/login", null, "application/x-www-form-urlencoded");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(("username=" + username + "&password=" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+			}
+			String location = connection.getHeaderField("Location");
+			String cookie = connection.getHeaderField("Set-Cookie");
+			int status = connection.getResponseCode();
+			drain(connection);
+			if (status != 302 || location == null || location.contains("error") || cookie == null)
+				return null;
+			return cookie.split(";", 2)[0];
+		}
+
+		private int send(String method, String path, String session, String contentType, byte[] body)
+				throws IOException {
+			HttpURLConnection connection = open(method, path, session, contentType);
+			if (body != null) {
+				connection.setFixedLengthStreamingMode(body.length);
+				try (OutputStream out = connection.getOutputStream()) {
+					out.write(body);
+				}
+			}
+			int status = connection.getResponseCode();
+			drain(connection);
+			return status;
+		}
+
+		private HttpURLConnection open(String method, String path, String session, String contentType)
+				throws IOException {
+			HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+			connection.setInstanceFollowRedirects(false);
+			connection.setRequestMethod(method);
+			if (session != null)
+				connection.setRequestProperty("Cookie", session);
+			if (contentType != null) {
+				connection.setDoOutput(true);
+				connection.setRequestProperty("Content-Type", contentType);
+			}
+			return connection;
+		}
+
+		/**
+		 * Метод собирает тело multipart/form-data формы создания клиента.
+		 * Последние байты файла - ключ паспорта, чтобы каждый файл был новым.
+		 */
+		private byte[] multipart(Customer customer) throws IOException {
+			ByteArrayOutputStream body = new ByteArrayOutputStream(document.length + 1024);
+			String[][] fields = {
+					{"firstName", customer.getFirstName()}, {"lastName", customer.getLastName()},
+					{"gender", customer.getGender()}, {"age", customer.getAge()},
+					{"passportSeries", customer.getPassportSeries()},
+					{"passportNumber", customer.getPassportNumber()},
+					{"phoneNumber", customer.getPhoneNumber()}};
+			StringBuilder head = new StringBuilder();
+			for (String[] field : fields)
+				head.append("--").append(BOUNDARY).append("\r\n")
+						.append("Content-Disposition: form-data; name=\"").append(field[0]).append("\"\r\n\r\n")
+						.append(field[1]).append("\r\n");
+			head.append("--").append(BOUNDARY).append("\r\n")
+					.append("Content-Disposition: form-data; name=\"file\"; filename=\"file.pdf\"\r\n")
+					.append("Content-Type: application/pdf\r\n\r\n");
+			body.write(head.toString().getBytes(StandardCharsets.UTF_8));
+			String suffix = customer.getPassportSeries() + customer.getPassportNumber();
+			body.write(document, 0, document.length - suffix.length());
+			body.write(suffix.getBytes(StandardCharsets.US_ASCII));
+			body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+			return body.toByteArray();
+		}
+	}
+
+	/**
+	 * Задержки и ошибки одной операции.
+	 */
+	static class Recorder {
+
+		private long[] latencies = new long[1024];
+
+		private int count;
+
+		private final Map<String, Integer> errors = new TreeMap<>();
+
+		void record(long latency, String error) {
+			if (count == latencies.length)
+				latencies = Arrays.copyOf(latencies, count * 2);
+			latencies[count++] = latency;
+			if (error != null)
+				errors.merge(error, 1, Integer::sum);
+		}
+
+		void add(Recorder other) {
+			if (count + other.count > latencies.length)
+				latencies = Arrays.copyOf(latencies, count + other.count);
+			System.arraycopy(other.latencies, 0, latencies, count, other.count);
+			count += other.count;
+			other.errors.forEach((error, n) -> errors.merge(error, n, Integer::sum));
+		}
+
+		void print(String name, double elapsed) {
+			if (count == 0)
+				return;
+			long[] sorted = Arrays.copyOf(latencies, count);
+			Arrays.sort(sorted);
+			int failed = errors.values().stream().mapToInt(Integer::intValue).sum();
+			System.out.printf("%-20s %8d %8.0f %8.2f %8.2f %8.2f %8.2f %8.2f %6.2f%%  %s%n", name, count,
+					count / elapsed, percentile(sorted, 0.50), percentile(sorted, 0.90),
+					percentile(sorted, 0.99), percentile(sorted, 0.999), sorted[count - 1] / 1e6,
+					100.0 * failed / count, errors.isEmpty() ? "" : errors);
+		}
+
+		private static double percentile(long[] sorted, double p) {
+			return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+		}
+	}
+
+	/**
+	 * Метод дочитывает ответ, чтобы соединение вернулось в пул keep-alive.
+	 */
+	private static void drain(HttpURLConnection connection) throws IOException {
+		InputStream in = connection.getResponseCode() >= 400 ? connection.getErrorStream()
+				: connection.getInputStream();
+		if (in == null)
+			return;
+		byte[] buffer = new byte[8192];
+		try (InputStream stream = in) {
+			while (stream.read(buffer) >= 0) {
+				// ответ не нужен
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package naysav.spring.service.cache;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Тестовый класс для поискового индекса по имени и телефону клиентов */
+public class CustomerSearchIndexTest extends TestCase {
+
+	private CustomerSearchIndex index() {
+		CustomerSearchIndex index = new CustomerSearchIndex();
+		index.load(1234000001L, "Иван", "Иванов", "9001234567");
+		index.load(1234000002L, "Анна", "Иванова", "9007654321");
+		index.load(1234000003L, "Пётр", "Петров", "9161112233");
+		index.load(1234000004L, "Иван", "Ливанов", "9169998877");
+		index.markReady();
+		return index;
+	}
+
+	/**
+	 * Точное совпадение фамилии выше совпадения начала, начало - выше подстроки;
+	 * регистр и "ё" не учитываются.
+	 */
+	@Test
+	public void testRanking() {
+		CustomerSearchIndex index = index();
+		assertArrayEquals(new long[] {1234000001L, 1234000002L, 1234000004L}, index.search("ИВАНОВ", 10));
+		assertArrayEquals(new long[] {1234000003L}, index.search("пётр", 10));
+		assertArrayEquals(new long[] {1234000001L}, index.search("иванов", 1));
+	}
+
+	/**
+	 * Каждое слово запроса должно совпасть с фамилией, именем или телефоном;
+	 * два символа ищутся только как начало поля.
+	 */
+	@Test
+	public void testTokensAndPrefixes() {
+		CustomerSearchIndex index = index();
+		assertArrayEquals(new long[] {1234000004L}, index.search("иван 999", 10));
+		assertArrayEquals(new long[] {1234000003L, 1234000004L}, index.search("+7 (916)", 10));
+		assertArrayEquals(new long[] {1234000003L}, index.search("пе", 10));
+		assertEquals(0, index.search("ет", 10).length);
+		assertEquals(0, index.search("в", 10).length);
+		assertEquals(0, index.search("сидоров", 10).length);
+	}
+
+	/**
+	 * Клиент, сохраненный во время загрузки, добавляется один раз.
+	 */
+	@Test
+	public void testAddDuringLoad() {
+		CustomerSearchIndex index = new CustomerSearchIndex();
+		index.add(1234000002L, "Анна", "Иванова", "9007654321");
+		index.add(1234000005L, "Олег", "Смирнов", "9031234567");
+		index.load(1234000001L, "Иван", "Иванов", "9001234567");
+		index.load(1234000002L, "Анна", "Иванова", "9007654321");
+		assertEquals(0, index.search("смирнов", 10).length);
+		index.markReady();
+		index.add(1234000001L, "Иван", "Иванов", "9001234567");
+
+		assertEquals(3, index.size());
+		assertArrayEquals(new long[] {1234000002L}, index.search("анна", 10));
+		assertArrayEquals(new long[] {1234000005L}, index.search("смирнов", 10));
+	}
+
+	/**
+	 * Клиенты, добавленные после загрузки (импорт, догоняющее чтение из БД),
+	 * не дублируются при повторном добавлении и занимают в индексе столько же
+	 * памяти, сколько загруженные при старте.
+	 */
+	@Test
+	public void testAddAfterLoad() {
+		int count = 100_000;
+		CustomerSearchIndex index = new CustomerSearchIndex();
+		index.markReady();
+		for (int round = 0; round < 2; round++)
+			for (int i = 0; i < count; i++)
+				index.add(1000_000000L + i * 7919L, "Имя", "Фамилия" + i, String.valueOf(9_000_000_000L + i));
+
+		assertEquals(count, index.size());
+		assertArrayEquals(new long[] {1000_000000L + 12345 * 7919L}, index.search("9000012345", 10));
+		assertTrue("bytes per customer " + index.memoryBytes() / count, index.memoryBytes() / count < 150);
+	}
+
+	/**
+	 * Подстрока находится среди большого количества клиентов, а индекс
+	 * занимает порядка сотни байт на клиента.
+	 */
+	@Test
+	public void testLargeIndex() {
+		String[] names = {"Иванов", "Петров", "Сидоров", "Смирнов", "Кузнецов", "Попов", "Соколов"};
+		int count = 200_000;
+		Random random = new Random(42);
+		CustomerSearchIndex index = new CustomerSearchIndex();
+		for (int i = 0; i < count; i++)
+			index.load(1000_000000L + i, "Имя" + random.nextInt(1000),
+					names[random.nextInt(names.length)] + i, String.valueOf(9_000_000_000L + i));
+		index.markReady();
+
+		assertArrayEquals(new long[] {1000_123456L}, index.search("9000123456", 10));
+		assertEquals(10, index.search("кузнец", 10).length);
+		long[] keys = index.search("ров1234", 100);
+		assertTrue(keys.length > 0);
+		assertTrue("bytes per customer " + index.memoryBytes() / count, index.memoryBytes() / count < 150);
+	}
+
+	private static void assertArrayEquals(long[] expected, long[] actual) {
+		assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+	}
+}
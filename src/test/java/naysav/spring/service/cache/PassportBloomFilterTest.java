@@ -0,0 +1,50 @@
+package naysav.spring.service.cache;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.Random;
+
+/** Тестовый класс для фильтра Блума по ключам паспортов */
+public class PassportBloomFilterTest extends TestCase {
+
+	/**
+	 * Пока фильтр не заполнен, любой ключ считается возможно присутствующим.
+	 */
+	@Test
+	public void testNotReadyAnswersMaybe() {
+		PassportBloomFilter filter = new PassportBloomFilter(1000, 0.01);
+		assertTrue(filter.mightContain(1234567890L));
+		assertEquals(0.0, filter.skipRate());
+	}
+
+	/**
+	 * Добавленные ключи всегда находятся (нет ложноотрицательных ответов),
+	 * а доля ложноположительных не превышает заданную более чем вдвое.
+	 */
+	@Test
+	public void testNoFalseNegativesAndBoundedFalsePositives() {
+		int count = 100_000;
+		PassportBloomFilter filter = new PassportBloomFilter(count, 0.01);
+		Random random = new Random(42);
+		long[] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			keys[i] = (long) (random.nextDouble() * 10_000_000_000L);
+			filter.put(keys[i]);
+		}
+		filter.markReady();
+
+		for (long key : keys)
+			assertTrue(filter.mightContain(key));
+
+		int falsePositives = 0;
+		int probes = 100_000;
+		for (int i = 0; i < probes; i++)
+			if (filter.mightContain(10_000_000_000L + i))
+				falsePositives++;
+		assertTrue("false positive rate " + (double) falsePositives / probes,
+				falsePositives < probes * 0.02);
+		assertTrue(filter.skipRate() > 0.4);
+		assertTrue(filter.memoryBytes() < 200_000);
+	}
+}
@@ -0,0 +1,139 @@
+package naysav.spring.service.configs;
+
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.MapSession;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Тестовый класс для хранилища HTTP-сессий с ближним кэшем */
+public class CachingSessionRepositoryTest extends TestCase {
+
+	/** Имитация общего хранилища сессий с подсчетом обращений */
+	private InMemorySessionRepository store;
+
+	private CachingSessionRepository sessionRepository;
+
+	@Before
+	public void setUp() {
+		store = new InMemorySessionRepository();
+		sessionRepository = new CachingSessionRepository(store, 100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+	}
+
+	/**
+	 * Новая сессия записывается в хранилище, повторные чтения
+	 * без изменений не обращаются к нему.
+	 */
+	@Test
+	public void testReadsServedFromCache() {
+		CachingSessionRepository.CachedSession session = sessionRepository.createSession();
+		session.setAttribute("user", "test");
+		sessionRepository.save(session);
+		assertEquals(1, store.saves);
+
+		for (int i = 0; i < 3; i++) {
+			CachingSessionRepository.CachedSession found = sessionRepository.findById(session.getId());
+			assertEquals("test", found.getAttribute("user"));
+			found.setLastAccessedTime(found.getLastAccessedTime().plusSeconds(10));
+			sessionRepository.save(found);
+		}
+
+		assertEquals(0, store.finds);
+		assertEquals(1, store.saves);
+	}
+
+	/**
+	 * В хранилище записываются только измененные атрибуты,
+	 * время обращения - не чаще touchInterval.
+	 */
+	@Test
+	public void testWritesOnlyChanges() {
+		CachingSessionRepository.CachedSession session = sessionRepository.createSession();
+		session.setAttribute("user", "test");
+		session.setAttribute("theme", "dark");
+		sessionRepository.save(session);
+		store.sessions.get(session.getId()).setAttribute("theme", "light");
+
+		CachingSessionRepository.CachedSession found = sessionRepository.findById(session.getId());
+		found.setAttribute("user", "other");
+		sessionRepository.save(found);
+
+		MapSession stored = store.sessions.get(session.getId());
+		assertEquals("other", stored.getAttribute("user"));
+		assertEquals("light", stored.getAttribute("theme"));
+		assertEquals(2, store.saves);
+
+		found = sessionRepository.findById(session.getId());
+		Instant touched = found.getLastAccessedTime().plus(Duration.ofMinutes(2));
+		found.setLastAccessedTime(touched);
+		sessionRepository.save(found);
+		assertEquals(3, store.saves);
+		assertEquals(touched, store.sessions.get(session.getId()).getLastAccessedTime());
+	}
+
+	/**
+	 * Смена идентификатора (защита от фиксации сессии) переносит сессию
+	 * под новым идентификатором, удаление убирает ее из кэша.
+	 */
+	@Test
+	public void testChangeSessionIdAndDelete() {
+		CachingSessionRepository.CachedSession session = sessionRepository.createSession();
+		sessionRepository.save(session);
+		String oldId = session.getId();
+
+		CachingSessionRepository.CachedSession found = sessionRepository.findById(oldId);
+		String newId = found.changeSessionId();
+		sessionRepository.save(found);
+
+		assertNull(sessionRepository.findById(oldId));
+		assertNotNull(sessionRepository.findById(newId));
+
+		sessionRepository.deleteById(newId);
+		assertNull(sessionRepository.findById(newId));
+	}
+
+	/**
+	 * Общее хранилище сессий в памяти.
+	 */
+	private static class InMemorySessionRepository implements FindByIndexNameSessionRepository<MapSession> {
+		final Map<String, MapSession> sessions = new HashMap<>();
+		int finds;
+		int saves;
+
+		@Override
+		public MapSession createSession() {
+			return new MapSession();
+		}
+
+		@Override
+		public void save(MapSession session) {
+			saves++;
+			if (!session.getId().equals(session.getOriginalId()))
+				sessions.remove(session.getOriginalId());
+			sessions.put(session.getId(), new MapSession(session));
+		}
+
+		@Override
+		public MapSession findById(String id) {
+			finds++;
+			MapSession session = sessions.get(id);
+			return session == null ? null : new MapSession(session);
+		}
+
+		@Override
+		public void deleteById(String id) {
+			sessions.remove(id);
+		}
+
+		@Override
+		public Map<String, MapSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+			return Collections.emptyMap();
+		}
+	}
+}
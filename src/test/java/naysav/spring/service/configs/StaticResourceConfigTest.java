@@ -0,0 +1,106 @@
+package naysav.spring.service.configs;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.Cookie;
+import java.io.ByteArrayInputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/** Класс, тестирующий раздачу статических ресурсов (StaticResourceConfig). */
+@RunWith(SpringRunner.class)
+@AutoConfigureMockMvc
+@SpringBootTest
+public class StaticResourceConfigTest {
+
+	private static final Pattern BOOTSTRAP_CSS =
+			Pattern.compile("/vendor/bootstrap/4\\.3\\.1/css/bootstrap\\.min-[0-9a-f]{32}\\.css");
+
+	@Autowired
+	public MockMvc mockMvc;
+
+	/** Хранилище сессий - не должно вызываться при запросе ресурсов */
+	@SpyBean
+	CachingSessionRepository sessionRepository;
+
+	/**
+	 * Страницы ссылаются на ресурсы приложения по адресам с хешем содержимого,
+	 * а не на CDN.
+	 */
+	@Test
+	public void fingerprintedLinksTest() throws Exception {
+		mockMvc.perform(get("/"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(matchesPattern("(?s).*/css/style-[0-9a-f]{32}\\.css.*")))
+				.andExpect(content().string(matchesPattern("(?s).*/vendor/jquery/3\\.3\\.1/jquery\\.slim\\.min-[0-9a-f]{32}\\.js.*")))
+				.andExpect(content().string(not(containsString("https://"))));
+	}
+
+	/**
+	 * Ресурс с хешем отдается сжатым, с Cache-Control immutable, без фильтров
+	 * Spring Security (нет их заголовков) и без чтения сессии.
+	 */
+	@Test
+	public void compressedImmutableTest() throws Exception {
+		String url = bootstrapCssUrl();
+		byte[] original = StreamUtils.copyToByteArray(
+				new ClassPathResource("static/vendor/bootstrap/4.3.1/css/bootstrap.min.css").getInputStream());
+
+		MockHttpServletResponse response = mockMvc.perform(get(url)
+						.header("Accept-Encoding", "gzip, deflate, br")
+						.cookie(new Cookie("SESSION", "unknown")))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith("text/css"))
+				.andExpect(header().string("Content-Encoding", "gzip"))
+				.andExpect(header().string("Vary", "Accept-Encoding"))
+				.andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"))
+				.andExpect(header().doesNotExist("X-Frame-Options"))
+				.andExpect(header().doesNotExist("Set-Cookie"))
+				.andReturn().getResponse();
+		verify(sessionRepository, never()).findById(anyString());
+		byte[] compressed = response.getContentAsByteArray();
+		assertTrue(compressed.length < original.length / 4);
+		assertArrayEquals(original, StreamUtils.copyToByteArray(
+				new GZIPInputStream(new ByteArrayInputStream(compressed))));
+
+		mockMvc.perform(get(url))
+				.andExpect(status().isOk())
+				.andExpect(header().doesNotExist("Content-Encoding"))
+				.andExpect(content().bytes(original));
+	}
+
+	/**
+	 * Адрес с устаревшим хешем не отдает текущую версию ресурса.
+	 */
+	@Test
+	public void staleFingerprintTest() throws Exception {
+		mockMvc.perform(get("/css/style-00000000000000000000000000000000.css"))
+				.andExpect(status().isNotFound());
+	}
+
+	private String bootstrapCssUrl() throws Exception {
+		String page = mockMvc.perform(get("/")).andReturn().getResponse().getContentAsString();
+		Matcher matcher = BOOTSTRAP_CSS.matcher(page);
+		assertTrue(matcher.find());
+		return matcher.group();
+	}
+}
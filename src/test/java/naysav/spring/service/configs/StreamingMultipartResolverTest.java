@@ -0,0 +1,87 @@
+package naysav.spring.service.configs;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+
+/** Тестовый класс для потокового разбора multipart-запросов */
+public class StreamingMultipartResolverTest extends TestCase {
+
+	private static final String BOUNDARY = "----boundary";
+
+	private final StreamingMultipartResolver resolver = new StreamingMultipartResolver();
+
+	/**
+	 * Поля формы перед файлом доступны как параметры запроса,
+	 * а файл читается из тела запроса один раз.
+	 */
+	@Test
+	public void testFieldsAndStreamedFile() throws Exception {
+		MockHttpServletRequest request = multipart(
+				field("firstName", "Иван")
+				+ field("passportSeries", "1234")
+				+ file("file", "INFO.pdf", "%PDF-information"));
+		assertTrue(resolver.isMultipart(request));
+
+		MultipartHttpServletRequest multipart = resolver.resolveMultipart(request);
+		assertEquals("Иван", multipart.getParameter("firstName"));
+		assertEquals("1234", multipart.getParameter("passportSeries"));
+
+		MultipartFile file = multipart.getFile("file");
+		assertNotNull(file);
+		assertEquals("INFO.pdf", file.getOriginalFilename());
+		assertEquals("application/pdf", file.getContentType());
+		assertEquals(-1, file.getSize());
+		assertEquals("%PDF-information",
+				new String(FileCopyUtils.copyToByteArray(file.getInputStream()), StandardCharsets.UTF_8));
+		try {
+			file.getInputStream();
+			fail("streamed file must be readable only once");
+		} catch (IllegalStateException e) {
+			// ожидаемо
+		}
+	}
+
+	/**
+	 * Слишком большое значение поля формы не накапливается в памяти.
+	 */
+	@Test
+	public void testOversizeField() {
+		StringBuilder value = new StringBuilder();
+		while (value.length() <= StreamingMultipartResolver.MAX_FIELD_SIZE)
+			value.append("0123456789");
+		try {
+			resolver.resolveMultipart(multipart(field("firstName", value.toString())));
+			fail("expected MaxUploadSizeExceededException");
+		} catch (MultipartException e) {
+			assertTrue(e instanceof MaxUploadSizeExceededException
+					|| e.getCause() instanceof MaxUploadSizeExceededException);
+		}
+	}
+
+	private static MockHttpServletRequest multipart(String parts) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/createCustomer");
+		request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+		request.setCharacterEncoding("UTF-8");
+		request.setContent((parts + "--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+		return request;
+	}
+
+	private static String field(String name, String value) {
+		return "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n"
+				+ value + "\r\n";
+	}
+
+	private static String file(String name, String filename, String content) {
+		return "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name
+				+ "\"; filename=\"" + filename + "\"\r\nContent-Type: application/pdf\r\n\r\n"
+				+ content + "\r\n";
+	}
+}
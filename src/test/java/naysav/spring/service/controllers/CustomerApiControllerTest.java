@@ -0,0 +1,300 @@
+package naysav.spring.service.controllers;
+
+import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.CustomerListItem;
+import naysav.spring.service.models.StoredDocument;
+import naysav.spring.service.services.CustomerPage;
+import naysav.spring.service.services.CustomerService;
+import naysav.spring.service.services.DocumentIoExecutor;
+import naysav.spring.service.services.DocumentIoRejectedException;
+import naysav.spring.service.services.DocumentRejectedException;
+import naysav.spring.service.services.DocumentStore;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/** Класс, тестирующий JSON API клиентов (CustomerApiController). */
+@RunWith(SpringRunner.class)
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@SpringBootTest(properties = {
+		"metrics.scraper.username=prometheus",
+		"metrics.scraper.password=$2a$04$.RrLbmG8ZyEskfmSoFI.ouahuOia4FNpRn1vElA1Y6F/U.354eA/O"})
+public class CustomerApiControllerTest {
+
+	/** Идентификатор PDF-файла клиента */
+	private static final String DOCUMENT_ID =
+			"79dac2702d63d7ebcae4a099d3483cb634ccf3ffd8bce676e9f485b64fb55f54";
+
+	/** Имитация сервисного класса CustomerService */
+	@MockBean
+	CustomerService customerService;
+
+	/** Имитация хранилища PDF-файлов */
+	@MockBean
+	DocumentStore documentStore;
+
+	/** Пул чтения и записи файлов */
+	@SpyBean
+	DocumentIoExecutor documentIoExecutor;
+
+	@Autowired
+	public MockMvc mockMvc;
+
+	/**
+	 * Без учетных данных API отвечает 401 и не создает сессию.
+	 */
+	@Test
+	public void unauthorizedTest() throws Exception {
+		mockMvc.perform(get("/api/customers/1234/123456"))
+				.andExpect(status().isUnauthorized())
+				.andExpect(header().string("WWW-Authenticate", startsWith("Basic")))
+				.andExpect(jsonPath("$.error").exists())
+				.andExpect(request().sessionAttributeDoesNotExist("SPRING_SECURITY_CONTEXT"));
+	}
+
+	/**
+	 * Список клиентов возвращается страницей с курсором следующей страницы,
+	 * некорректные параметры - 400 с ошибками по полям.
+	 */
+	@Test
+	public void listTest() throws Exception {
+		when(customerService.listCustomers(any())).thenReturn(new CustomerPage(Collections.singletonList(
+				new CustomerListItem(1L, "Ivan", "Ivanov", "Мужчина", "30", 1234123456L, "9001234567")), "MQ"));
+
+		mockMvc.perform(get("/api/customers").param("lastName", "Iv").param("sort", "name").with(apiUser()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items[0].lastName").value("Ivanov"))
+				.andExpect(jsonPath("$.items[0].passportNumber").value("123456"))
+				.andExpect(jsonPath("$.items[0].id").doesNotExist())
+				.andExpect(jsonPath("$.next").value("MQ"));
+
+		mockMvc.perform(get("/api/customers").param("minAge", "old").param("size", "1000").with(apiUser()))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.minAge").exists())
+				.andExpect(jsonPath("$.size").exists());
+	}
+
+	/**
+	 * Пакетный поиск отвечает строкой NDJSON на каждую строку запроса в том же порядке:
+	 * найденный клиент, признак отсутствия или ошибка в строке.
+	 */
+	@Test
+	public void lookupTest() throws Exception {
+		when(customerService.findCustomers(any()))
+				.thenReturn(Collections.singletonMap(1234123456L, customer()));
+		String body = "{\"passportSeries\":\"1234\",\"passportNumber\":\"123456\"}\n"
+				+ "{\"passportSeries\":\"1234\",\"passportNumber\":\"654321\"}\n"
+				+ "\n"
+				+ "{\"passportSeries\":\"12\",\"passportNumber\":\"654321\"}\n"
+				+ "not json\n";
+
+		String response = mockMvc.perform(post("/api/customers/lookup")
+						.contentType("application/x-ndjson").content(body).with(apiUser()))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+				.andReturn().getResponse().getContentAsString();
+
+		String[] lines = response.split("\n");
+		assertEquals(4, lines.length);
+		assertThat(lines[0], allOf(containsString("\"line\":1"), containsString("\"found\":true"),
+				containsString("\"lastName\":\"Ivanov\"")));
+		assertThat(lines[1], allOf(containsString("\"line\":2"), containsString("\"found\":false")));
+		assertThat(lines[2], allOf(containsString("\"line\":4"), containsString("\"error\":\"• необходимо 4 цифры\"")));
+		assertThat(lines[3], allOf(containsString("\"line\":5"), containsString("\"error\"")));
+		verify(customerService).findCustomers(new HashSet<>(Arrays.asList(1234123456L, 1234654321L)));
+	}
+
+	/**
+	 * Найденный клиент возвращается в JSON без служебных полей.
+	 */
+	@Test
+	public void findTest() throws Exception {
+		when(customerService.findCustomer("1234", "123456")).thenReturn(customer());
+
+		mockMvc.perform(get("/api/customers/1234/123456").with(apiUser()))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith("application/json"))
+				.andExpect(jsonPath("$.lastName").value("Ivanov"))
+				.andExpect(jsonPath("$.passportNumber").value("123456"))
+				.andExpect(jsonPath("$.documentId").value(DOCUMENT_ID))
+				.andExpect(jsonPath("$.passportKey").doesNotExist())
+				.andExpect(jsonPath("$.id").doesNotExist());
+	}
+
+	/**
+	 * Некорректный паспорт - 400 с ошибками по полям, отсутствующий клиент - 404.
+	 */
+	@Test
+	public void findErrorsTest() throws Exception {
+		mockMvc.perform(get("/api/customers/12/123456").with(apiUser()))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.passportSeries").exists());
+		mockMvc.perform(get("/api/customers/1234/654321").with(apiUser()))
+				.andExpect(status().isNotFound());
+	}
+
+	/**
+	 * Сведения о файле клиента содержат размер и адрес для скачивания.
+	 */
+	@Test
+	public void documentTest() throws Exception {
+		when(customerService.findCustomer("1234", "123456")).thenReturn(customer());
+		when(documentStore.describe(DOCUMENT_ID)).thenReturn(new StoredDocument(DOCUMENT_ID, 16));
+
+		mockMvc.perform(get("/api/customers/1234/123456/document").with(apiUser()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value(DOCUMENT_ID))
+				.andExpect(jsonPath("$.size").value(16))
+				.andExpect(jsonPath("$.refCount").value(1))
+				.andExpect(jsonPath("$.url").value(endsWith("/fileView?id=" + DOCUMENT_ID)));
+	}
+
+	/**
+	 * Метрики Prometheus доступны только сборщику метрик (не пользователям,
+	 * которые могут зарегистрироваться сами) и содержат процентили времени
+	 * запросов по шаблону адреса обработчика. Сборщику метрик закрыт API,
+	 * /actuator/health доступен без входа.
+	 */
+	@Test
+	public void prometheusTest() throws Exception {
+		mockMvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isUnauthorized());
+		mockMvc.perform(get("/actuator/prometheus").with(apiUser()))
+				.andExpect(status().isForbidden());
+		mockMvc.perform(get("/actuator/metrics").with(apiUser()))
+				.andExpect(status().isForbidden());
+		mockMvc.perform(get("/actuator/prometheus").with(httpBasic("prometheus", "wrong")))
+				.andExpect(status().isUnauthorized());
+		mockMvc.perform(get("/api/customers/1234/654321").with(scraper()))
+				.andExpect(status().isForbidden());
+		mockMvc.perform(get("/actuator/health"))
+				.andExpect(status().isOk());
+
+		mockMvc.perform(get("/api/customers/1234/654321").with(apiUser()))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(get("/actuator/prometheus").with(scraper()))
+				.andExpect(status().isOk())
+				.andExpect(content().string(allOf(
+						containsString("http_server_requests_seconds{application=\"Service\""),
+						containsString("uri=\"/api/customers/{passportSeries}/{passportNumber}\""),
+						containsString("quantile=\"0.999\""),
+						containsString("http_server_requests_seconds_bucket"),
+						containsString("document_downloaded_bytes_total"),
+						containsString("hikaricp_connections_active"))));
+	}
+
+	/**
+	 * Созданный клиент - 201 с адресом клиента (в том числе PDF с Content-Type
+	 * application/octet-stream), существующий - 409, некорректные поля - 400,
+	 * файл, отклоненный по содержимому, - 415, заполненная очередь пула файлов - 503.
+	 * Ответ формируется асинхронно.
+	 */
+	@Test
+	public void createTest() throws Exception {
+		when(customerService.saveCustomer(any(), any())).thenReturn(true);
+		performAsync(create("123456"))
+				.andExpect(status().isCreated())
+				.andExpect(header().string("Location", endsWith("/api/customers/1234/123456")))
+				.andExpect(jsonPath("$.firstName").value("Ivan"));
+		performAsync(create("123450", "application/octet-stream"))
+				.andExpect(status().isCreated());
+
+		when(customerService.findCustomer("1234", "123457")).thenReturn(customer());
+		performAsync(create("123457"))
+				.andExpect(status().isConflict());
+
+		performAsync(create("12345"))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.passportNumber").exists());
+
+		when(customerService.saveCustomer(any(), any()))
+				.thenThrow(new DocumentRejectedException(DocumentRejectedException.Reason.NOT_PDF, "Загруженный файл должен быть формата PDF!"));
+		performAsync(create("123458"))
+				.andExpect(status().isUnsupportedMediaType());
+		verify(customerService, never()).findCustomer("1234", "12345");
+
+		doThrow(new DocumentIoRejectedException("full")).when(documentIoExecutor).submit(any());
+		mockMvc.perform(create("123459"))
+				.andExpect(status().isServiceUnavailable())
+				.andExpect(header().string("Retry-After", "1"))
+				.andExpect(jsonPath("$.error").exists());
+	}
+
+	private ResultActions performAsync(RequestBuilder builder) throws Exception {
+		MvcResult result = mockMvc.perform(builder)
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		return mockMvc.perform(asyncDispatch(result));
+	}
+
+	private MockHttpServletRequestBuilder create(String passportNumber) {
+		return create(passportNumber, "application/pdf");
+	}
+
+	private MockHttpServletRequestBuilder create(String passportNumber, String contentType) {
+		return MockMvcRequestBuilders.multipart("/api/customers")
+				.file(new MockMultipartFile("file", "INFO.pdf", contentType, "%PDF-information".getBytes()))
+				.param("firstName", "Ivan").param("lastName", "Ivanov").param("gender", "Male")
+				.param("age", "30").param("passportSeries", "1234").param("passportNumber", passportNumber)
+				.param("phoneNumber", "1234567890")
+				.with(apiUser());
+	}
+
+	private static RequestPostProcessor apiUser() {
+		return user("test");
+	}
+
+	private static RequestPostProcessor scraper() {
+		return httpBasic("prometheus", "scraper");
+	}
+
+	private static Customer customer() {
+		Customer customer = new Customer();
+		customer.setFirstName("Ivan");
+		customer.setLastName("Ivanov");
+		customer.setGender("Male");
+		customer.setAge("30");
+		customer.setPassportSeries("1234");
+		customer.setPassportNumber("123456");
+		customer.setPhoneNumber("1234567890");
+		customer.setLinkToFile(DOCUMENT_ID);
+		customer.setPassportKey(1234123456L);
+		customer.setId(1L);
+		return customer;
+	}
+}
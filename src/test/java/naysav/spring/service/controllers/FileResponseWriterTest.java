@@ -0,0 +1,131 @@
+package naysav.spring.service.controllers;
+
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Тестовый класс для отдачи файлов с поддержкой диапазонов и условных запросов */
+public class FileResponseWriterTest extends TestCase {
+
+	/** Версия содержимого (хеш файла, как идентификатор документа) */
+	private static final String VERSION =
+			"79dac2702d63d7ebcae4a099d3483cb634ccf3ffd8bce676e9f485b64fb55f54";
+
+	private final FileResponseWriter writer = new FileResponseWriter();
+
+	private Path file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = Files.createTempFile("file-response", ".pdf");
+		Files.write(file, "%PDF-0123456789".getBytes(StandardCharsets.US_ASCII));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	/**
+	 * Файл отдается целиком с заголовками ETag, Last-Modified и Accept-Ranges.
+	 */
+	@Test
+	public void testFullContent() throws Exception {
+		MockHttpServletResponse response = write(new MockHttpServletRequest("GET", "/fileView"));
+
+		assertEquals(200, response.getStatus());
+		assertEquals("%PDF-0123456789", response.getContentAsString());
+		assertEquals(15, response.getContentLength());
+		assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+		assertEquals("\"" + VERSION + "\"", response.getHeader(HttpHeaders.ETAG));
+		assertNotNull(response.getHeader(HttpHeaders.LAST_MODIFIED));
+		assertTrue(response.getHeader(HttpHeaders.CONTENT_DISPOSITION).startsWith("inline"));
+	}
+
+	/**
+	 * Запрос диапазона возвращает 206 и только запрошенные байты.
+	 */
+	@Test
+	public void testRange() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/fileView");
+		request.addHeader(HttpHeaders.RANGE, "bytes=5-8");
+		MockHttpServletResponse response = write(request);
+
+		assertEquals(206, response.getStatus());
+		assertEquals("0123", response.getContentAsString());
+		assertEquals("bytes 5-8/15", response.getHeader(HttpHeaders.CONTENT_RANGE));
+	}
+
+	/**
+	 * Повторный запрос с совпадающим ETag возвращает 304 без тела.
+	 */
+	@Test
+	public void testNotModified() throws Exception {
+		String etag = write(new MockHttpServletRequest("GET", "/fileView")).getHeader(HttpHeaders.ETAG);
+
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/fileView");
+		request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+		MockHttpServletResponse response = write(request);
+
+		assertEquals(304, response.getStatus());
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+
+	/**
+	 * Диапазон за пределами файла возвращает 416.
+	 */
+	@Test
+	public void testUnsatisfiableRange() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/fileView");
+		request.addHeader(HttpHeaders.RANGE, "bytes=100-200");
+		MockHttpServletResponse response = write(request);
+
+		assertEquals(416, response.getStatus());
+		assertEquals("bytes */15", response.getHeader(HttpHeaders.CONTENT_RANGE));
+	}
+
+	/**
+	 * Если If-Range не совпадает с текущей версией файла, файл отдается целиком.
+	 */
+	@Test
+	public void testIfRangeMismatch() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/fileView");
+		request.addHeader(HttpHeaders.RANGE, "bytes=5-8");
+		request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+		MockHttpServletResponse response = write(request);
+
+		assertEquals(200, response.getStatus());
+		assertEquals("%PDF-0123456789", response.getContentAsString());
+	}
+
+	/**
+	 * При поддержке sendfile контейнером тело не пишется, а передается через атрибуты запроса.
+	 */
+	@Test
+	public void testSendfile() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/fileView");
+		request.setAttribute(FileResponseWriter.SENDFILE_SUPPORTED, Boolean.TRUE);
+		request.addHeader(HttpHeaders.RANGE, "bytes=5-");
+		MockHttpServletResponse response = write(request);
+
+		assertEquals(206, response.getStatus());
+		assertEquals(0, response.getContentAsByteArray().length);
+		assertEquals(file.toAbsolutePath().toString(), request.getAttribute(FileResponseWriter.SENDFILE_FILENAME));
+		assertEquals(5L, request.getAttribute(FileResponseWriter.SENDFILE_START));
+		assertEquals(15L, request.getAttribute(FileResponseWriter.SENDFILE_END));
+	}
+
+	private MockHttpServletResponse write(MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		writer.write(file, VERSION, "application/pdf", "test.pdf", request, response);
+		return response;
+	}
+}
@@ -2,8 +2,11 @@ package naysav.spring.service.controllers;
 
 import io.florianlopes.spring.test.web.servlet.request.MockMvcRequestBuilderUtils;
 import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.CustomerListItem;
 import naysav.spring.service.models.User;
+import naysav.spring.service.services.CustomerPage;
 import naysav.spring.service.services.CustomerService;
+import naysav.spring.service.services.DocumentRejectedException;
 import naysav.spring.service.services.UserService;
 
 import org.junit.Test;
@@ -16,12 +19,18 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.io.FileNotFoundException;
+import java.util.Collections;
 
 import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -195,6 +204,28 @@ public class MainControllerTest{
 				.andExpect(view().name("customers"));
 	}
 
+	/**
+	 * Тестирует вызов Get-метода customerList авторизованным пользователем,
+	 * обрабатывающего URL == "/customerList" с фильтром по фамилии.
+	 * Ожидаемый результат: статус ответа = 200, отображаемое представление == "customerList",
+	 * ссылка на следующую страницу сохраняет фильтр и содержит курсор.
+	 * @throws Exception
+	 */
+	@Test
+	@WithMockUser
+	public void customerListTest() throws Exception {
+		when(customerService.listCustomers(any())).thenReturn(new CustomerPage(Collections.singletonList(
+				new CustomerListItem(1L, "Ivan", "Ivanov", "Мужчина", "30", 1234123456L, "9001234567")), "MQ"));
+
+		this.mockMvc.perform(get("/customerList?lastName=Iv&sort=name"))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(view().name("customerList"))
+				.andExpect(model().attribute("nextUrl", containsString("lastName=Iv")))
+				.andExpect(model().attribute("nextUrl", containsString("after=MQ")))
+				.andExpect(content().string(containsString("Ivanov")));
+	}
+
 	/**
 	 * Тестирует вызов Post-метода customersFind авторизованным пользователем,
 	 * обрабатывающего форму поиска по серии и номеру паспорта без ошибок.
@@ -226,7 +257,8 @@ public class MainControllerTest{
 	 * Тестирует вызов Post-метода customersFind авторизованным пользователем,
 	 * обрабатывающего форму поиска по серии и номеру паспорта с инвалилным полем серии.
 	 * Ожидаемый результат: статус ответа = 200, отображаемое представление == "customers",
-	 * создан только аттрибут с ошибкой некорректного ввода серии паспорта.
+	 * создан только аттрибут с ошибкой некорректного ввода серии паспорта
+	 * (сообщение ограничения поля passportSeries модели Customer).
 	 * @throws Exception
 	 */
 	@Test
@@ -243,7 +275,7 @@ public class MainControllerTest{
 				.andDo(print())
 				.andExpect(status().isOk())
 				.andExpect(view().name("customers"))
-				.andExpect(model().attribute("errorSeries", instanceOf(String.class)))
+				.andExpect(model().attribute("errorSeries", is("• необходимо 4 цифры")))
 				.andExpect(model().attribute("errorNumber", is(nullValue())))
 				.andExpect(model().attribute("error", is(nullValue())))
 				.andExpect(model().attribute("customer", is(nullValue())));
@@ -379,7 +411,7 @@ public class MainControllerTest{
 				customer.getPassportNumber())).thenReturn(null);
 		when(customerService.saveCustomer(customer, file)).thenReturn(true);
 
-		this.mockMvc.perform(MockMvcRequestBuilders.multipart("/createCustomer").file(file)
+		performAsync(MockMvcRequestBuilders.multipart("/createCustomer").file(file)
 					/**
 					 * MockMvcRequestBuilderUtils - инструмент передачи полей формы в виде объекта в MockMvc
 					 * документация - https://github.com/f-lopes/spring-mvc-test-utils
@@ -410,7 +442,7 @@ public class MainControllerTest{
 		MockMultipartFile file = new MockMultipartFile("file", "INFO.pdf",
 				"application/pdf", "information".getBytes());
 
-		this.mockMvc.perform(MockMvcRequestBuilders.multipart("/createCustomer")
+		performAsync(MockMvcRequestBuilders.multipart("/createCustomer")
 								.file(file).with(MockMvcRequestBuilderUtils.form(customer)))
 				.andDo(print())
 				.andExpect(status().isOk())
@@ -440,7 +472,7 @@ public class MainControllerTest{
 		when(customerService.findCustomer(customer.getPassportSeries(),
 				customer.getPassportNumber())).thenReturn(createTestCustomer());
 
-		this.mockMvc.perform(MockMvcRequestBuilders.multipart("/createCustomer")
+		performAsync(MockMvcRequestBuilders.multipart("/createCustomer")
 								.file(file).with(MockMvcRequestBuilderUtils.form(customer)))
 				.andDo(print())
 				.andExpect(status().isOk())
@@ -453,7 +485,8 @@ public class MainControllerTest{
 
 	/**
 	 * Тестирует вызов Post-метода createCustomerProcess авторизованным пользователем,
-	 * обрабатывающего форму создания клиента с внесенным файлом инвалидного формата (не PDF).
+	 * обрабатывающего форму создания клиента с внесенным файлом инвалидного формата
+	 * (содержимое не PDF, хотя клиент указал Content-Type application/pdf).
 	 * Ожидаемый результат: статус ответа = 200, перенаправление на URL == "/createCustomer",
 	 * создан только аттрибут с сообщением инвалидном формате.
 	 * @throws Exception
@@ -463,13 +496,14 @@ public class MainControllerTest{
 	public void createCustomerPostTest4() throws Exception {
 		Customer customer = createTestCustomer();
 		MockMultipartFile file = new MockMultipartFile("file", "INFO.pdf",
-				"application/ogg", "information".getBytes());
+				"application/pdf", "information".getBytes());
 
 		when(customerService.findCustomer(customer.getPassportSeries(),
 				customer.getPassportNumber())).thenReturn(null);
-		when(customerService.saveCustomer(customer, file)).thenReturn(false);
+		when(customerService.saveCustomer(customer, file)).thenThrow(new DocumentRejectedException(
+				DocumentRejectedException.Reason.NOT_PDF, "Document is not a PDF"));
 
-		this.mockMvc.perform(MockMvcRequestBuilders.multipart("/createCustomer")
+		performAsync(MockMvcRequestBuilders.multipart("/createCustomer")
 								.file(file).with(MockMvcRequestBuilderUtils.form(customer)))
 				.andDo(print())
 				.andExpect(status().isOk())
@@ -480,6 +514,33 @@ public class MainControllerTest{
 				.andExpect(flash().attribute("successMessage", is(nullValue())));
 	}
 
+	/**
+	 * Тестирует вызов Post-метода createCustomerProcess авторизованным пользователем,
+	 * обрабатывающего форму создания клиента с PDF-файлом, переданным
+	 * с Content-Type application/octet-stream.
+	 * Ожидаемый результат: формат определяется по содержимому, клиент создан.
+	 * @throws Exception
+	 */
+	@Test
+	@WithMockUser
+	public void createCustomerPostOctetStreamTest() throws Exception {
+		Customer customer = createTestCustomer();
+		MockMultipartFile file = new MockMultipartFile("file", "INFO.pdf",
+				"application/octet-stream", "%PDF-information".getBytes());
+
+		when(customerService.findCustomer(customer.getPassportSeries(),
+				customer.getPassportNumber())).thenReturn(null);
+		when(customerService.saveCustomer(customer, file)).thenReturn(true);
+
+		performAsync(MockMvcRequestBuilders.multipart("/createCustomer")
+								.file(file).with(MockMvcRequestBuilderUtils.form(customer)))
+				.andDo(print())
+				.andExpect(status().is3xxRedirection())
+				.andExpect(redirectedUrl("/createCustomer"))
+				.andExpect(model().attribute("errorPDF", is(nullValue())))
+				.andExpect(flash().attribute("successMessage", instanceOf(String.class)));
+	}
+
 	/**
 	 * Тестирует вызов Post-метода createCustomerProcess авторизованным пользователем,
 	 * обрабатывающего форму создания клиента при неудачной записи в БД.
@@ -498,7 +559,7 @@ public class MainControllerTest{
 				customer.getPassportNumber())).thenReturn(null);
 		when(customerService.saveCustomer(customer, file)).thenReturn(false);
 
-		this.mockMvc.perform(MockMvcRequestBuilders.multipart("/createCustomer")
+		performAsync(MockMvcRequestBuilders.multipart("/createCustomer")
 						.file(file).with(MockMvcRequestBuilderUtils.form(customer)))
 				.andDo(print())
 				.andExpect(status().isOk())
@@ -521,10 +582,21 @@ public class MainControllerTest{
 		Customer customer = createTestCustomer();
 
 		this.mockMvc.perform(get("/fileView")
-						.param("path", customer.getLinkToFile()))
+						.param("id", customer.getLinkToFile()))
 				.andDo(print());
 	}
 
+	/**
+	 * Метод выполняет запрос с асинхронным обработчиком и возвращает
+	 * результат повторной обработки после его завершения.
+	 */
+	private ResultActions performAsync(RequestBuilder builder) throws Exception {
+		MvcResult result = this.mockMvc.perform(builder)
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		return this.mockMvc.perform(asyncDispatch(result));
+	}
+
 	/**
 	 * Метод создает тестовую модель пользователя.
 	 * @return User
@@ -553,7 +625,7 @@ public class MainControllerTest{
 		customer.setPassportSeries("1234");
 		customer.setPassportNumber("567890");
 		customer.setPhoneNumber("1234567890");
-		customer.setLinkToFile("C:/my/3a18dac2-7a07-4166-a991-f7e9fe77b1f0.INFO.pdf");
+		customer.setLinkToFile("3a18dac27a074166a991f7e9fe77b1f03a18dac27a074166a991f7e9fe77b1f0");
 		return customer;
 	}
 }
@@ -0,0 +1,204 @@
+package naysav.spring.service.datasource;
+
+import junit.framework.TestCase;
+import org.h2.Driver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * Тестовый класс для ReplicaRoutingDataSource на двух БД H2:
+ * в таблице node каждой БД записано ее имя, поэтому видно,
+ * куда ушел запрос.
+ */
+public class ReplicaRoutingDataSourceTest extends TestCase {
+
+	private static final Duration WINDOW = Duration.ofMillis(300);
+
+	private SimpleDriverDataSource primary;
+
+	/** Реплика, которую можно "выключить" */
+	private SwitchableDataSource replica;
+
+	private ReplicaRoutingDataSource routing;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private TransactionTemplate readOnly;
+
+	private TransactionTemplate readWrite;
+
+	@Before
+	public void setUp() {
+		primary = database("routing-primary");
+		replica = new SwitchableDataSource(database("routing-replica"));
+		routing = new ReplicaRoutingDataSource(primary, Collections.singletonMap("replica-0", replica),
+				WINDOW, Duration.ofSeconds(1));
+		LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		readWrite = new TransactionTemplate(transactionManager);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		SecurityContextHolder.clearContext();
+		routing.close();
+		new JdbcTemplate(primary).execute("drop all objects");
+		new JdbcTemplate(replica.getTargetDataSource()).execute("drop all objects");
+	}
+
+	/**
+	 * Read-only транзакции идут на реплику, остальные запросы - на основную БД.
+	 */
+	@Test
+	public void testReadOnlyTransactionsGoToReplica() {
+		assertTrue(ReplicaRoutingDataSource.isActive());
+		assertEquals("routing-replica", readOnly.execute(status -> node()));
+		assertEquals("routing-primary", readWrite.execute(status -> node()));
+		assertEquals("routing-primary", node());
+		assertEquals("routing-primary", readOnly.execute(status -> ReplicaRoutingDataSource.onPrimary(this::node)));
+	}
+
+	/**
+	 * После своей записи пользователь читает с основной БД в течение окна,
+	 * другие пользователи и отмененная запись на выбор БД не влияют.
+	 */
+	@Test
+	public void testReadYourWrites() throws InterruptedException {
+		login("alice");
+		readWrite.executeWithoutResult(status -> jdbcTemplate.update("insert into node values ('alice')"));
+		assertEquals("routing-primary", readOnly.execute(status -> node()));
+		assertEquals(2, (int) readOnly.execute(status ->
+				jdbcTemplate.queryForObject("select count(*) from node", Integer.class)));
+
+		login("bob");
+		assertEquals("routing-replica", readOnly.execute(status -> node()));
+		readWrite.executeWithoutResult(status -> {
+			jdbcTemplate.update("insert into node values ('bob')");
+			status.setRollbackOnly();
+		});
+		assertEquals("routing-replica", readOnly.execute(status -> node()));
+
+		SecurityContextHolder.clearContext();
+		assertEquals("routing-replica", readOnly.execute(status -> node()));
+
+		login("alice");
+		Thread.sleep(WINDOW.toMillis() * 2);
+		assertEquals("routing-replica", readOnly.execute(status -> node()));
+	}
+
+	/**
+	 * Недоступная реплика исключается, чтение идет на основную БД;
+	 * после успешной проверки реплика снова используется.
+	 */
+	@Test
+	public void testFallbackToPrimary() {
+		replica.down = true;
+		assertEquals("routing-primary", readOnly.execute(status -> node()));
+		routing.checkReplicas();
+		assertEquals("routing-primary", readOnly.execute(status -> node()));
+
+		replica.down = false;
+		assertEquals("routing-primary", readOnly.execute(status -> node()));
+		routing.checkReplicas();
+		assertEquals("routing-replica", readOnly.execute(status -> node()));
+	}
+
+	/**
+	 * Проверка в собственном потоке возвращает реплику в работу
+	 * без вызова checkReplicas().
+	 */
+	@Test
+	public void testHealthChecks() throws InterruptedException {
+		replica.down = true;
+		assertEquals("routing-primary", readOnly.execute(status -> node()));
+		replica.down = false;
+		routing.startHealthChecks(Duration.ofMillis(20));
+		for (int i = 0; i < 100 && "routing-primary".equals(readOnly.execute(status -> node())); i++)
+			Thread.sleep(20);
+		assertEquals("routing-replica", readOnly.execute(status -> node()));
+	}
+
+	/**
+	 * Соединение с другими учетными данными не поддерживается.
+	 */
+	@Test
+	public void testConnectionWithCredentials() {
+		try {
+			routing.getConnection("sa", "");
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e instanceof SQLFeatureNotSupportedException);
+		}
+	}
+
+	/**
+	 * Без реплик все запросы идут на основную БД.
+	 */
+	@Test
+	public void testWithoutReplicas() throws Exception {
+		routing.close();
+		routing = new ReplicaRoutingDataSource(primary, Collections.emptyMap(), WINDOW, Duration.ofSeconds(1));
+		assertFalse(ReplicaRoutingDataSource.isActive());
+		LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		readOnly.setReadOnly(true);
+		assertEquals("routing-primary", readOnly.execute(status -> node()));
+	}
+
+	private String node() {
+		return jdbcTemplate.queryForObject("select name from node where name like 'routing-%'", String.class);
+	}
+
+	private static void login(String username) {
+		SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+				username, null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+	}
+
+	private static SimpleDriverDataSource database(String name) {
+		SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new Driver(),
+				"jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table node (name varchar(32))");
+		jdbcTemplate.update("insert into node values (?)", name);
+		return dataSource;
+	}
+
+	/**
+	 * Источник данных, который при down отказывает в соединении.
+	 */
+	private static class SwitchableDataSource extends DelegatingDataSource {
+
+		volatile boolean down;
+
+		SwitchableDataSource(SimpleDriverDataSource target) {
+			super(target);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			if (down)
+				throw new SQLException("Connection refused");
+			return super.getConnection();
+		}
+	}
+}
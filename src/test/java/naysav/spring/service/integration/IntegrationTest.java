@@ -5,6 +5,7 @@ import naysav.spring.service.models.Customer;
 import naysav.spring.service.models.User;
 import naysav.spring.service.repository.CustomerRepository;
 import naysav.spring.service.repository.UserRepository;
+import naysav.spring.service.services.DocumentStore;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.jupiter.api.MethodOrderer;
@@ -18,12 +19,16 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.io.File;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -45,6 +50,10 @@ public class IntegrationTest {
 	@Autowired
 	private CustomerRepository customerRepository;
 
+	/** Экземпляр хранилища PDF-файлов */
+	@Autowired
+	private DocumentStore documentStore;
+
 	/** Экземпляр класса MockMvc, необходимый для
 	 *  тестирования взаимодествия компонентов приложения*/
 	@Autowired
@@ -132,8 +141,8 @@ public class IntegrationTest {
 	@WithMockUser
 	public void createCustomerPostTest() throws Exception {
 		MockMultipartFile file = new MockMultipartFile("file", "INFO.pdf",
-				"application/pdf", "information".getBytes());
-		this.mockMvc.perform(MockMvcRequestBuilders.multipart("/createCustomer").file(file)
+				"application/pdf", "%PDF-information".getBytes());
+		performAsync(MockMvcRequestBuilders.multipart("/createCustomer").file(file)
 						.with(MockMvcRequestBuilderUtils.form(customer)))
 				.andDo(print())
 				.andExpect(status().is3xxRedirection())
@@ -145,8 +154,8 @@ public class IntegrationTest {
 				.andExpect(flash().attribute("successMessage", instanceOf(String.class)));
 		Customer customerResult = customerRepository
 				.findByPassportSeriesAndPassportNumber("1234", "567890");
-		File savedFile = new File(customerResult.getLinkToFile());
 		assertNotNull(customerResult);
+		File savedFile = documentStore.open(customerResult.getLinkToFile()).getFile().toFile();
 		assertTrue(savedFile.exists());
 	}
 
@@ -161,14 +170,25 @@ public class IntegrationTest {
 	@Order(4)
 	@WithMockUser
 	public void fileViewGetTest() throws Exception {
-		String path = customerRepository.
+		String id = customerRepository.
 				findByPassportSeriesAndPassportNumber("1234", "567890").getLinkToFile();
-		File savedFile = new File(path);
-		this.mockMvc.perform(get("/fileView")
-							.param("path", path))
+		File savedFile = documentStore.open(id).getFile().toFile();
+		performAsync(get("/fileView")
+							.param("id", id))
 				.andDo(print())
 				.andExpect(status().isOk())
 				.andExpect(content().contentType("application/pdf"));
 		assertTrue(savedFile.delete());
 	}
+
+	/**
+	 * Метод выполняет запрос с асинхронным обработчиком и возвращает
+	 * результат повторной обработки после его завершения.
+	 */
+	private ResultActions performAsync(RequestBuilder builder) throws Exception {
+		MvcResult result = this.mockMvc.perform(builder)
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		return this.mockMvc.perform(asyncDispatch(result));
+	}
 }
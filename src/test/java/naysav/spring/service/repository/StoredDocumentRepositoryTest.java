@@ -0,0 +1,100 @@
+package naysav.spring.service.repository;
+
+import naysav.spring.service.models.StoredDocument;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Тестовый класс для StoredDocumentRepository на H2 в режиме MySQL:
+ * одновременные первые загрузки одного файла дают одну запись
+ * с числом ссылок, равным числу загрузок.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest(properties = {
+		"spring.sql.init.mode=never",
+		"spring.datasource.url=jdbc:h2:mem:stored-documents;MODE=MySQL",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password="})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class StoredDocumentRepositoryTest {
+
+	private static final String HASH = "79da";
+
+	private static final int THREADS = 16;
+
+	@Autowired
+	private StoredDocumentRepository storedDocumentRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@After
+	public void tearDown() {
+		storedDocumentRepository.deleteAllInBatch();
+	}
+
+	/**
+	 * Первая ссылка создает запись, следующие увеличивают счетчик.
+	 */
+	@Test
+	public void testAddReference() {
+		addReference();
+		assertEquals(1, storedDocumentRepository.findById(HASH).get().getRefCount());
+		addReference();
+		StoredDocument document = storedDocumentRepository.findById(HASH).get();
+		assertEquals(2, document.getRefCount());
+		assertEquals(16, document.getSize());
+	}
+
+	/**
+	 * Одновременные первые загрузки одного файла не конфликтуют
+	 * по первичному ключу.
+	 */
+	@Test
+	public void testConcurrentFirstReferences() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<?>> results = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++)
+				results.add(executor.submit(() -> {
+					start.await();
+					addReference();
+					return null;
+				}));
+			start.countDown();
+			for (Future<?> result : results)
+				result.get(30, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(THREADS, storedDocumentRepository.findById(HASH).get().getRefCount());
+	}
+
+	private void addReference() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+				storedDocumentRepository.addReference(HASH, 16));
+	}
+}
@@ -0,0 +1,150 @@
+package naysav.spring.service.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.TestCase;
+import naysav.spring.service.cache.PassportBloomFilter;
+import naysav.spring.service.models.Customer;
+import naysav.spring.service.repository.CustomerRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+
+/** Тестовый класс для методов класса CustomerImportService */
+@RunWith(MockitoJUnitRunner.class)
+public class CustomerImportServiceTest extends TestCase {
+
+	/** Имитация интерфейса customerRepository */
+	@Mock
+	private CustomerRepository customerRepository;
+
+	/** Имитация сервиса клиентов */
+	@Mock
+	private CustomerService customerService;
+
+	/** Имитация менеджера транзакций */
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	/** Имитация EntityManager */
+	@Mock
+	private EntityManager entityManager;
+
+	/** Фильтр Блума (не заполнен - все паспорта проверяются запросом) */
+	@Spy
+	PassportBloomFilter passportFilter = new PassportBloomFilter(1000, 0.01);
+
+	/** Валидатор ограничений модели */
+	@Spy
+	Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+	/** Разбор NDJSON */
+	@Spy
+	ObjectMapper objectMapper = new ObjectMapper();
+
+	/** Экземпляр CustomerImportService */
+	@InjectMocks
+	CustomerImportService customerImportService;
+
+	/** Метод задает размер порции и лимит ошибок. */
+	@Before
+	public void setup() {
+		ReflectionTestUtils.setField(customerImportService, "chunkSize", 2);
+		ReflectionTestUtils.setField(customerImportService, "maxReportedErrors", 10);
+	}
+
+	/**
+	 * CSV с заголовком, корректными строками, невалидной строкой,
+	 * повтором паспорта в файле и паспортом, уже имеющимся в БД.
+	 * Корректные строки вставляются, остальные попадают в отчет с номерами строк.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testImportCsv() throws Exception {
+		String csv = "firstName,lastName,gender,age,passportSeries,passportNumber,phoneNumber\n"
+				+ "Ivan,Ivanov,Male,34,1234,567890,1234567890\n"
+				+ "Petr,\"Petrov, Jr\",Male,40,1234,567891,1234567891\n"
+				+ "Anna,Ivanova,Female,abc,1234,567892,1234567892\n"
+				+ "Oleg,Olegov,Male,20,1234,567890,1234567893\n"
+				+ "Olga,Olegova,Female,22,4321,098765,1234567894\n";
+		ReflectionTestUtils.setField(customerImportService, "chunkSize", 10);
+		Mockito.when(customerRepository.findExistingPassportKeys(anyCollection()))
+				.thenReturn(Collections.singletonList(4321098765L));
+
+		CustomerImportReport report = customerImportService
+				.importCustomers(new StringReader(csv), CustomerImportService.Format.CSV);
+
+		assertEquals(5, report.getTotal());
+		assertEquals(2, report.getImported());
+		assertEquals(3, report.getRejected());
+		assertEquals(Arrays.asList(4L, 5L, 6L), Arrays.asList(report.getErrors().get(0).getLine(),
+				report.getErrors().get(1).getLine(), report.getErrors().get(2).getLine()));
+		assertTrue(report.getErrors().get(0).getMessage().startsWith("age"));
+
+		ArgumentCaptor<List<Customer>> saved = ArgumentCaptor.forClass(List.class);
+		Mockito.verify(customerRepository).saveAll(saved.capture());
+		assertEquals("Petrov, Jr", saved.getValue().get(1).getLastName());
+		Mockito.verify(customerService, Mockito.times(2)).trackImport(Mockito.any(Customer.class));
+	}
+
+	/**
+	 * Порции вставляются отдельными транзакциями по мере чтения потока.
+	 */
+	@Test
+	public void testImportInChunks() throws Exception {
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < 5; i++)
+			csv.append("Ivan,Ivanov,Male,34,1234,56789").append(i).append(",1234567890\n");
+		Mockito.when(customerRepository.findExistingPassportKeys(anyCollection()))
+				.thenReturn(Collections.emptyList());
+
+		CustomerImportReport report = customerImportService
+				.importCustomers(new StringReader(csv.toString()), CustomerImportService.Format.CSV);
+
+		assertEquals(5, report.getImported());
+		Mockito.verify(customerRepository, Mockito.times(3)).saveAll(Mockito.anyList());
+		Mockito.verify(entityManager, Mockito.times(3)).clear();
+	}
+
+	/**
+	 * NDJSON: служебные поля (id, ссылка на файл) из входных данных игнорируются.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testImportNdjson() throws Exception {
+		String ndjson = "{\"id\":99,\"firstName\":\"Ivan\",\"lastName\":\"Ivanov\",\"gender\":\"Male\","
+				+ "\"age\":34,\"passportSeries\":\"1234\",\"passportNumber\":\"567890\","
+				+ "\"phoneNumber\":\"1234567890\",\"linkToFile\":\"/etc/passwd\"}\n"
+				+ "{not json}\n";
+		Mockito.when(customerRepository.findExistingPassportKeys(anyCollection()))
+				.thenReturn(Collections.emptyList());
+
+		CustomerImportReport report = customerImportService
+				.importCustomers(new StringReader(ndjson), CustomerImportService.Format.NDJSON);
+
+		assertEquals(1, report.getImported());
+		assertEquals(1, report.getRejected());
+		ArgumentCaptor<List<Customer>> saved = ArgumentCaptor.forClass(List.class);
+		Mockito.verify(customerRepository).saveAll(saved.capture());
+		assertNull(saved.getValue().get(0).getId());
+		assertNull(saved.getValue().get(0).getLinkToFile());
+		assertEquals("34", saved.getValue().get(0).getAge());
+	}
+}
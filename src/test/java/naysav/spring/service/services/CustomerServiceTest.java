@@ -1,19 +1,37 @@
 package naysav.spring.service.services;
 
 import junit.framework.TestCase;
+import naysav.spring.service.cache.CustomerCache;
+import naysav.spring.service.cache.CustomerSearchIndex;
+import naysav.spring.service.cache.PassportBloomFilter;
 import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.CustomerCursor;
+import naysav.spring.service.models.CustomerFilter;
+import naysav.spring.service.models.CustomerListItem;
+import naysav.spring.service.models.CustomerSearchEntry;
 import naysav.spring.service.repository.CustomerRepository;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 
 /** Тестовый класс для методов класса ClientService */
@@ -24,6 +42,26 @@ public class CustomerServiceTest extends TestCase {
 	@Mock
 	private CustomerRepository customerRepository;
 
+	/** Имитация хранилища PDF-файлов */
+	@Mock
+	private DocumentStore documentStore;
+
+	/** Имитация менеджера транзакций */
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	/** Экземпляр ближнего кэша клиентов */
+	@Spy
+	CustomerCache customerCache = new CustomerCache(100, Duration.ofMinutes(10), Duration.ofMinutes(1));
+
+	/** Экземпляр фильтра Блума по ключам паспортов */
+	@Spy
+	PassportBloomFilter passportFilter = new PassportBloomFilter(1000, 0.01);
+
+	/** Экземпляр поискового индекса по имени и телефону */
+	@Spy
+	CustomerSearchIndex searchIndex = new CustomerSearchIndex();
+
 	/**
 	 * Экземпляр CustomerService.
 	 * В него встраивается зависимость CustomerRepository
@@ -51,8 +89,7 @@ public class CustomerServiceTest extends TestCase {
 		customer.setPassportNumber("567890");
 		customer.setPhoneNumber("1234567890");
 
-		Mockito.when(customerRepository.
-				findByPassportSeriesAndPassportNumber("1234", "567890"))
+		Mockito.when(customerRepository.findByPassportKey(1234567890L))
 				.thenReturn(customer);
 	}
 
@@ -70,6 +107,142 @@ public class CustomerServiceTest extends TestCase {
 		assertNull(resCustomer);
 	}
 
+	/**
+	 * Повторный поиск по тем же паспортным данным, в том числе
+	 * отсутствующим в БД, обслуживается кэшем без обращения к репозиторию.
+	 */
+	@Test
+	public void testFindCustomerCached() {
+		customerService.findCustomer("1234", "567890");
+		customerService.findCustomer("1234", "567890");
+		customerService.findCustomer("1111", "222222");
+		assertNull(customerService.findCustomer("1111", "222222"));
+
+		Mockito.verify(customerRepository, Mockito.times(1)).findByPassportKey(1234567890L);
+		Mockito.verify(customerRepository, Mockito.times(1)).findByPassportKey(1111222222L);
+		assertEquals(2, customerCache.stats().hitCount());
+		assertEquals(2, customerCache.stats().missCount());
+	}
+
+	/**
+	 * Сохраненный клиент заменяет в кэше отрицательный результат поиска.
+	 */
+	@Test
+	public void testCachePutReplacesNegativeEntry() {
+		assertNull(customerService.findCustomer("4321", "098765"));
+
+		Customer saved = new Customer();
+		saved.setPassportSeries("4321");
+		saved.setPassportNumber("098765");
+		customerCache.put(saved);
+
+		assertEquals(saved, customerService.findCustomer("4321", "098765"));
+	}
+
+	/**
+	 * Импортированный клиент попадает в фильтр Блума и поисковый индекс,
+	 * но не в ближний кэш; отрицательный результат поиска по его паспорту
+	 * из кэша удаляется.
+	 */
+	@Test
+	public void testTrackImportBypassesCache() {
+		searchIndex.markReady();
+		assertNull(customerService.findCustomer("4321", "098765"));
+		assertEquals(1, customerCache.getAllPresent(Arrays.asList(4321098765L)).size());
+
+		Customer imported = new Customer();
+		imported.setLastName("Importov");
+		imported.setPassportSeries("4321");
+		imported.setPassportNumber("098765");
+		customerService.trackImport(imported);
+		passportFilter.markReady();
+
+		assertTrue(passportFilter.mightContain(4321098765L));
+		assertEquals(1, searchIndex.search("Importov", 10).length);
+		assertTrue(customerCache.getAllPresent(Arrays.asList(4321098765L)).isEmpty());
+		Mockito.verify(customerCache, Mockito.never()).put(imported);
+	}
+
+	/**
+	 * Клиент, записанный другим экземпляром сервиса, после догоняющего чтения
+	 * находится через фильтр Блума (отрицательный результат в кэше удаляется)
+	 * и поисковый индекс; повторное чтение с перекрытием его не дублирует,
+	 * а без новых идентификаторов клиенты не читаются.
+	 */
+	@Test
+	public void testCatchUpCustomers() {
+		Customer remote = new Customer();
+		remote.setId(11L);
+		remote.setLastName("Remotov");
+		remote.setPassportSeries("4321");
+		remote.setPassportNumber("098765");
+		Mockito.when(customerRepository.findMaxId()).thenReturn(10L, 11L, 11L, 12L);
+		Mockito.when(customerRepository.findSearchEntriesAfter(Mockito.anyLong(), Mockito.any()))
+				.thenReturn(Arrays.asList(new CustomerSearchEntry(11L, 4321098765L, null, "Remotov", null)));
+		Mockito.when(customerRepository.findByPassportKey(4321098765L)).thenReturn(null, remote);
+		customerService.catchUpOverlap = 5;
+		customerService.startCatchUp();
+		assertNull(customerService.findCustomer("4321", "098765"));
+		passportFilter.markReady();
+		searchIndex.markReady();
+
+		customerService.catchUpCustomers();
+		customerService.catchUpCustomers();
+		customerService.catchUpCustomers();
+
+		assertEquals(remote, customerService.findCustomer("4321", "098765"));
+		assertEquals(1, searchIndex.search("Remotov", 10).length);
+		assertEquals(1, searchIndex.size());
+		Mockito.verify(customerRepository).findSearchEntriesAfter(Mockito.eq(5L), Mockito.any());
+		Mockito.verify(customerRepository).findSearchEntriesAfter(Mockito.eq(6L), Mockito.any());
+		Mockito.verify(customerRepository, Mockito.times(2)).findSearchEntriesAfter(Mockito.anyLong(), Mockito.any());
+	}
+
+	/**
+	 * После заполнения фильтра Блума поиск гарантированно отсутствующего
+	 * паспорта не обращается ни к кэшу, ни к репозиторию.
+	 */
+	@Test
+	public void testFindCustomerSkippedByBloomFilter() {
+		passportFilter.put(1234567890L);
+		passportFilter.markReady();
+
+		assertNotNull(customerService.findCustomer("1234", "567890"));
+		assertNull(customerService.findCustomer("1111", "222222"));
+
+		Mockito.verify(customerRepository, Mockito.never()).findByPassportKey(1111222222L);
+		assertEquals(1, customerCache.stats().requestCount());
+	}
+
+	/**
+	 * Пакетный поиск не обращается к БД за паспортами, отсутствующими
+	 * по фильтру Блума или известными кэшу, остальные читает одним запросом.
+	 */
+	@Test
+	public void testFindCustomers() {
+		Customer cached = new Customer();
+		cached.setPassportSeries("1234");
+		cached.setPassportNumber("000001");
+		cached.setPassportKey(1234000001L);
+		customerCache.put(cached);
+		passportFilter.put(1234000001L);
+		passportFilter.put(1234567890L);
+		passportFilter.put(1234000003L);
+		passportFilter.markReady();
+		Mockito.when(customerRepository.findByPassportKeyIn(Mockito.anyCollection()))
+				.thenAnswer(invocation -> {
+					customer.setPassportKey(1234567890L);
+					return Arrays.asList(customer);
+				});
+
+		Map<Long, Customer> found = customerService.findCustomers(
+				Arrays.asList(1234000001L, 1234567890L, 1234000003L, 1111222222L));
+		assertEquals(2, found.size());
+		assertSame(cached, found.get(1234000001L));
+		assertSame(customer, found.get(1234567890L));
+		Mockito.verify(customerRepository).findByPassportKeyIn(Arrays.asList(1234567890L, 1234000003L));
+	}
+
 	/**
 	 * Методу передаются объект Customer и файл file.
 	 * Если file == null, возвращается false.
@@ -85,5 +258,100 @@ public class CustomerServiceTest extends TestCase {
 			System.out.println("Exception: " + e);
 		}
 	}
-}
 
+	/**
+	 * Файл записывается до транзакции, в транзакции регистрируется в хранилище,
+	 * а идентификатор файла сохраняется в модели клиента; клиент
+	 * добавляется в поисковый индекс.
+	 */
+	@Test
+	public void testSaveCustomerWithFile() throws Exception {
+		MultipartFile pdf = new MockMultipartFile("file", "INFO.pdf", "application/pdf", "%PDF-1".getBytes());
+		DocumentStore.StagedDocument document = new DocumentStore.StagedDocument("abc", 6, Paths.get("abc"));
+		Mockito.when(documentStore.stage(pdf)).thenReturn(document);
+		Mockito.when(transactionManager.getTransaction(Mockito.any())).thenReturn(new SimpleTransactionStatus());
+		searchIndex.markReady();
+
+		assertTrue(customerService.saveCustomer(customer, pdf));
+		assertEquals("abc", customer.getLinkToFile());
+		assertEquals(1, searchIndex.search("testLastName", 10).length);
+		InOrder order = Mockito.inOrder(documentStore, transactionManager, customerRepository);
+		order.verify(documentStore).stage(pdf);
+		order.verify(transactionManager).getTransaction(Mockito.any());
+		order.verify(documentStore).register(document);
+		order.verify(customerRepository).save(customer);
+		order.verify(transactionManager).commit(Mockito.any());
+		Mockito.verify(documentStore, Mockito.never()).discard(document);
+	}
+
+	/**
+	 * При ошибке записи клиента в БД записанный файл удаляется.
+	 */
+	@Test
+	public void testSaveCustomerFailureDiscardsFile() throws Exception {
+		MultipartFile pdf = new MockMultipartFile("file", "INFO.pdf", "application/pdf", "%PDF-1".getBytes());
+		DocumentStore.StagedDocument document = new DocumentStore.StagedDocument("abc", 6, Paths.get("abc"));
+		Mockito.when(documentStore.stage(pdf)).thenReturn(document);
+		Mockito.when(transactionManager.getTransaction(Mockito.any())).thenReturn(new SimpleTransactionStatus());
+		Mockito.when(customerRepository.save(customer)).thenThrow(new IllegalStateException("db down"));
+
+		assertFalse(customerService.saveCustomer(customer, pdf));
+		Mockito.verify(transactionManager).rollback(Mockito.any());
+		Mockito.verify(documentStore).discard(document);
+	}
+
+	/**
+	 * Лишняя строка выборки означает, что есть следующая страница:
+	 * курсор указывает на последнюю строку текущей, а следующий запрос
+	 * начинается после нее.
+	 */
+	@Test
+	public void testListCustomers() {
+		CustomerFilter filter = new CustomerFilter();
+		filter.setSize(2);
+		List<CustomerListItem> rows = Arrays.asList(
+				new CustomerListItem(1L, "Ivan", "Ivanov", "Мужчина", "30", 1234000001L, "9001234567"),
+				new CustomerListItem(2L, "Anna", "Petrova", "Женщина", "25", 1234000002L, "9001234567"),
+				new CustomerListItem(3L, "Boris", "Sidorov", "Мужчина", "40", 1234000003L, "9001234567"));
+		Mockito.when(customerRepository.findPage(filter, null, 3)).thenReturn(rows);
+
+		CustomerPage page = customerService.listCustomers(filter);
+		assertEquals(2, page.getItems().size());
+		assertEquals("000002", page.getItems().get(1).getPassportNumber());
+		assertNotNull(page.getNext());
+
+		filter.setAfter(page.getNext());
+		Mockito.when(customerRepository.findPage(Mockito.eq(filter), Mockito.any(), Mockito.eq(3)))
+				.thenReturn(rows.subList(2, 3));
+		page = customerService.listCustomers(filter);
+		assertEquals(1, page.getItems().size());
+		assertNull(page.getNext());
+
+		ArgumentCaptor<CustomerCursor> cursor = ArgumentCaptor.forClass(CustomerCursor.class);
+		Mockito.verify(customerRepository, Mockito.times(2)).findPage(Mockito.eq(filter), cursor.capture(), Mockito.eq(3));
+		assertEquals(2L, cursor.getValue().getId());
+		assertEquals("Petrova", cursor.getValue().getLastName());
+		assertEquals("Anna", cursor.getValue().getFirstName());
+	}
+
+	/**
+	 * Найденные клиенты возвращаются в порядке релевантности из индекса,
+	 * а не в порядке выборки из БД.
+	 */
+	@Test
+	public void testSearchCustomers() {
+		searchIndex.load(1234000001L, "Иван", "Иванов", "9001234567");
+		searchIndex.load(1234000002L, "Анна", "Ливанова", "9007654321");
+		searchIndex.markReady();
+		Mockito.when(customerRepository.findListItemsByPassportKeys(Arrays.asList(1234000001L, 1234000002L)))
+				.thenReturn(Arrays.asList(
+						new CustomerListItem(2L, "Анна", "Ливанова", "Женщина", "25", 1234000002L, "9007654321"),
+						new CustomerListItem(1L, "Иван", "Иванов", "Мужчина", "30", 1234000001L, "9001234567")));
+
+		List<CustomerListItem> found = customerService.searchCustomers("иванов", 10);
+		assertEquals(2, found.size());
+		assertEquals("Иванов", found.get(0).getLastName());
+		assertEquals("Ливанова", found.get(1).getLastName());
+		assertTrue(customerService.searchCustomers("сидоров", 10).isEmpty());
+	}
+}
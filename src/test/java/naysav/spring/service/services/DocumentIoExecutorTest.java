@@ -0,0 +1,82 @@
+package naysav.spring.service.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+/** Тестовый класс для пула чтения и записи PDF-файлов */
+public class DocumentIoExecutorTest extends TestCase {
+
+	private DocumentIoExecutor documentIoExecutor;
+
+	private SimpleMeterRegistry registry;
+
+	@Before
+	public void setUp() {
+		documentIoExecutor = new DocumentIoExecutor(1, 1, Duration.ofMinutes(1));
+		registry = new SimpleMeterRegistry();
+		documentIoExecutor.bindTo(registry);
+	}
+
+	@After
+	public void tearDown() {
+		documentIoExecutor.shutdown();
+	}
+
+	/**
+	 * Результат и исключение задачи передаются в DeferredResult.
+	 */
+	@Test
+	public void testResultAndError() throws Exception {
+		DeferredResult<String> result = documentIoExecutor.submit(() -> "createCustomer");
+		DeferredResult<String> error = documentIoExecutor.submit(() -> {
+			throw new IOException("disk");
+		});
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((!result.hasResult() || !error.hasResult()) && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+
+		assertEquals("createCustomer", result.getResult());
+		assertTrue(error.getResult() instanceof IOException);
+		assertEquals("createCustomer", DocumentIoExecutor.completed("createCustomer").getResult());
+	}
+
+	/**
+	 * Когда поток занят, а очередь заполнена, задача отклоняется сразу;
+	 * очередь, занятые потоки и отклонения видны в метриках.
+	 */
+	@Test
+	public void testRejectsWhenSaturated() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		documentIoExecutor.submit(() -> {
+			started.countDown();
+			release.await();
+			return null;
+		});
+		started.await();
+		documentIoExecutor.submit(() -> null);
+		try {
+			documentIoExecutor.submit(() -> null);
+			fail("expected DocumentIoRejectedException");
+		} catch (DocumentIoRejectedException e) {
+			// ожидаемо
+		}
+
+		try {
+			assertEquals(1.0, registry.get("executor.active").tag("name", "document.io").gauge().value());
+			assertEquals(1.0, registry.get("executor.queued").tag("name", "document.io").gauge().value());
+			assertEquals(0.0, registry.get("executor.queue.remaining").tag("name", "document.io").gauge().value());
+			assertEquals(1.0, registry.get("document.io.rejected").functionCounter().count());
+		} finally {
+			release.countDown();
+		}
+	}
+}
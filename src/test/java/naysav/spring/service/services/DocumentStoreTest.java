@@ -0,0 +1,235 @@
+package naysav.spring.service.services;
+
+import junit.framework.TestCase;
+import naysav.spring.service.repository.StoredDocumentRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/** Тестовый класс для контентно-адресуемого хранилища PDF-файлов */
+public class DocumentStoreTest extends TestCase {
+
+	/** SHA-256 строки "%PDF-information" */
+	private static final String INFORMATION_ID =
+			"79dac2702d63d7ebcae4a099d3483cb634ccf3ffd8bce676e9f485b64fb55f54";
+
+	private Path root;
+
+	private DocumentStore documentStore;
+
+	private FileDocumentBackend backend;
+
+	private StoredDocumentRepository repository;
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("document-store");
+		repository = Mockito.mock(StoredDocumentRepository.class);
+		documentStore = new DocumentStore(root.toString(), DataSize.ofKilobytes(1), Duration.ofHours(1));
+		documentStore.storedDocumentRepository = repository;
+		backend = new FileDocumentBackend(root.toString());
+		documentStore.backend = backend;
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+			TransactionSynchronizationManager.clearSynchronization();
+		FileSystemUtils.deleteRecursively(root);
+	}
+
+	/**
+	 * Файл записывается в tmp, а после фиксации транзакции переносится
+	 * под своим SHA-256 в каталог шарда ab/cd; в stored_document
+	 * добавляется ссылка на файл с его размером.
+	 */
+	@Test
+	public void testStoreShardedBySha256() throws Exception {
+		String id = store("%PDF-information", TransactionSynchronization.STATUS_COMMITTED);
+
+		assertEquals(INFORMATION_ID, id);
+		Path file = documentStore.open(id).getFile();
+		assertEquals(root.resolve("79").resolve("da").resolve(id), file);
+		assertEquals("%PDF-information", new String(Files.readAllBytes(file)));
+		assertEquals(1, files().size());
+		Mockito.verify(repository).addReference(INFORMATION_ID, 16);
+	}
+
+	/**
+	 * До фиксации транзакции файл недоступен, при откате - удаляется.
+	 */
+	@Test
+	public void testRollbackDiscardsStagedFile() throws Exception {
+		DocumentStore.StagedDocument document = documentStore.stage(pdf("%PDF-information"));
+		assertTrue(Files.exists(document.getPath()));
+		assertFalse(Files.exists(backend.pathOf(document.getId())));
+
+		complete(document, TransactionSynchronization.STATUS_ROLLED_BACK);
+
+		assertTrue(files().isEmpty());
+	}
+
+	/**
+	 * Повторная загрузка того же содержимого не создает копию,
+	 * а увеличивает счетчик ссылок; временные файлы не остаются.
+	 */
+	@Test
+	public void testDeduplicatesIdenticalContent() throws Exception {
+		String first = store("%PDF-information", TransactionSynchronization.STATUS_COMMITTED);
+		String second = store("%PDF-information", TransactionSynchronization.STATUS_COMMITTED);
+
+		assertEquals(first, second);
+		Mockito.verify(repository, Mockito.times(2)).addReference(INFORMATION_ID, 16);
+		Mockito.verify(repository, Mockito.never()).save(Mockito.any());
+		assertEquals(1, files().size());
+	}
+
+	/**
+	 * Файл без сигнатуры PDF отклоняется на первых байтах,
+	 * в хранилище и в БД ничего не остается.
+	 */
+	@Test
+	public void testRejectsNonPdf() throws Exception {
+		for (String content : new String[]{"information", "%PD", ""}) {
+			try {
+				documentStore.stage(pdf(content));
+				fail("expected rejection of " + content);
+			} catch (DocumentRejectedException e) {
+				assertEquals(DocumentRejectedException.Reason.NOT_PDF, e.getReason());
+			}
+		}
+		assertTrue(files().isEmpty());
+	}
+
+	/**
+	 * Файл, превышающий допустимый размер, отклоняется при чтении.
+	 */
+	@Test
+	public void testRejectsOversize() throws Exception {
+		byte[] content = new byte[2048];
+		Arrays.fill(content, (byte) ' ');
+		System.arraycopy("%PDF-".getBytes(), 0, content, 0, 5);
+		try {
+			documentStore.stage(new MockMultipartFile("file", "INFO.pdf", "application/pdf", content));
+			fail("expected rejection of oversize document");
+		} catch (DocumentRejectedException e) {
+			assertEquals(DocumentRejectedException.Reason.TOO_LARGE, e.getReason());
+		}
+		assertTrue(files().isEmpty());
+	}
+
+	/**
+	 * Когда снята последняя ссылка на файл, он удаляется после фиксации транзакции.
+	 */
+	@Test
+	public void testReleaseDeletesUnreferenced() throws Exception {
+		String id = store("%PDF-information", TransactionSynchronization.STATUS_COMMITTED);
+		Mockito.when(repository.deleteUnreferenced(id)).thenReturn(1);
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			documentStore.release(id);
+			assertTrue(backend.contains(id));
+			for (TransactionSynchronization synchronization
+					: TransactionSynchronizationManager.getSynchronizations())
+				synchronization.afterCommit();
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		Mockito.verify(repository).decrementRefCount(id);
+		assertFalse(backend.contains(id));
+	}
+
+	/**
+	 * Очистка удаляет старые брошенные файлы из tmp и учитывает их в счетчиках,
+	 * не трогает свежие, а зафиксированный в БД, но не перенесенный файл
+	 * переносит на место.
+	 */
+	@Test
+	public void testSweep() throws Exception {
+		DocumentStore.StagedDocument orphan = documentStore.stage(pdf("%PDF-orphan"));
+		DocumentStore.StagedDocument committed = documentStore.stage(pdf("%PDF-information"));
+		DocumentStore.StagedDocument fresh = documentStore.stage(pdf("%PDF-fresh"));
+		Path part = Files.write(orphan.getPath().resolveSibling("upload123.part"), new byte[5]);
+		FileTime old = FileTime.fromMillis(System.currentTimeMillis() - Duration.ofHours(2).toMillis());
+		for (Path path : new Path[]{orphan.getPath(), committed.getPath(), part})
+			Files.setLastModifiedTime(path, old);
+		Mockito.when(repository.existsById(INFORMATION_ID)).thenReturn(true);
+
+		documentStore.sweep();
+
+		assertFalse(Files.exists(orphan.getPath()));
+		assertFalse(Files.exists(part));
+		assertTrue(Files.exists(fresh.getPath()));
+		assertEquals(backend.pathOf(INFORMATION_ID), documentStore.open(INFORMATION_ID).getFile());
+		assertEquals(2, documentStore.sweptFiles());
+		assertEquals(orphan.getSize() + 5, documentStore.sweptBytes());
+	}
+
+	/**
+	 * Идентификатор, не являющийся хешем, не превращается в путь файловой системы.
+	 */
+	@Test
+	public void testOpenRejectsPaths() throws Exception {
+		for (String id : new String[]{null, "../../etc/passwd", INFORMATION_ID.toUpperCase(), INFORMATION_ID}) {
+			try {
+				documentStore.open(id);
+				fail("expected FileNotFoundException for " + id);
+			} catch (FileNotFoundException e) {
+				// ожидаемо: файла нет или идентификатор некорректен
+			}
+		}
+	}
+
+	/**
+	 * Метод сохраняет файл так, как это делает CustomerService:
+	 * запись вне транзакции и регистрация внутри нее.
+	 */
+	private String store(String content, int status) throws Exception {
+		DocumentStore.StagedDocument document = documentStore.stage(pdf(content));
+		complete(document, status);
+		return document.getId();
+	}
+
+	/**
+	 * Метод имитирует транзакцию с регистрацией файла и ее завершение.
+	 */
+	private void complete(DocumentStore.StagedDocument document, int status) {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			documentStore.register(document);
+			for (TransactionSynchronization synchronization
+					: TransactionSynchronizationManager.getSynchronizations())
+				synchronization.afterCompletion(status);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	private List<Path> files() throws Exception {
+		try (Stream<Path> files = Files.walk(root)) {
+			return files.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+	}
+
+	private static MockMultipartFile pdf(String content) {
+		return new MockMultipartFile("file", "INFO.pdf", "application/pdf", content.getBytes());
+	}
+}
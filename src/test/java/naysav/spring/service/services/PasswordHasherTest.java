@@ -0,0 +1,104 @@
+package naysav.spring.service.services;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+
+/** Тестовый класс для пула хеширования паролей */
+public class PasswordHasherTest extends TestCase {
+
+	private PasswordHasher passwordHasher;
+
+	@Before
+	public void setUp() {
+		passwordHasher = new PasswordHasher(5, 1, 1);
+	}
+
+	@After
+	public void tearDown() {
+		passwordHasher.shutdown();
+	}
+
+	/**
+	 * Пароль хешируется с заданной стоимостью и проверяется.
+	 */
+	@Test
+	public void testEncodeAndMatches() {
+		String encoded = passwordHasher.encode("Testing123");
+
+		assertTrue(encoded.startsWith("$2a$05$"));
+		assertTrue(passwordHasher.matches("Testing123", encoded));
+		assertFalse(passwordHasher.matches("Testing124", encoded));
+	}
+
+	/**
+	 * Перехешируются пароли как с меньшей, так и с большей стоимостью.
+	 */
+	@Test
+	public void testUpgradeEncoding() {
+		assertFalse(passwordHasher.upgradeEncoding(passwordHasher.encode("Testing123")));
+		assertTrue(passwordHasher.upgradeEncoding(new BCryptPasswordEncoder(4).encode("Testing123")));
+		assertTrue(passwordHasher.upgradeEncoding(new BCryptPasswordEncoder(6).encode("Testing123")));
+		assertFalse(passwordHasher.upgradeEncoding("plain"));
+		assertFalse(passwordHasher.upgradeEncoding(null));
+	}
+
+	/**
+	 * Время хеширования и проверки пароля публикуется таймерами с процентилями.
+	 */
+	@Test
+	public void testMetrics() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		registry.config().meterFilter(new MeterFilter() {
+			@Override
+			public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+				return DistributionStatisticConfig.builder().percentiles(0.5, 0.99).build().merge(config);
+			}
+		});
+		passwordHasher.bindTo(registry);
+
+		passwordHasher.matches("Testing123", passwordHasher.encode("Testing123"));
+
+		Timer encode = registry.get("password.hashing.time").tag("operation", "encode").timer();
+		assertEquals(1, encode.count());
+		assertEquals(2, encode.takeSnapshot().percentileValues().length);
+		assertEquals(1, registry.get("password.hashing.time").tag("operation", "matches").timer().count());
+		assertEquals(2, registry.get("password.hashing.wait").timer().count());
+	}
+
+	/**
+	 * Когда поток занят, а очередь заполнена, запрос отклоняется сразу.
+	 */
+	@Test
+	public void testRejectsWhenSaturated() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		passwordHasher.executor.execute(() -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		started.await();
+		passwordHasher.executor.execute(() -> { });
+		try {
+			passwordHasher.encode("Testing123");
+			fail("expected PasswordHashingRejectedException");
+		} catch (PasswordHashingRejectedException e) {
+			// ожидаемо
+		} finally {
+			release.countDown();
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package naysav.spring.service.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/** Тестовый класс для хранения документов в файлах-сегментах */
+public class SegmentDocumentBackendTest extends TestCase {
+
+	private Path root;
+
+	private SegmentDocumentBackend backend;
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("document-segments");
+		backend = open(DataSize.ofMegabytes(1));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		backend.close();
+		FileSystemUtils.deleteRecursively(root);
+	}
+
+	/**
+	 * Документ дописывается в сегмент и читается обратно,
+	 * временный файл удаляется.
+	 */
+	@Test
+	public void testPutAndOpen() throws Exception {
+		Path staged = staged("%PDF-information");
+		String id = id("%PDF-information");
+
+		backend.put(id, staged);
+
+		assertFalse(Files.exists(staged));
+		assertTrue(backend.contains(id));
+		assertEquals("%PDF-information", read(backend.open(id)));
+		assertEquals(1, segments().size());
+	}
+
+	/**
+	 * Повторное сохранение того же содержимого не дописывает копию.
+	 */
+	@Test
+	public void testPutDeduplicates() throws Exception {
+		String id = id("%PDF-information");
+		backend.put(id, staged("%PDF-information"));
+		long size = Files.size(segments().get(0));
+
+		Path staged = staged("%PDF-information");
+		backend.put(id, staged);
+
+		assertFalse(Files.exists(staged));
+		assertEquals(size, Files.size(segments().get(0)));
+	}
+
+	/**
+	 * Если дописать документ не удалось, временный файл остается для
+	 * повторного переноса, а недописанная запись отрезается.
+	 */
+	@Test
+	public void testFailedPutKeepsStagedFile() throws Exception {
+		backend.put(id("%PDF-information"), staged("%PDF-information"));
+		long size = Files.size(segments().get(0));
+		// каталог вместо файла: чтение содержимого завершается ошибкой
+		Path staged = Files.createDirectory(root.resolve("broken.staged"));
+		String id = id("%PDF-broken");
+
+		try {
+			backend.put(id, staged);
+			fail("expected IOException");
+		} catch (IOException e) {
+			// ожидаемо
+		}
+
+		assertTrue(Files.exists(staged));
+		assertFalse(backend.contains(id));
+		assertEquals(size, Files.size(segments().get(0)));
+	}
+
+	/**
+	 * Удаленный документ недоступен для чтения.
+	 */
+	@Test
+	public void testDelete() throws Exception {
+		String id = id("%PDF-information");
+		backend.put(id, staged("%PDF-information"));
+
+		backend.delete(id);
+
+		assertFalse(backend.contains(id));
+		try {
+			backend.open(id);
+			fail("expected FileNotFoundException");
+		} catch (FileNotFoundException e) {
+			// ожидаемо
+		}
+	}
+
+	/**
+	 * Уплотнение переносит живые документы из сегмента с удаленными
+	 * в текущий сегмент, удаляет старый файл и учитывает освобожденное место.
+	 */
+	@Test
+	public void testCompact() throws Exception {
+		backend.close();
+		backend = open(DataSize.ofBytes(130));
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		backend.bindTo(registry);
+		String deleted = id("%PDF-deleted");
+		String live = id("%PDF-live");
+		backend.put(deleted, staged("%PDF-deleted"));
+		backend.put(live, staged("%PDF-live"));
+		backend.put(id("%PDF-active"), staged("%PDF-active"));
+		assertEquals(2, segments().size());
+
+		backend.delete(deleted);
+		backend.compact();
+
+		assertEquals(1, segments().size());
+		assertEquals("%PDF-live", read(backend.open(live)));
+		assertEquals(SegmentDocumentBackend.HEADER_SIZE + "%PDF-deleted".length(),
+				(long) registry.get("document.segments.reclaimed").functionCounter().count());
+	}
+
+	/**
+	 * После перезапуска индекс восстанавливается по заголовкам записей,
+	 * недописанная запись в конце сегмента отбрасывается.
+	 */
+	@Test
+	public void testReloadDropsIncompleteTail() throws Exception {
+		String id = id("%PDF-information");
+		backend.put(id, staged("%PDF-information"));
+		backend.close();
+		Path segment = segments().get(0);
+		long size = Files.size(segment);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.wrap(new byte[SegmentDocumentBackend.HEADER_SIZE + 3]));
+		}
+
+		backend = open(DataSize.ofMegabytes(1));
+
+		assertEquals(Arrays.asList(id), backend.indexedIds());
+		assertEquals("%PDF-information", read(backend.open(id)));
+		assertEquals(size, Files.size(segment));
+	}
+
+	private SegmentDocumentBackend open(DataSize maxSegmentSize) throws Exception {
+		return new SegmentDocumentBackend(root.toString(), maxSegmentSize, 0.5);
+	}
+
+	private Path staged(String content) throws Exception {
+		return Files.write(Files.createTempFile(root, "upload", ".staged"), content.getBytes());
+	}
+
+	private List<Path> segments() throws Exception {
+		try (Stream<Path> files = Files.list(root.resolve("segments"))) {
+			return files.sorted().collect(Collectors.toList());
+		}
+	}
+
+	private static String id(String content) throws Exception {
+		return DocumentStore.toHex(MessageDigest.getInstance("SHA-256").digest(content.getBytes()));
+	}
+
+	private static String read(DocumentContent content) {
+		byte[] bytes = new byte[(int) content.getLength()];
+		content.getBuffer().duplicate().get(bytes);
+		return new String(bytes);
+	}
+}
@@ -0,0 +1,138 @@
+package naysav.spring.service.services;
+
+import lombok.extern.slf4j.Slf4j;
+import naysav.spring.service.cache.UserDetailsCache;
+import naysav.spring.service.models.User;
+import naysav.spring.service.repository.UserRepository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Нагрузочный тест регистрации на встроенной БД: одновременные регистрации
+ * с одним логином дают ровно одного победителя, а новая регистрация
+ * выполняет одну вставку вместо поиска по логину и вставки.
+ */
+@Slf4j
+@RunWith(SpringRunner.class)
+@DataJpaTest(properties = {
+		"spring.sql.init.mode=never",
+		"password.bcrypt.strength=4",
+		"spring.jpa.properties.hibernate.generate_statistics=true"})
+@Import({UserService.class, PasswordHasher.class, UserDetailsCache.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class UserRegistrationConcurrencyTest {
+
+	private static final int THREADS = 16;
+
+	private static final int ROUNDS = 20;
+
+	private static final int REGISTRATIONS = 500;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		executor.shutdownNow();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+		userRepository.deleteAllInBatch();
+	}
+
+	/**
+	 * В каждом раунде все потоки одновременно регистрируют один логин:
+	 * true получает ровно один, в БД остается одна запись.
+	 */
+	@Test
+	public void testExactlyOneWinner() throws Exception {
+		for (int round = 0; round < ROUNDS; round++) {
+			String username = "race" + round;
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++)
+				results.add(executor.submit(register(username, start)));
+			start.countDown();
+
+			int winners = 0;
+			for (Future<Boolean> result : results)
+				if (result.get(30, TimeUnit.SECONDS))
+					winners++;
+			assertEquals(username, 1, winners);
+			assertNotNull(userRepository.findByUsername(username));
+		}
+		assertEquals(ROUNDS, userRepository.count());
+	}
+
+	/**
+	 * Регистрация нового пользователя - одна вставка (плюс редкое обращение
+	 * к последовательности), без предварительного поиска по логину.
+	 */
+	@Test
+	public void testSingleStatementPerRegistration() throws Exception {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Boolean>> results = new ArrayList<>();
+		for (int i = 0; i < REGISTRATIONS; i++)
+			results.add(executor.submit(register("user" + i, start)));
+		long began = System.nanoTime();
+		start.countDown();
+		for (Future<Boolean> result : results)
+			assertTrue(result.get(60, TimeUnit.SECONDS));
+		long elapsed = System.nanoTime() - began;
+
+		long statements = statistics.getPrepareStatementCount();
+		log.info(String.format("Registrations: %d in %d ms (%.0f/s), %.2f statements each",
+				REGISTRATIONS, TimeUnit.NANOSECONDS.toMillis(elapsed),
+				REGISTRATIONS * 1e9 / elapsed, (double) statements / REGISTRATIONS));
+		assertEquals(REGISTRATIONS, statistics.getEntityInsertCount());
+		assertTrue("statements: " + statements, statements < REGISTRATIONS * 1.1);
+	}
+
+	private Callable<Boolean> register(String username, CountDownLatch start) {
+		return () -> {
+			User user = new User();
+			user.setFirstName("Race");
+			user.setUsername(username);
+			user.setPassword("Testing123");
+			user.setPasswordVerify("Testing123");
+			start.await();
+			return userService.saveUser(user);
+		};
+	}
+}
@@ -1,6 +1,8 @@
 package naysav.spring.service.services;
 
+import naysav.spring.service.cache.UserDetailsCache;
 import naysav.spring.service.models.User;
+import naysav.spring.service.models.UserPrincipal;
 import naysav.spring.service.repository.UserRepository;
 
 import junit.framework.TestCase;
@@ -11,8 +13,12 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Duration;
 
 
 /** Тестовый класс для методов класса UserService */
@@ -23,13 +29,17 @@ public class UserServiceTest extends TestCase {
 	@Mock
 	private UserRepository userRepository;
 
-	/** Экземпляр энкодера BCryptPasswordEncoder*/
+	/** Экземпляр пула хеширования паролей */
+	@Spy
+	PasswordHasher encoder = new PasswordHasher(4, 1, 10);
+
+	/** Экземпляр кэша пользователей */
 	@Spy
-	BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
+	UserDetailsCache userCache = new UserDetailsCache(100, Duration.ofMinutes(5));
 
 	/**
 	 * Экземпляр класса UserService.
-	 * В него встраиваются зависимости BCryptPasswordEncoder и UserRepository
+	 * В него встраиваются зависимости PasswordHasher и UserRepository
 	 * */
 	@InjectMocks
 	UserService userService;
@@ -48,29 +58,98 @@ public class UserServiceTest extends TestCase {
 		user.setPassword(encoder.encode("testPassword"));
 		user.setPasswordVerify(encoder.encode("testPassword"));
 
-		Mockito.when(userRepository.findByUsername("test")).thenReturn(user);
+		Mockito.lenient().when(userRepository.findByUsername("test")).thenReturn(user);
 	}
 
 	/**
 	 * Методу передается username.
 	 * Если объект с полем username не найден,
 	 * выбрасывается исключение UsernameNotFoundException.
-	 * Если найден, возвращает найденный объект User.
+	 * Если найден, возвращает учетные данные пользователя без остальных полей User.
 	 */
 	@Test
 	public void testLoadUserByUsername() {
-		User receivedUser = (User) userService.loadUserByUsername("test");
-		assertEquals(receivedUser, user);
+		UserPrincipal receivedUser = (UserPrincipal) userService.loadUserByUsername("test");
+		assertEquals(user.getId(), receivedUser.getId());
+		assertEquals(user.getUsername(), receivedUser.getUsername());
+		assertEquals(user.getPassword(), receivedUser.getPassword());
+	}
+
+	/**
+	 * Повторный вход того же пользователя не обращается к БД,
+	 * а сохранение пользователя удаляет его из кэша.
+	 */
+	@Test
+	public void testLoadUserByUsernameCached() {
+		((UserPrincipal) userService.loadUserByUsername("test")).eraseCredentials();
+		assertEquals(user.getPassword(), userService.loadUserByUsername("test").getPassword());
+		Mockito.verify(userRepository, Mockito.times(1)).findByUsername("test");
+		assertEquals(1, userCache.stats().hitCount());
+
+		User created = new User();
+		created.setUsername("created");
+		created.setPassword("testPassword");
+		userCache.putUserInCache(created);
+		assertTrue(userService.saveUser(created));
+		assertNull(userCache.getUserFromCache("created"));
+	}
+
+	/**
+	 * Пароль, перехешированный при входе, сохраняется в БД,
+	 * а пользователь удаляется из кэша.
+	 */
+	@Test
+	public void testUpdatePassword() {
+		userService.loadUserByUsername("test");
+		String rehashed = encoder.encode("testPassword");
+
+		UserDetails updated = userService.updatePassword(user, rehashed);
+
+		assertEquals(rehashed, updated.getPassword());
+		Mockito.verify(userRepository).save(user);
+		assertNull(userCache.getUserFromCache("test"));
 	}
 
 	/**
 	 * Методу передается объект user.
-	 * Если пользователь уже есть в БД, возвращает false.
+	 * Если логин уже занят (нарушен уникальный индекс), возвращает false,
+	 * а user остается с введенным паролем.
 	 * Если user сохранен, возвращает true.
 	 */
 	@Test
 	public void testSaveUser() {
-		boolean res = userService.saveUser(user);
+		User taken = new User();
+		taken.setUsername("test");
+		taken.setPassword("testPassword");
+		taken.setPasswordVerify("testPassword");
+		Mockito.when(userRepository.save(taken))
+				.thenThrow(new DataIntegrityViolationException("uk_user_username"));
+
+		boolean res = userService.saveUser(taken);
 		assertFalse(res);
+		assertEquals("testPassword", taken.getPassword());
+		assertEquals("testPassword", taken.getPasswordVerify());
+		Mockito.verify(userRepository, Mockito.never()).findByUsername("test");
+	}
+
+	/**
+	 * Ошибка БД, не связанная с занятым логином, не выдается за занятый
+	 * логин: исключение передается вызывающему.
+	 */
+	@Test
+	public void testSaveUserDatabaseFailure() {
+		User created = new User();
+		created.setUsername("created");
+		created.setPassword("testPassword");
+		created.setPasswordVerify("testPassword");
+		Mockito.when(userRepository.save(created))
+				.thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+		try {
+			userService.saveUser(created);
+			fail();
+		} catch (DataAccessResourceFailureException e) {
+			assertEquals("Connection refused", e.getMessage());
+		}
 	}
 }
\ No newline at end of file
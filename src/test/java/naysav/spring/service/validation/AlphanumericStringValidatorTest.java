@@ -0,0 +1,70 @@
+package naysav.spring.service.validation;
+
+import naysav.spring.service.models.User;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Тестовый класс для @AlphanumericString: для любых строк результат совпадает
+ * с регулярным выражением [a-zA-Z[0-9]]{4,12} логина пользователя.
+ */
+public class AlphanumericStringValidatorTest extends TestCase {
+
+	private static final Pattern USERNAME = Pattern.compile("[a-zA-Z[0-9]]{4,12}");
+
+	private static final int SAMPLES = 20000;
+
+	/**
+	 * Случайные строки: посимвольная проверка совпадает с регулярным выражением.
+	 */
+	@Test
+	public void testMatchesRegexOnRandomStrings() {
+		RandomStrings strings = new RandomStrings(20211018L);
+		for (int i = 0; i < SAMPLES; i++) {
+			String value = strings.alphanumeric();
+			assertEquals(value, USERNAME.matcher(value).matches(),
+					AlphanumericStringValidator.isAlphanumeric(value, 4, 12));
+		}
+	}
+
+	/**
+	 * Каждый символ BMP отдельно: допустимы ровно те, что входят в класс [a-zA-Z[0-9]].
+	 */
+	@Test
+	public void testMatchesRegexOnEveryChar() {
+		Pattern single = Pattern.compile("[a-zA-Z[0-9]]");
+		for (char c = 0; c < Character.MAX_VALUE; c++) {
+			String value = String.valueOf(c);
+			assertEquals(Integer.toHexString(c), single.matcher(value).matches(),
+					AlphanumericStringValidator.isAlphanumeric(value, 1, 1));
+		}
+		assertTrue(new AlphanumericStringValidator().isValid(null, null));
+	}
+
+	/**
+	 * Сообщение об ошибке логина то же, что было у @Pattern.
+	 */
+	@Test
+	public void testUsernameMessage() {
+		try (ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory()) {
+			RandomStrings strings = new RandomStrings(7L);
+			for (int i = 0; i < SAMPLES / 10; i++) {
+				String value = strings.alphanumeric();
+				Set<String> messages = new HashSet<>();
+				for (ConstraintViolation<User> violation : validatorFactory.getValidator()
+						.validateValue(User.class, "username", value))
+					messages.add(violation.getMessage());
+				assertEquals(value, !USERNAME.matcher(value).matches(),
+						messages.contains("• необходимы цифры или латинские буквы"));
+			}
+		}
+	}
+}
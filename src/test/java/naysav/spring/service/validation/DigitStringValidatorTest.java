@@ -0,0 +1,110 @@
+package naysav.spring.service.validation;
+
+import naysav.spring.service.models.Customer;
+import naysav.spring.service.models.PassportKey;
+
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Тестовый класс для @DigitString: для любых строк результат совпадает
+ * с регулярным выражением \d{min,max}, которое заменяет аннотация.
+ */
+public class DigitStringValidatorTest extends TestCase {
+
+	/**
+	 * Диапазоны длины, используемые в моделях: возраст пользователя и фильтра,
+	 * возраст клиента, серия и номер паспорта, телефон.
+	 */
+	private static final int[][] RULES = {{0, 3}, {1, 3}, {4, 4}, {6, 6}, {10, 10}};
+
+	private static final int SAMPLES = 20000;
+
+	private ValidatorFactory validatorFactory;
+
+	@Before
+	public void setUp() {
+		validatorFactory = Validation.buildDefaultValidatorFactory();
+	}
+
+	@After
+	public void tearDown() {
+		validatorFactory.close();
+	}
+
+	/**
+	 * Случайные строки: посимвольная проверка совпадает с регулярным выражением.
+	 */
+	@Test
+	public void testMatchesRegexOnRandomStrings() {
+		RandomStrings strings = new RandomStrings(20211018L);
+		for (int[] rule : RULES) {
+			Pattern pattern = Pattern.compile("\\d{" + rule[0] + "," + rule[1] + "}");
+			for (int i = 0; i < SAMPLES; i++) {
+				String value = strings.digits();
+				assertEquals(rule[0] + "-" + rule[1] + ": " + value, pattern.matcher(value).matches(),
+						DigitStringValidator.isDigits(value, rule[0], rule[1]));
+			}
+		}
+	}
+
+	/**
+	 * Все короткие строки из цифр и граничных символов.
+	 */
+	@Test
+	public void testMatchesRegexOnAllShortStrings() {
+		Pattern pattern = Pattern.compile("\\d{1,3}");
+		for (String value : RandomStrings.all("09/:a٠", 4))
+			assertEquals(value, pattern.matcher(value).matches(), DigitStringValidator.isDigits(value, 1, 3));
+	}
+
+	/**
+	 * null не проверяется (как в @Pattern), а PassportKey использует то же правило.
+	 */
+	@Test
+	public void testNullAndPassportKey() {
+		assertTrue(new DigitStringValidator().isValid(null, null));
+		assertFalse(DigitStringValidator.isDigits(null, 0, 3));
+		RandomStrings strings = new RandomStrings(42L);
+		for (int i = 0; i < SAMPLES; i++) {
+			String value = strings.digits();
+			assertEquals(value, DigitStringValidator.isDigits(value, 4, 4), PassportKey.isValidSeries(value));
+			assertEquals(value, DigitStringValidator.isDigits(value, 6, 6), PassportKey.isValidNumber(value));
+		}
+	}
+
+	/**
+	 * Сообщения об ошибках полей Customer те же, что были у @Pattern:
+	 * сообщение есть тогда и только тогда, когда значение не соответствует выражению.
+	 */
+	@Test
+	public void testCustomerMessages() {
+		String[][] fields = {
+				{"age", "\\d{1,3}", "• необходимо неотрицательное число"},
+				{"passportSeries", "\\d{4}", "• необходимо 4 цифры"},
+				{"passportNumber", "\\d{6}", "• необходимо 6 цифр"},
+				{"phoneNumber", "\\d{10}", "• необходимо 10 цифр"}};
+		RandomStrings strings = new RandomStrings(7L);
+		for (String[] field : fields) {
+			Pattern pattern = Pattern.compile(field[1]);
+			for (int i = 0; i < SAMPLES / 10; i++) {
+				String value = strings.digits();
+				Set<String> messages = new HashSet<>();
+				for (ConstraintViolation<Customer> violation : validatorFactory.getValidator()
+						.validateValue(Customer.class, field[0], value))
+					messages.add(violation.getMessage());
+				assertEquals(field[0] + ": " + value, !pattern.matcher(value).matches(),
+						messages.contains(field[2]));
+			}
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package naysav.spring.service.validation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Генератор строк для проверки свойств валидаторов: половина строк
+ * составлена только из символов основного алфавита (цифр или букв и цифр),
+ * остальные содержат граничные символы - соседей диапазонов по таблице ASCII,
+ * цифры и буквы других алфавитов, пробелы и половинки суррогатных пар.
+ */
+final class RandomStrings {
+
+	/**
+	 * Символы, отличающие посимвольную проверку от регулярного выражения.
+	 */
+	static final String EDGE = "/:@[`{ \t\n-_.٠٩０９²Аяé😀";
+
+	private static final String DIGITS = "0123456789";
+
+	private static final String ALPHANUMERIC = DIGITS + "abcxyzABCXYZ";
+
+	private final Random random;
+
+	RandomStrings(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * Строка длиной 0-15 символов: цифры с граничными символами.
+	 */
+	String digits() {
+		return next(DIGITS);
+	}
+
+	/**
+	 * Строка длиной 0-15 символов: латинские буквы и цифры с граничными символами.
+	 */
+	String alphanumeric() {
+		return next(ALPHANUMERIC);
+	}
+
+	private String next(String alphabet) {
+		int length = random.nextInt(16);
+		boolean clean = random.nextBoolean();
+		StringBuilder value = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			String source = clean || random.nextInt(4) > 0 ? alphabet : EDGE;
+			value.append(source.charAt(random.nextInt(source.length())));
+		}
+		return value.toString();
+	}
+
+	/**
+	 * Метод перечисляет все строки длиной до maxLength из символов alphabet.
+	 */
+	static List<String> all(String alphabet, int maxLength) {
+		List<String> values = new ArrayList<>();
+		values.add("");
+		int from = 0;
+		for (int length = 1; length <= maxLength; length++) {
+			int to = values.size();
+			for (int i = from; i < to; i++)
+				for (int c = 0; c < alphabet.length(); c++)
+					values.add(values.get(i) + alphabet.charAt(c));
+			from = to;
+		}
+		return values;
+	}
+}